@@ -16,8 +16,8 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
@@ -87,11 +87,11 @@ public class AnalyticsController {
 
     @GetMapping("/download/approved-receipts")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<byte[]> downloadAllApprovedReceipts() throws IOException {
-        byte[] zipBytes = analyticsService.downloadAllApprovedReceiptsAsZip();
+    public ResponseEntity<StreamingResponseBody> downloadAllApprovedReceipts() {
+        StreamingResponseBody zip = analyticsService.downloadAllApprovedReceiptsAsZip();
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"approved-receipts.zip\"")
                 .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(zipBytes);
+                .body(zip);
     }
 }
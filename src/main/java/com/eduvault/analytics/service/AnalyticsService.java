@@ -4,7 +4,10 @@ import com.eduvault.analytics.dto.*;
 import com.eduvault.dto.ReceiptCountResponse;
 import com.eduvault.dto.ReceiptResponse;
 import com.eduvault.entities.*;
+import com.eduvault.export.ReceiptZipExporter;
+import com.eduvault.export.ZipItem;
 import com.eduvault.repositories.*;
+import com.eduvault.repositories.projections.ReceiptFileView;
 import com.eduvault.user.User;
 import com.eduvault.user.enums.Status;
 import com.eduvault.user.enums.UserRole;
@@ -12,20 +15,16 @@ import com.eduvault.user.repo.UserRepository;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
 import java.lang.reflect.Field;
-import java.net.URL;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.YearMonth;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 @Service
 @RequiredArgsConstructor
@@ -38,6 +37,7 @@ public class AnalyticsService {
     private final SchoolFeeInvoiceRepository schoolFeeInvoiceRepository;
     private final RemitaSchoolFeeReceiptRepository remitaSchoolFeeReceiptRepository;
     private final UserRepository userRepository;
+    private final ReceiptZipExporter receiptZipExporter;
 
     public List<StudentDto> getAllStudents() {
         List<User> students = userRepository.findByRole(UserRole.STUDENT);
@@ -145,50 +145,22 @@ public class AnalyticsService {
 
 
 
-    public byte[] downloadAllApprovedReceiptsAsZip() throws IOException {
-        Map<String, List<String>> receiptSources = Map.of(
-                "CollegeDue", collegeDueRepository.findByState(Status.APPROVED)
-                        .stream().map(CollegeDue::getPdfUrl).filter(Objects::nonNull).toList(),
-                "CourseForm", courseFormRepository.findByState(Status.APPROVED)
-                        .stream().map(CourseForm::getPdfUrl).filter(Objects::nonNull).toList(),
-                "DeptDue", deptDueRepository.findByState(Status.APPROVED)
-                        .stream().map(DeptDue::getPdfUrl).filter(Objects::nonNull).toList(),
-                "SchoolFeeReceipt", schoolFeeReceiptRepository.findByState(Status.APPROVED)
-                        .stream().map(SchoolFeeReceipt::getPdfUrl).filter(Objects::nonNull).toList(),
-                "SchoolFeeInvoice", schoolFeeInvoiceRepository.findByState(Status.APPROVED)
-                        .stream().map(SchoolFeeInvoice::getPdfUrl).filter(Objects::nonNull).toList(),
-                "RemitaSchoolFeeReceipt", remitaSchoolFeeReceiptRepository.findByState(Status.APPROVED)
-                        .stream().map(RemitaSchoolFeeReceipt::getPdfUrl).filter(Objects::nonNull).toList()
-        );
-
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             ZipOutputStream zos = new ZipOutputStream(baos)) {
-
-            for (Map.Entry<String, List<String>> entry : receiptSources.entrySet()) {
-                String category = entry.getKey();
-                List<String> urls = entry.getValue();
-
-                if (urls.isEmpty()) continue;
-
-                for (String url : urls) {
-                    try {
-                        String fileName = extractFileName(url);
-
-                        String zipPath = category + "/" + fileName + ".pdf";
-
-                        try (InputStream in = new URL(url).openStream()) {
-                            zos.putNextEntry(new ZipEntry(zipPath));
-                            in.transferTo(zos);
-                            zos.closeEntry();
-                        }
-                    } catch (Exception e) {
-                        System.err.println("❌ Could not download PDF: " + url + " -> " + e.getMessage());
-                    }
-                }
-            }
+    @Transactional(readOnly = true)
+    public StreamingResponseBody downloadAllApprovedReceiptsAsZip() {
+        List<ZipItem> items = new ArrayList<>();
+        addApproved(items, "CollegeDue", collegeDueRepository.streamByStateAndPdfUrlIsNotNull(Status.APPROVED));
+        addApproved(items, "CourseForm", courseFormRepository.streamByStateAndPdfUrlIsNotNull(Status.APPROVED));
+        addApproved(items, "DeptDue", deptDueRepository.streamByStateAndPdfUrlIsNotNull(Status.APPROVED));
+        addApproved(items, "SchoolFeeReceipt", schoolFeeReceiptRepository.streamByStateAndPdfUrlIsNotNull(Status.APPROVED));
+        addApproved(items, "SchoolFeeInvoice", schoolFeeInvoiceRepository.streamByStateAndPdfUrlIsNotNull(Status.APPROVED));
+        addApproved(items, "RemitaSchoolFeeReceipt", remitaSchoolFeeReceiptRepository.streamByStateAndPdfUrlIsNotNull(Status.APPROVED));
+        return out -> receiptZipExporter.write(items, out);
+    }
 
-            zos.finish();
-            return baos.toByteArray();
+    private void addApproved(List<ZipItem> items, String category, Stream<? extends ReceiptFileView> receipts) {
+        try (receipts) {
+            receipts.forEach(receipt -> items.add(
+                    new ZipItem(category + "/" + extractFileName(receipt.getPdfUrl()) + ".pdf", receipt.getPdfUrl())));
         }
     }
 
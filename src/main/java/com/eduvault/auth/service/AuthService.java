@@ -10,8 +10,8 @@ import com.eduvault.user.User;
 import com.eduvault.user.enums.AccountStatus;
 import com.eduvault.user.enums.UserRole;
 import com.eduvault.user.repo.UserRepository;
-import com.eduvault.user.service.CloudinaryService;
 import com.eduvault.user.utils.UploadResponse;
+import com.eduvault.storage.BlobStore;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -34,7 +34,7 @@ public class AuthService {
     private final RefreshTokenService refreshTokenService;
     private final AuthenticationManager authenticationManager;
     private final GoogleAuthService googleAuthService;
-    private final CloudinaryService cloudinaryService;
+    private final BlobStore blobStore;
     private final InvitationRepository invitationRepository;
     private final RoleChangeLogRepository roleChangeLogRepository;
 
@@ -126,7 +126,7 @@ public class AuthService {
         if (invitation.isUsed() || invitation.getExpiresAt().isBefore(LocalDateTime.now())) {
             throw new RuntimeException("Invitation expired or already used");
         }
-        UploadResponse uploadResponse = cloudinaryService.upload(file);
+        UploadResponse uploadResponse = blobStore.upload(file);
         User user = User.builder()
                 .email(invitation.getEmail())
                 .password(passwordEncoder.encode(request.getPassword()))
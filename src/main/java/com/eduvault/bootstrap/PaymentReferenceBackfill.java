@@ -0,0 +1,69 @@
+package com.eduvault.bootstrap;
+
+import com.eduvault.services.PaymentReferenceService;
+import com.eduvault.user.enums.DocumentType;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Claims the payment references of receipts uploaded before references were claimed, so the
+ * one-student-per-reference rule also covers them. Receipts that already have a claim are
+ * skipped, so running it on every startup only does work for rows it has not settled yet.
+ * <p>
+ * When existing receipts of different students share a reference, the earliest non-rejected
+ * upload wins, then the earliest rejected one. The others are left untouched and logged for an
+ * administrator to review; new uploads of that reference by anyone else are refused from then on.
+ */
+@Slf4j
+@Configuration
+@RequiredArgsConstructor
+public class PaymentReferenceBackfill {
+    private static final String UNCLAIMED_RECEIPTS = """
+            SELECT * FROM (
+                SELECT 'college_due' AS source, 'COLLEGE_DUE' AS document_type, id, transaction_reference AS reference,
+                       uploaded_by, uploaded_at, state FROM college_due
+                UNION ALL
+                SELECT 'dept_due', 'DEPT_DUE', id, transaction_reference, uploaded_by, uploaded_at, state FROM dept_due
+                UNION ALL
+                SELECT 'sch_fee_invoice', 'SCHOOL_FEE_INVOICE', id, rrr, uploaded_by, uploaded_at, state FROM sch_fee_invoice
+                UNION ALL
+                SELECT 'remita_sch_fee_receipt', 'REMITA_SCHOOL_FEE_RECEIPT', id, rrr, uploaded_by, uploaded_at, state
+                FROM remita_sch_fee_receipt
+            ) receipt
+            WHERE reference IS NOT NULL
+              AND uploaded_by IS NOT NULL
+              AND NOT EXISTS (SELECT 1 FROM payment_reference claimed WHERE claimed.receipt_id = receipt.id)
+            ORDER BY CASE WHEN state = 'REJECTED' THEN 1 ELSE 0 END, uploaded_at, id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PaymentReferenceService paymentReferenceService;
+
+    @Bean
+    public CommandLineRunner backfillPaymentReferences() {
+        return args -> {
+            AtomicInteger conflicts = new AtomicInteger();
+            jdbcTemplate.query(UNCLAIMED_RECEIPTS, row -> {
+                UUID receiptId = row.getObject("id", UUID.class);
+                UUID uploadedBy = row.getObject("uploaded_by", UUID.class);
+                String reference = row.getString("reference");
+                DocumentType documentType = DocumentType.valueOf(row.getString("document_type"));
+                if (!paymentReferenceService.claimExisting(documentType, reference, uploadedBy, receiptId)) {
+                    conflicts.incrementAndGet();
+                    log.warn("Payment reference {} on {} {} is already claimed by another student's receipt",
+                            reference, row.getString("source"), receiptId);
+                }
+            });
+            if (conflicts.get() > 0) {
+                log.warn("{} existing receipts share a payment reference with another student's receipt", conflicts.get());
+            }
+        };
+    }
+}
@@ -0,0 +1,70 @@
+package com.eduvault.bootstrap;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+/**
+ * Creates the partial unique indexes behind the one-receipt-per-level rule. JPA cannot
+ * express a filtered index, so they are created here once Hibernate has updated the schema.
+ */
+@Slf4j
+@Configuration
+@RequiredArgsConstructor
+public class ReceiptIndexInitializer {
+    private static final List<String> RECEIPT_TABLES = List.of(
+            "college_due",
+            "dept_due",
+            "course_form",
+            "sch_fee_receipt",
+            "sch_fee_invoice",
+            "remita_sch_fee_receipt"
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Whether a failed insert broke the one-receipt-per-level index on {@code table}, as opposed
+     * to some other constraint.
+     */
+    public static boolean isOnePerLevelViolation(DataIntegrityViolationException e, String table) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                return indexName(table).equalsIgnoreCase(violation.getConstraintName());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Without these indexes the upload check is only a read, and concurrent uploads can both
+     * pass it, so startup fails rather than running without them. That usually means existing
+     * rows already break the rule and have to be cleaned up first.
+     */
+    @Bean
+    public CommandLineRunner createReceiptLevelIndexes() {
+        return args -> {
+            for (String table : RECEIPT_TABLES) {
+                try {
+                    jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS " + indexName(table) + " ON " + table
+                            + " (uploaded_by, student_level) WHERE state <> 'REJECTED'");
+                } catch (DataAccessException e) {
+                    throw new IllegalStateException("Could not create the one-receipt-per-level index on " + table
+                            + "; check for students with more than one non-rejected receipt per level", e);
+                }
+            }
+        };
+    }
+
+    private static String indexName(String table) {
+        return "uk_" + table + "_one_per_level";
+    }
+}
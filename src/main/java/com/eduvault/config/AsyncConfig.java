@@ -1,8 +1,108 @@
 package com.eduvault.config;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 @EnableAsync
 public class AsyncConfig {
+
+    @Bean(name = "ingestJobExecutor")
+    public ThreadPoolTaskExecutor ingestJobExecutor(@Value("${app.ingest.jobs.pool-size:4}") int poolSize,
+                                                    @Value("${app.ingest.jobs.queue-capacity:200}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("ingest-job-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    @Bean(name = "ingestIoExecutor")
+    public ThreadPoolTaskExecutor ingestIoExecutor(@Value("${app.ingest.io.pool-size:8}") int poolSize,
+                                                   @Value("${app.ingest.io.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("ingest-io-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+
+    @Bean(name = "ingestParseExecutor")
+    public ThreadPoolTaskExecutor ingestParseExecutor(@Value("${app.ingest.parse.pool-size:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}") int poolSize,
+                                                      @Value("${app.ingest.parse.queue-capacity:16}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("ingest-parse-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    /**
+     * Every export fetch holds one of the storage host's outbound slots, so the pool is kept below
+     * {@code app.http.max-per-host}: however many exports run, downloads and payment lookups
+     * against the same host still get a slot.
+     */
+    @Bean(name = "exportFetchExecutor")
+    public ThreadPoolTaskExecutor exportFetchExecutor(@Value("${app.export.fetch.pool-size:8}") int poolSize,
+                                                      @Value("${app.export.fetch.queue-capacity:256}") int queueCapacity,
+                                                      @Value("${app.http.max-per-host:16}") int maxPerHost) {
+        if (poolSize >= maxPerHost) {
+            throw new IllegalStateException("app.export.fetch.pool-size (" + poolSize
+                    + ") must be below app.http.max-per-host (" + maxPerHost + ")");
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("export-fetch-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+
+    @Bean(name = "exportCompressExecutor")
+    public ThreadPoolTaskExecutor exportCompressExecutor(@Value("${app.export.compress.pool-size:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}") int poolSize,
+                                                         @Value("${app.export.compress.queue-capacity:256}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("export-compress-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+
+    @Bean(name = "exportArchiveExecutor")
+    public ThreadPoolTaskExecutor exportArchiveExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setThreadNamePrefix("export-archive-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    @Bean(name = "bulkImportExecutor")
+    public ThreadPoolTaskExecutor bulkImportExecutor(@Value("${app.ingest.bulk.concurrency:4}") int concurrency) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setQueueCapacity(concurrency);
+        executor.setThreadNamePrefix("bulk-import-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        return executor;
+    }
 }
@@ -0,0 +1,39 @@
+package com.eduvault.config;
+
+import com.eduvault.user.enums.DocumentType;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "app.pdf")
+public class PdfParsingProperties {
+
+    /** Largest document that will be parsed at all. */
+    private DataSize maxBytes = DataSize.ofMegabytes(20);
+
+    /** Wall-clock budget for extracting the text of one document. */
+    private Duration timeBudget = Duration.ofSeconds(10);
+
+    /** Heap used for a document's parse buffers before PDFBox spills the rest to a temp file. */
+    private DataSize maxMainMemory = DataSize.ofMegabytes(8);
+
+    private int defaultPageLimit = 10;
+
+    private Map<DocumentType, Integer> pageLimits = new EnumMap<>(DocumentType.class);
+
+    public int pageLimitFor(DocumentType documentType) {
+        if (documentType == null) {
+            return defaultPageLimit;
+        }
+        return pageLimits.getOrDefault(documentType, defaultPageLimit);
+    }
+}
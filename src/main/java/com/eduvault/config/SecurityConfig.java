@@ -35,8 +35,10 @@ public class SecurityConfig {
                                         "/swagger-ui/**",
                                         "/swagger-ui.html",
                                         "/documents/**",
-                                        "/sch-fee/**"
+                                        "/sch-fee/**",
+                                        "/actuator/health"
                                 ).permitAll()
+                                .requestMatchers("/actuator/prometheus").hasRole("ADMIN")
                                 .requestMatchers("/profile/me", "/users/me").authenticated()
                                 .requestMatchers("/student/**").hasRole("STUDENT")
                                 .requestMatchers("/staff/**").hasRole("STAFF")
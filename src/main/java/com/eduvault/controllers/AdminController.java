@@ -5,9 +5,11 @@ import com.eduvault.auth.service.AuthService;
 import com.eduvault.auth.utils.DeleteResponse;
 import com.eduvault.auth.utils.UserRoleProfileResponse;
 import com.eduvault.dto.AccountStatusResponse;
+import com.eduvault.dto.BulkImportResponse;
 import com.eduvault.dto.InvitationRequest;
 import com.eduvault.dto.InvitationResponse;
 import com.eduvault.entities.RoleChangeLog;
+import com.eduvault.ingest.BulkImportService;
 import com.eduvault.services.InvitationService;
 import com.eduvault.user.enums.AccountStatus;
 import com.eduvault.user.service.UserService;
@@ -19,10 +21,13 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
@@ -35,6 +40,7 @@ public class AdminController {
     private final InvitationService invitationService;
     private final AuthService authService;
     private final UserService userService;
+    private final BulkImportService bulkImportService;
 
 
     @Operation(
@@ -117,4 +123,19 @@ public class AdminController {
         AccountStatusResponse response = userService.changeAccountStatus(email, status);
         return ResponseEntity.ok(response);
     }
-}
\ No newline at end of file
+
+    @Operation(
+            summary = "Bulk import receipts from a ZIP archive",
+            description = "Imports every receipt listed in a CSV manifest (fileName,matricNumber,documentType,studentLevel) " +
+                    "from the uploaded ZIP archive and returns the outcome of each entry. Only ADMINs can perform this action."
+    )
+    @ApiResponse(responseCode = "200", description = "Import finished; see the per-entry results",
+            content = @Content(schema = @Schema(implementation = BulkImportResponse.class)))
+    @ApiResponse(responseCode = "400", description = "Malformed manifest or unreadable archive")
+    @PostMapping(value = "/receipts/bulk-import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BulkImportResponse> bulkImportReceipts(@RequestPart("file") MultipartFile file,
+                                                                 @RequestPart("manifest") MultipartFile manifest) throws IOException {
+        return ResponseEntity.ok(bulkImportService.importArchive(file, manifest));
+    }
+}
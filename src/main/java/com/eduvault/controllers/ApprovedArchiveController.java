@@ -0,0 +1,72 @@
+package com.eduvault.controllers;
+
+import com.eduvault.export.ApprovedArchiveService;
+import com.eduvault.user.enums.DocumentType;
+import com.eduvault.user.enums.Level;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/archives")
+@Tag(name = "Approved Archives", description = "Prebuilt archives of approved receipts per document type and level")
+public class ApprovedArchiveController {
+    private final ApprovedArchiveService approvedArchiveService;
+    private final Duration retryAfter;
+
+    public ApprovedArchiveController(ApprovedArchiveService approvedArchiveService,
+                                     @Value("${app.export.archive.retry-after:30s}") Duration retryAfter) {
+        this.approvedArchiveService = approvedArchiveService;
+        this.retryAfter = retryAfter;
+    }
+
+    @Operation(
+            summary = "Download approved receipts for a level as ZIP",
+            description = "Serves the prebuilt archive of approved receipts for a document type and level. "
+                    + "Supports Range requests for resuming and ETag/If-None-Match for revalidation. "
+                    + "Answers 202 with Retry-After while the archive is being built or brought up to date."
+    )
+    @GetMapping("/{documentType}/{studentLevel}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
+    public ResponseEntity<Resource> download(@PathVariable DocumentType documentType,
+                                             @PathVariable Level studentLevel) throws IOException {
+        Optional<Path> ready = approvedArchiveService.archive(documentType, studentLevel);
+        if (ready.isEmpty()) {
+            return ResponseEntity.accepted()
+                    .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter.toSeconds()))
+                    .build();
+        }
+        Path archive = ready.get();
+        long lastModified = Files.getLastModifiedTime(archive).toMillis();
+        String fileName = "approved-" + documentType.name().toLowerCase(Locale.ROOT).replace('_', '-')
+                + "-" + studentLevel.name().toLowerCase(Locale.ROOT).replace('_', '-') + ".zip";
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString())
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .eTag("\"" + Long.toHexString(Files.size(archive)) + "-" + Long.toHexString(lastModified) + "\"")
+                .lastModified(lastModified)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(new FileSystemResource(archive));
+    }
+}
@@ -1,12 +1,16 @@
 package com.eduvault.controllers;
 
 import com.eduvault.dto.FileDownloadResponse;
+import com.eduvault.dto.IngestJobResponse;
+import com.eduvault.ingest.IngestJobService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.eduvault.auth.utils.LevelRequest;
 import com.eduvault.dto.CollegeDueResponse;
 import com.eduvault.dto.CourseFormResponse;
 import com.eduvault.services.CourseFormService;
+import com.eduvault.storage.BlobDownloadResponder;
 import com.eduvault.user.UserInfoUserDetails;
+import com.eduvault.user.enums.DocumentType;
 import com.eduvault.user.enums.Level;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -24,6 +28,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
 import java.util.List;
@@ -34,6 +39,8 @@ import java.util.List;
 @Tag(name = "Course Form", description = "Endpoints for handling course forms")
 public class CourseFormController {
     private final CourseFormService courseFormService;
+    private final BlobDownloadResponder blobDownloadResponder;
+    private final IngestJobService ingestJobService;
 
     @Operation(
             summary = "Upload a Course Form",
@@ -79,6 +86,23 @@ public class CourseFormController {
 
     }
 
+    @Operation(
+            summary = "Upload a course form asynchronously",
+            description = "Accepts the receipt and processes it in the background. Returns an ingest job that can be polled at /ingest/{jobId}; completion is also pushed to /user/queue/notifications."
+    )
+    @PostMapping(value = "/upload/async", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<IngestJobResponse> uploadReceiptAsync(@RequestPart("file") MultipartFile file,
+                                                                @RequestPart("data") String requestJson,
+                                                                @AuthenticationPrincipal UserInfoUserDetails principal) throws IOException {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        String email = principal.getUsername();
+        LevelRequest request = new ObjectMapper().readValue(requestJson, LevelRequest.class);
+        IngestJobResponse response = ingestJobService.submit(DocumentType.COURSE_FORM, file, email, request.getStudentLevel());
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+
     @GetMapping("/me")
     @Operation(
             summary = "Get all receipts created by user",
@@ -129,28 +153,27 @@ public class CourseFormController {
     )
 
     @GetMapping("/me/download")
-    public ResponseEntity<byte[]> downloadUserReceipt(@AuthenticationPrincipal UserInfoUserDetails principal)
+    public ResponseEntity<StreamingResponseBody> downloadUserReceipt(@AuthenticationPrincipal UserInfoUserDetails principal,
+                                                                     @RequestParam(required = false) Level studentLevel,
+                                                                     @RequestHeader HttpHeaders headers)
             throws IOException {
         if (principal == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
 
         String email = principal.getUsername();
-        FileDownloadResponse file = courseFormService.downloadReceiptByUser(email);
+        FileDownloadResponse file = courseFormService.downloadReceiptByUser(email, studentLevel);
 
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getFileName() + "\"")
-                .contentType(MediaType.APPLICATION_PDF)
-                .body(file.getFileContent());
+        return blobDownloadResponder.respond(file, headers);
     }
 
     @GetMapping("/approved/download")
     @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
-    public ResponseEntity<byte[]> downloadApprovedReceipts() throws IOException {
-        byte[] zipBytes = courseFormService.downloadApprovedReceiptsAsZip();
+    public ResponseEntity<StreamingResponseBody> downloadApprovedReceipts() {
+        StreamingResponseBody zip = courseFormService.downloadApprovedReceiptsAsZip();
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=approved-course-forms.zip")
                 .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(zipBytes);
+                .body(zip);
     }
 }
@@ -0,0 +1,38 @@
+package com.eduvault.controllers;
+
+import com.eduvault.dto.IngestJobResponse;
+import com.eduvault.ingest.IngestJobService;
+import com.eduvault.user.UserInfoUserDetails;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.UUID;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/ingest")
+@Tag(name = "Ingest Jobs", description = "Endpoints for tracking asynchronous receipt uploads")
+public class IngestController {
+    private final IngestJobService ingestJobService;
+
+    @Operation(
+            summary = "Get the status of an ingest job",
+            description = "Returns the progress of a receipt uploaded through one of the /upload/async endpoints. Only the user who uploaded the receipt can view it."
+    )
+    @GetMapping("/{jobId}")
+    public ResponseEntity<IngestJobResponse> getJob(@PathVariable UUID jobId,
+                                                    @AuthenticationPrincipal UserInfoUserDetails principal) {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return ResponseEntity.ok(ingestJobService.getJob(jobId, principal.getUsername()));
+    }
+}
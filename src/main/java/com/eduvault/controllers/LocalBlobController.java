@@ -0,0 +1,47 @@
+package com.eduvault.controllers;
+
+import com.eduvault.storage.LocalBlobStore;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/files")
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "local")
+@Tag(name = "Files", description = "Serves documents kept in the local blob store")
+public class LocalBlobController {
+    private final LocalBlobStore localBlobStore;
+
+    @Operation(summary = "Download a stored file", description = "Streams a file from the local blob store by its content-addressed key. Requires authentication.")
+    @GetMapping("/{first}/{second}/{name}")
+    public void download(@PathVariable String first,
+                         @PathVariable String second,
+                         @PathVariable String name,
+                         HttpServletResponse response) throws IOException {
+        Path path = localBlobStore.resolve(first + "/" + second + "/" + name);
+        if (path == null || !Files.isRegularFile(path)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        response.setContentType(name.endsWith(".pdf") ? MediaType.APPLICATION_PDF_VALUE : MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setContentLengthLong(Files.size(path));
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
+        localBlobStore.transferTo(path, Channels.newChannel(response.getOutputStream()));
+    }
+}
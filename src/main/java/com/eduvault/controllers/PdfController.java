@@ -1,6 +1,9 @@
 package com.eduvault.controllers;
 
-import com.eduvault.services.PdfReaderService;
+import com.eduvault.exceptions.ServerBusyException;
+import com.eduvault.ingest.IngestService;
+import com.eduvault.ingest.IngestedFile;
+import com.eduvault.ingest.ParseScheduler;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -13,13 +16,17 @@ import org.springframework.web.multipart.MultipartFile;
 @RequestMapping("/documents")
 @RequiredArgsConstructor
 public class PdfController {
-    private final PdfReaderService documentReaderService;
+    private final ParseScheduler parseScheduler;
+    private final IngestService ingestService;
 
     @PostMapping("/upload")
     public ResponseEntity<String> uploadFile(@RequestParam("file") MultipartFile file) {
-        try {
-            String content = documentReaderService.readDocument(file);
+        try (ParseScheduler.Admission admission = parseScheduler.admit();
+             IngestedFile ingested = ingestService.ingest(file)) {
+            String content = parseScheduler.readDocument(ingested, null);
             return ResponseEntity.ok(content);
+        } catch (ServerBusyException e) {
+            throw e;
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error reading file: " + e.getMessage());
         }
@@ -1,12 +1,16 @@
 package com.eduvault.controllers;
 
 import com.eduvault.dto.FileDownloadResponse;
+import com.eduvault.dto.IngestJobResponse;
+import com.eduvault.ingest.IngestJobService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.eduvault.auth.utils.LevelRequest;
 import com.eduvault.dto.CollegeDueResponse;
 import com.eduvault.dto.PdfResponse;
 import com.eduvault.services.RemitaSchoolFeeReceiptService;
+import com.eduvault.storage.BlobDownloadResponder;
 import com.eduvault.user.UserInfoUserDetails;
+import com.eduvault.user.enums.DocumentType;
 import com.eduvault.user.enums.Level;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -24,6 +28,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
 import java.util.List;
@@ -34,6 +39,8 @@ import java.util.List;
 @Tag(name = "Remita School Fee", description = "Endpoints for handling Remita School Fee receipts")
 public class RemitaSchoolFeeReceiptController {
     private final RemitaSchoolFeeReceiptService remitaSchoolFeeReceiptService;
+    private final BlobDownloadResponder blobDownloadResponder;
+    private final IngestJobService ingestJobService;
 
     @Operation(
             summary = "Upload a Remita School Fee Receipt",
@@ -79,6 +86,23 @@ public class RemitaSchoolFeeReceiptController {
 
     }
 
+    @Operation(
+            summary = "Upload a Remita School Fee Receipt asynchronously",
+            description = "Accepts the receipt and processes it in the background. Returns an ingest job that can be polled at /ingest/{jobId}; completion is also pushed to /user/queue/notifications."
+    )
+    @PostMapping(value = "/upload/async", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<IngestJobResponse> uploadReceiptAsync(@RequestPart("file") MultipartFile file,
+                                                                @RequestPart("data") String requestJson,
+                                                                @AuthenticationPrincipal UserInfoUserDetails principal) throws IOException {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        String email = principal.getUsername();
+        LevelRequest request = new ObjectMapper().readValue(requestJson, LevelRequest.class);
+        IngestJobResponse response = ingestJobService.submit(DocumentType.REMITA_SCHOOL_FEE_RECEIPT, file, email, request.getStudentLevel());
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+
 
     @GetMapping("/me")
     @Operation(
@@ -110,19 +134,18 @@ public class RemitaSchoolFeeReceiptController {
 
 
     @GetMapping("/me/download")
-    public ResponseEntity<byte[]> downloadUserReceipt(@AuthenticationPrincipal UserInfoUserDetails principal)
+    public ResponseEntity<StreamingResponseBody> downloadUserReceipt(@AuthenticationPrincipal UserInfoUserDetails principal,
+                                                                     @RequestParam(required = false) Level studentLevel,
+                                                                     @RequestHeader HttpHeaders headers)
             throws IOException {
         if (principal == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
 
         String email = principal.getUsername();
-        FileDownloadResponse file = remitaSchoolFeeReceiptService.downloadReceiptByUser(email);
+        FileDownloadResponse file = remitaSchoolFeeReceiptService.downloadReceiptByUser(email, studentLevel);
 
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getFileName() + "\"")
-                .contentType(MediaType.APPLICATION_PDF)
-                .body(file.getFileContent());
+        return blobDownloadResponder.respond(file, headers);
     }
 
     @Operation(
@@ -146,11 +169,11 @@ public class RemitaSchoolFeeReceiptController {
     )
     @GetMapping("/approved/download")
     @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
-    public ResponseEntity<byte[]> downloadApprovedReceipts() throws IOException {
-        byte[] zipBytes = remitaSchoolFeeReceiptService.downloadApprovedReceiptsAsZip();
+    public ResponseEntity<StreamingResponseBody> downloadApprovedReceipts() {
+        StreamingResponseBody zip = remitaSchoolFeeReceiptService.downloadApprovedReceiptsAsZip();
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=approved-remita-sch-fee-receipts.zip")
                 .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(zipBytes);
+                .body(zip);
     }
 }
@@ -10,86 +10,115 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.List;
-
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("retrieve")
-@Tag(name="Retrieve Receipts", description = "Endpoints for retrieving all receipts")
+@Tag(name="Retrieve Receipts", description = "Endpoints for paging through all receipts")
 public class RetrieveReceiptsController {
     private final RetrieveReceiptsService service;
 
     @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
     @GetMapping("/college-due")
-    public ResponseEntity<List<CollegeDueResponse>>  getAllCollegeDueReceipts(){
-        return ResponseEntity.ok(service.getAllCollegeDueReceipts());
+    public ResponseEntity<CursorPage<CollegeDueResponse>> getAllCollegeDueReceipts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size){
+        return ResponseEntity.ok(service.getAllCollegeDueReceipts(cursor, size));
     }
 
     @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
     @GetMapping("/college-due/{studentLevel}")
-    public ResponseEntity<List<CollegeDueResponse>>  getAllCollegeDueReceiptsByLevel(@PathVariable Level studentLevel){
-        return ResponseEntity.ok(service.getAllCollegeDueReceiptsByLevel(studentLevel));
+    public ResponseEntity<CursorPage<CollegeDueResponse>> getAllCollegeDueReceiptsByLevel(
+            @PathVariable Level studentLevel,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size){
+        return ResponseEntity.ok(service.getAllCollegeDueReceiptsByLevel(studentLevel, cursor, size));
     }
 
     @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
     @GetMapping("/course-form")
-    public ResponseEntity<List<CourseFormResponse>>  getAllCourseFormReceipts(){
-        return ResponseEntity.ok(service.getAllCourseFormReceipts());
+    public ResponseEntity<CursorPage<CourseFormResponse>> getAllCourseFormReceipts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size){
+        return ResponseEntity.ok(service.getAllCourseFormReceipts(cursor, size));
     }
 
     @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
     @GetMapping("/course-form/{studentLevel}")
-    public ResponseEntity<List<CourseFormResponse>>  getAllCourseFormsByLevel(@PathVariable Level studentLevel){
-        return ResponseEntity.ok(service.getAllCourseFormsByLevel(studentLevel));
+    public ResponseEntity<CursorPage<CourseFormResponse>> getAllCourseFormsByLevel(
+            @PathVariable Level studentLevel,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size){
+        return ResponseEntity.ok(service.getAllCourseFormsByLevel(studentLevel, cursor, size));
     }
 
     @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
     @GetMapping("/dept-due")
-    public ResponseEntity<List<DeptDueResponse>> getAllDeptDueReceipts(){
-        return ResponseEntity.ok(service.getAllDeptDueReceipts());
+    public ResponseEntity<CursorPage<DeptDueResponse>> getAllDeptDueReceipts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size){
+        return ResponseEntity.ok(service.getAllDeptDueReceipts(cursor, size));
     }
 
     @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
     @GetMapping("/dept-due/{studentLevel}")
-    public ResponseEntity<List<DeptDueResponse>> getAllDeptDueReceiptsByLevel(@PathVariable Level studentLevel){
-        return ResponseEntity.ok(service.getAllDeptDueReceiptsByLevel(studentLevel));
+    public ResponseEntity<CursorPage<DeptDueResponse>> getAllDeptDueReceiptsByLevel(
+            @PathVariable Level studentLevel,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size){
+        return ResponseEntity.ok(service.getAllDeptDueReceiptsByLevel(studentLevel, cursor, size));
     }
 
     @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
     @GetMapping("/remita-sch-fee")
-    public ResponseEntity<List<PdfResponse>> getAllRemitaSchoolFeeReceipts(){
-        return ResponseEntity.ok(service.getAllRemitaSchoolFeeReceipts());
+    public ResponseEntity<CursorPage<PdfResponse>> getAllRemitaSchoolFeeReceipts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size){
+        return ResponseEntity.ok(service.getAllRemitaSchoolFeeReceipts(cursor, size));
     }
 
     @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
     @GetMapping("/remita-sch-fee/{studentLevel}")
-    public ResponseEntity<List<PdfResponse>> getAllRemitaSchoolFeeReceiptsByLevel(@PathVariable Level studentLevel){
-        return ResponseEntity.ok(service.getAllRemitaSchoolFeeReceiptsByLevel(studentLevel));
+    public ResponseEntity<CursorPage<PdfResponse>> getAllRemitaSchoolFeeReceiptsByLevel(
+            @PathVariable Level studentLevel,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size){
+        return ResponseEntity.ok(service.getAllRemitaSchoolFeeReceiptsByLevel(studentLevel, cursor, size));
     }
 
     @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
     @GetMapping("/invoice")
-    public ResponseEntity<List<SchoolFeeInvoiceResponse>> getAllSchoolFeeInvoiceReceipts(){
-        return ResponseEntity.ok(service.getAllSchoolFeeInvoiceReceipts());
+    public ResponseEntity<CursorPage<SchoolFeeInvoiceResponse>> getAllSchoolFeeInvoiceReceipts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size){
+        return ResponseEntity.ok(service.getAllSchoolFeeInvoiceReceipts(cursor, size));
     }
 
     @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
     @GetMapping("/invoice/{studentLevel}")
-    public ResponseEntity<List<SchoolFeeInvoiceResponse>> getAllSchoolFeeInvoiceReceiptsByLevel(@PathVariable Level studentLevel){
-        return ResponseEntity.ok(service.getAllSchoolFeeInvoiceReceiptsByLevel(studentLevel));
+    public ResponseEntity<CursorPage<SchoolFeeInvoiceResponse>> getAllSchoolFeeInvoiceReceiptsByLevel(
+            @PathVariable Level studentLevel,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size){
+        return ResponseEntity.ok(service.getAllSchoolFeeInvoiceReceiptsByLevel(studentLevel, cursor, size));
     }
 
     @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
     @GetMapping("/sch-fee")
-    public ResponseEntity<List<SchoolFeeResponse>> getAllSchoolFeeReceipts(){
-        return ResponseEntity.ok(service.getAllSchoolFeeReceipts());
+    public ResponseEntity<CursorPage<SchoolFeeResponse>> getAllSchoolFeeReceipts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size){
+        return ResponseEntity.ok(service.getAllSchoolFeeReceipts(cursor, size));
     }
 
     @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
     @GetMapping("/sch-fee/{studentLevel}")
-    public ResponseEntity<List<SchoolFeeResponse>> getAllSchoolFeeReceiptsByLevel(@PathVariable Level studentLevel){
-        return ResponseEntity.ok(service.getAllSchoolFeeReceiptsByLevel(studentLevel));
+    public ResponseEntity<CursorPage<SchoolFeeResponse>> getAllSchoolFeeReceiptsByLevel(
+            @PathVariable Level studentLevel,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size){
+        return ResponseEntity.ok(service.getAllSchoolFeeReceiptsByLevel(studentLevel, cursor, size));
     }
 }
@@ -0,0 +1,25 @@
+package com.eduvault.dto;
+
+import com.eduvault.user.enums.BulkImportEntryStatus;
+import com.eduvault.user.enums.DocumentType;
+import com.eduvault.user.enums.Level;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BulkImportEntryResult {
+    private String fileName;
+    private String matricNumber;
+    private DocumentType documentType;
+    private Level studentLevel;
+    private BulkImportEntryStatus status;
+    private UUID receiptId;
+    private String message;
+}
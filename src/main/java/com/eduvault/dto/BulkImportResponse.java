@@ -0,0 +1,20 @@
+package com.eduvault.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BulkImportResponse {
+    private int total;
+    private int imported;
+    private int failed;
+    private int skipped;
+    private List<BulkImportEntryResult> entries;
+}
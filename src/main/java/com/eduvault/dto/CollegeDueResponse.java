@@ -1,13 +1,17 @@
 package com.eduvault.dto;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
 import java.util.UUID;
 
 
 @Data
+@NoArgsConstructor
+@AllArgsConstructor
 @Builder
 public class CollegeDueResponse {
     private UUID id;
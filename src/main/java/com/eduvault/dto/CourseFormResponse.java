@@ -1,12 +1,16 @@
 package com.eduvault.dto;
 
 import com.eduvault.user.enums.Status;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
 import java.util.UUID;
 @Data
+@NoArgsConstructor
+@AllArgsConstructor
 @Builder
 public class CourseFormResponse {
     private UUID id;
@@ -7,5 +7,5 @@ import lombok.Data;
 @AllArgsConstructor
 public class FileDownloadResponse {
     private String fileName;
-    private byte[] fileContent;
+    private String pdfUrl;
 }
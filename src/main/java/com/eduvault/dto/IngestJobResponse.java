@@ -0,0 +1,28 @@
+package com.eduvault.dto;
+
+import com.eduvault.user.enums.DocumentType;
+import com.eduvault.user.enums.IngestJobStatus;
+import com.eduvault.user.enums.Level;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IngestJobResponse {
+    private UUID jobId;
+    private DocumentType documentType;
+    private Level studentLevel;
+    private IngestJobStatus status;
+    private UUID receiptId;
+    private String errorMessage;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime completedAt;
+}
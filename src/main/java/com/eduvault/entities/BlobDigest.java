@@ -0,0 +1,45 @@
+package com.eduvault.entities;
+
+import com.eduvault.user.enums.DocumentType;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Entity
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(
+        name = "blob_digest",
+        uniqueConstraints = @UniqueConstraint(name = "uk_blob_digest_sha256_type", columnNames = {"sha256", "document_type"}),
+        indexes = @Index(name = "idx_blob_digest_sha256", columnList = "sha256")
+)
+public class BlobDigest {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private UUID id;
+
+    @Column(nullable = false, length = 64)
+    private String sha256;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "document_type", nullable = false)
+    private DocumentType documentType;
+
+    private long size;
+
+    @Column(nullable = false)
+    private String pdfUrl;
+
+    private String publicId;
+
+    @Column(columnDefinition = "TEXT")
+    private String content;
+
+    private LocalDateTime createdAt;
+}
@@ -16,7 +16,15 @@ import java.util.UUID;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "dept_due")
+@Table(
+        name = "dept_due",
+        indexes = {
+                @Index(name = "idx_dept_due_owner_level_state", columnList = "uploaded_by, student_level, state"),
+                @Index(name = "idx_dept_due_owner_uploaded_at", columnList = "uploaded_by, uploaded_at DESC"),
+                @Index(name = "idx_dept_due_uploaded_at_id", columnList = "uploaded_at DESC, id DESC"),
+                @Index(name = "idx_dept_due_level_uploaded_at_id", columnList = "student_level, uploaded_at DESC, id DESC")
+        }
+)
 public class DeptDue {
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
@@ -0,0 +1,48 @@
+package com.eduvault.entities;
+
+import com.eduvault.user.enums.DocumentType;
+import com.eduvault.user.enums.IngestJobStatus;
+import com.eduvault.user.enums.Level;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Entity
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "ingest_job")
+public class IngestJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private UUID id;
+
+    @Column(nullable = false)
+    private String ownerEmail;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private DocumentType documentType;
+
+    @Enumerated(EnumType.STRING)
+    private Level studentLevel;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private IngestJobStatus status;
+
+    private UUID receiptId;
+
+    private String errorMessage;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime startedAt;
+
+    private LocalDateTime completedAt;
+}
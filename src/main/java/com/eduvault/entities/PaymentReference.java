@@ -0,0 +1,40 @@
+package com.eduvault.entities;
+
+import com.eduvault.user.enums.DocumentType;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Entity
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(
+        name = "payment_reference",
+        uniqueConstraints = @UniqueConstraint(name = "uk_payment_reference_type", columnNames = {"reference", "document_type"}),
+        indexes = @Index(name = "idx_payment_reference_reference", columnList = "reference")
+)
+public class PaymentReference {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private UUID id;
+
+    @Column(nullable = false, length = 64)
+    private String reference;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "document_type", nullable = false)
+    private DocumentType documentType;
+
+    @Column(nullable = false)
+    private UUID uploadedBy;
+
+    private UUID receiptId;
+
+    private LocalDateTime createdAt;
+}
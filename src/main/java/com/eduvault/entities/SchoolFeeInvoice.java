@@ -16,7 +16,15 @@ import java.util.UUID;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "sch_fee_invoice")
+@Table(
+        name = "sch_fee_invoice",
+        indexes = {
+                @Index(name = "idx_sch_fee_invoice_owner_level_state", columnList = "uploaded_by, student_level, state"),
+                @Index(name = "idx_sch_fee_invoice_owner_uploaded_at", columnList = "uploaded_by, uploaded_at DESC"),
+                @Index(name = "idx_sch_fee_invoice_uploaded_at_id", columnList = "uploaded_at DESC, id DESC"),
+                @Index(name = "idx_sch_fee_invoice_level_uploaded_at_id", columnList = "student_level, uploaded_at DESC, id DESC")
+        }
+)
 public class SchoolFeeInvoice {
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
@@ -16,7 +16,15 @@ import java.util.UUID;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "sch_fee_receipt")
+@Table(
+        name = "sch_fee_receipt",
+        indexes = {
+                @Index(name = "idx_sch_fee_receipt_owner_level_state", columnList = "uploaded_by, student_level, state"),
+                @Index(name = "idx_sch_fee_receipt_owner_uploaded_at", columnList = "uploaded_by, uploaded_at DESC"),
+                @Index(name = "idx_sch_fee_receipt_uploaded_at_id", columnList = "uploaded_at DESC, id DESC"),
+                @Index(name = "idx_sch_fee_receipt_level_uploaded_at_id", columnList = "student_level, uploaded_at DESC, id DESC")
+        }
+)
 public class SchoolFeeReceipt {
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
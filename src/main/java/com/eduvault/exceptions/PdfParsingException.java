@@ -0,0 +1,7 @@
+package com.eduvault.exceptions;
+
+public class PdfParsingException extends RuntimeException {
+    public PdfParsingException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package com.eduvault.exceptions;
+
+import java.time.Duration;
+
+public class ServerBusyException extends RuntimeException {
+    private final Duration retryAfter;
+
+    public ServerBusyException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,284 @@
+package com.eduvault.export;
+
+import com.eduvault.repositories.projections.ApprovalWatermark;
+import com.eduvault.services.CollegeDueService;
+import com.eduvault.services.CourseFormService;
+import com.eduvault.services.DeptDueService;
+import com.eduvault.services.RemitaSchoolFeeReceiptService;
+import com.eduvault.services.SchoolFeeInvoiceService;
+import com.eduvault.services.SchoolFeeReceiptService;
+import com.eduvault.storage.BlobCache;
+import com.eduvault.user.enums.DocumentType;
+import com.eduvault.user.enums.Level;
+import com.eduvault.user.enums.Status;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Keeps a prebuilt archive of approved receipts per document type and level on local disk.
+ * <p>
+ * Next to each archive sits a marker file recording the approval watermark it was built to (the
+ * number of approved receipts and the latest approval time) and whether every receipt could be
+ * downloaded. A download is served only while the marker matches the database, so archives
+ * survive restarts and notice approvals or rejections handled by other nodes or whose events were
+ * lost. When the archive is missing or behind, it is rebuilt on the archive pool and the caller is
+ * told to come back. Approvals handled on this node append their receipt and advance the marker,
+ * so a steady trickle of approvals does not force rebuilds.
+ */
+@Slf4j
+@Service
+public class ApprovedArchiveService {
+    private static final String COUNT = "approvedCount";
+    private static final String LAST_APPROVED_AT = "lastApprovedAt";
+    private static final String COMPLETE = "complete";
+
+    private final ReceiptZipExporter receiptZipExporter;
+    private final BlobCache blobCache;
+    private final TaskExecutor exportArchiveExecutor;
+    private final Map<DocumentType, Function<Level, List<ZipItem>>> sources = new EnumMap<>(DocumentType.class);
+    private final Map<DocumentType, Function<Level, ApprovalWatermark>> watermarks = new EnumMap<>(DocumentType.class);
+    private final Set<Path> building = ConcurrentHashMap.newKeySet();
+
+    @Value("${app.export.archive.root:${java.io.tmpdir}/eduvault-archives}")
+    private String root;
+
+    public ApprovedArchiveService(ReceiptZipExporter receiptZipExporter,
+                                  BlobCache blobCache,
+                                  @Qualifier("exportArchiveExecutor") TaskExecutor exportArchiveExecutor,
+                                  CollegeDueService collegeDueService,
+                                  DeptDueService deptDueService,
+                                  CourseFormService courseFormService,
+                                  SchoolFeeReceiptService schoolFeeReceiptService,
+                                  SchoolFeeInvoiceService schoolFeeInvoiceService,
+                                  RemitaSchoolFeeReceiptService remitaSchoolFeeReceiptService) {
+        this.receiptZipExporter = receiptZipExporter;
+        this.blobCache = blobCache;
+        this.exportArchiveExecutor = exportArchiveExecutor;
+        sources.put(DocumentType.COLLEGE_DUE, collegeDueService::approvedZipItems);
+        sources.put(DocumentType.DEPT_DUE, deptDueService::approvedZipItems);
+        sources.put(DocumentType.COURSE_FORM, courseFormService::approvedZipItems);
+        sources.put(DocumentType.SCHOOL_FEE_RECEIPT, schoolFeeReceiptService::approvedZipItems);
+        sources.put(DocumentType.SCHOOL_FEE_INVOICE, schoolFeeInvoiceService::approvedZipItems);
+        sources.put(DocumentType.REMITA_SCHOOL_FEE_RECEIPT, remitaSchoolFeeReceiptService::approvedZipItems);
+        watermarks.put(DocumentType.COLLEGE_DUE, collegeDueService::approvedWatermark);
+        watermarks.put(DocumentType.DEPT_DUE, deptDueService::approvedWatermark);
+        watermarks.put(DocumentType.COURSE_FORM, courseFormService::approvedWatermark);
+        watermarks.put(DocumentType.SCHOOL_FEE_RECEIPT, schoolFeeReceiptService::approvedWatermark);
+        watermarks.put(DocumentType.SCHOOL_FEE_INVOICE, schoolFeeInvoiceService::approvedWatermark);
+        watermarks.put(DocumentType.REMITA_SCHOOL_FEE_RECEIPT, remitaSchoolFeeReceiptService::approvedWatermark);
+    }
+
+    /**
+     * Returns the archive for a document type and level if it is up to date with the database.
+     * Otherwise a rebuild is scheduled in the background and the result is empty. An archive that
+     * is current but missing receipts that could not be downloaded is still served, and a rebuild
+     * is scheduled to fill the gaps.
+     */
+    public Optional<Path> archive(DocumentType documentType, Level studentLevel) throws IOException {
+        Path archive = archivePath(documentType, studentLevel);
+        Marker marker = readMarker(archive);
+        if (marker == null || !Files.exists(archive) || !marker.matches(currentWatermark(documentType, studentLevel))) {
+            scheduleBuild(documentType, studentLevel);
+            return Optional.empty();
+        }
+        if (!marker.complete()) {
+            scheduleBuild(documentType, studentLevel);
+        }
+        return Optional.of(archive);
+    }
+
+    @Async("exportArchiveExecutor")
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onReceiptReviewed(ReceiptReviewedEvent event) {
+        if (event.documentType() == null || event.studentLevel() == null) {
+            // archives are kept per level, so a receipt without one is in none of them
+            log.debug("Skipping archive update for a {} receipt without a level", event.documentType());
+            return;
+        }
+        Path archive = archivePath(event.documentType(), event.studentLevel());
+        try {
+            if (event.state() == Status.APPROVED) {
+                if (event.item() != null && event.item().url() != null) {
+                    append(event.documentType(), event.studentLevel(), archive, event.item());
+                }
+            } else {
+                deleteArchive(archive);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not update archive {}, it will be rebuilt: {}", archive, e.getMessage());
+            deleteArchiveQuietly(archive);
+        }
+    }
+
+    private void scheduleBuild(DocumentType documentType, Level studentLevel) {
+        Path archive = archivePath(documentType, studentLevel);
+        if (!building.add(archive)) {
+            return;
+        }
+        try {
+            exportArchiveExecutor.execute(() -> {
+                try {
+                    build(documentType, studentLevel, archive);
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Could not build archive {}: {}", archive, e.getMessage());
+                } finally {
+                    building.remove(archive);
+                }
+            });
+        } catch (RuntimeException e) {
+            building.remove(archive);
+            throw e;
+        }
+    }
+
+    /**
+     * Builds into a staging file and moves it into place. The watermark is read before the
+     * receipts, so approvals that land during the build leave the marker behind rather than ahead.
+     */
+    private void build(DocumentType documentType, Level studentLevel, Path archive) throws IOException {
+        ApprovalWatermark watermark = currentWatermark(documentType, studentLevel);
+        List<ZipItem> items = sources.get(documentType).apply(studentLevel);
+
+        Files.createDirectories(archive.getParent());
+        Path staging = Files.createTempFile(archive.getParent(), "build-", ".zip");
+        try {
+            int failed;
+            try (OutputStream out = Files.newOutputStream(staging)) {
+                failed = receiptZipExporter.write(items, out, false);
+            }
+            if (failed > 0) {
+                log.warn("Archive {} is missing {} receipt(s) that could not be downloaded", archive, failed);
+            }
+            // drop the old marker first so a crash between the two moves leaves no stale match
+            Files.deleteIfExists(markerPath(archive));
+            Files.move(staging, archive, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            writeMarker(archive, new Marker(watermark.getApprovedCount(), watermark.getLastApprovedAt(), failed == 0));
+        } finally {
+            Files.deleteIfExists(staging);
+        }
+    }
+
+    /**
+     * Adds one entry through the ZIP file system provider, which copies the existing entries
+     * without recompressing them and swaps the finished file into place on close. The marker only
+     * moves forward when this approval is the one receipt the archive was behind by; otherwise it
+     * stays behind and the next download rebuilds. Archives that have not been built yet are left
+     * alone, since building them will pick the receipt up.
+     */
+    private void append(DocumentType documentType, Level studentLevel, Path archive, ZipItem item) throws IOException {
+        Marker marker = readMarker(archive);
+        if (marker == null || !Files.exists(archive)) {
+            return;
+        }
+        URI uri = URI.create("jar:" + archive.toUri());
+        try (FileSystem zip = FileSystems.newFileSystem(uri, Map.of());
+             InputStream in = blobCache.openStream(item.url())) {
+            Files.copy(in, zip.getPath(item.path()));
+        } catch (FileAlreadyExistsException e) {
+            log.debug("Archive {} already has {}", archive, item.path());
+        }
+
+        ApprovalWatermark current = currentWatermark(documentType, studentLevel);
+        if (current.getApprovedCount() == marker.approvedCount() + 1) {
+            writeMarker(archive, new Marker(current.getApprovedCount(), current.getLastApprovedAt(), marker.complete()));
+        }
+    }
+
+    private ApprovalWatermark currentWatermark(DocumentType documentType, Level studentLevel) {
+        return watermarks.get(documentType).apply(studentLevel);
+    }
+
+    private Marker readMarker(Path archive) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(markerPath(archive))) {
+            properties.load(reader);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        try {
+            String lastApprovedAt = properties.getProperty(LAST_APPROVED_AT, "");
+            return new Marker(Long.parseLong(properties.getProperty(COUNT)),
+                    lastApprovedAt.isEmpty() ? null : LocalDateTime.parse(lastApprovedAt),
+                    Boolean.parseBoolean(properties.getProperty(COMPLETE)));
+        } catch (RuntimeException e) {
+            log.warn("Ignoring unreadable archive marker for {}: {}", archive, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeMarker(Path archive, Marker marker) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(COUNT, Long.toString(marker.approvedCount()));
+        properties.setProperty(LAST_APPROVED_AT, marker.lastApprovedAt() != null ? marker.lastApprovedAt().toString() : "");
+        properties.setProperty(COMPLETE, Boolean.toString(marker.complete()));
+
+        Path target = markerPath(archive);
+        Path staging = Files.createTempFile(target.getParent(), "marker-", ".properties");
+        try {
+            try (Writer writer = Files.newBufferedWriter(staging)) {
+                properties.store(writer, null);
+            }
+            Files.move(staging, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(staging);
+        }
+    }
+
+    private Path archivePath(DocumentType documentType, Level studentLevel) {
+        return Path.of(root, documentType.name(), studentLevel.name() + ".zip");
+    }
+
+    private Path markerPath(Path archive) {
+        return archive.resolveSibling(archive.getFileName() + ".properties");
+    }
+
+    private void deleteArchive(Path archive) throws IOException {
+        Files.deleteIfExists(markerPath(archive));
+        Files.deleteIfExists(archive);
+    }
+
+    private void deleteArchiveQuietly(Path archive) {
+        try {
+            deleteArchive(archive);
+        } catch (IOException e) {
+            log.warn("Could not delete archive {}: {}", archive, e.getMessage());
+        }
+    }
+
+    private record Marker(long approvedCount, LocalDateTime lastApprovedAt, boolean complete) {
+        boolean matches(ApprovalWatermark watermark) {
+            return approvedCount == watermark.getApprovedCount()
+                    && Objects.equals(lastApprovedAt, watermark.getLastApprovedAt());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.eduvault.export;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Decides how each export entry is stored and does the work off the writer thread. The start of
+ * the file is test-compressed; PDFs are mostly deflated already, so when the sample barely
+ * shrinks the entry is STORED with only a CRC pass. Otherwise the file is deflated into a side
+ * file that the writer copies in raw.
+ */
+@Slf4j
+@Component
+public class EntryCompressor {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final int sampleBytes;
+    private final double minSavings;
+
+    public EntryCompressor(@Value("${app.export.zip.sample-bytes:65536}") int sampleBytes,
+                           @Value("${app.export.zip.min-savings:0.1}") double minSavings) {
+        this.sampleBytes = sampleBytes;
+        this.minSavings = minSavings;
+    }
+
+    /**
+     * Prepares {@code file} for the archive. The returned entry owns its data file; {@code file}
+     * is deleted when a deflated copy replaces it.
+     */
+    PreparedEntry prepare(Path file) throws IOException {
+        long size = Files.size(file);
+        if (!worthDeflating(file)) {
+            return new PreparedEntry(file, ZipEntry.STORED, crc(file), size, size);
+        }
+
+        Path deflated = Files.createTempFile(file.getParent(), "export-", ".deflate");
+        try {
+            CRC32 crc = new CRC32();
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            byte[] input = new byte[BUFFER_SIZE];
+            byte[] output = new byte[BUFFER_SIZE];
+            try (InputStream in = Files.newInputStream(file);
+                 OutputStream out = Files.newOutputStream(deflated)) {
+                int read;
+                while ((read = in.read(input)) != -1) {
+                    crc.update(input, 0, read);
+                    deflater.setInput(input, 0, read);
+                    while (!deflater.needsInput()) {
+                        out.write(output, 0, deflater.deflate(output));
+                    }
+                }
+                deflater.finish();
+                while (!deflater.finished()) {
+                    out.write(output, 0, deflater.deflate(output));
+                }
+            } finally {
+                deflater.end();
+            }
+            long compressedSize = Files.size(deflated);
+            Files.delete(file);
+            return new PreparedEntry(deflated, ZipEntry.DEFLATED, crc.getValue(), size, compressedSize);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(deflated);
+            throw e;
+        }
+    }
+
+    private boolean worthDeflating(Path file) throws IOException {
+        byte[] sample = new byte[sampleBytes];
+        int length;
+        try (InputStream in = Files.newInputStream(file)) {
+            length = in.readNBytes(sample, 0, sample.length);
+        }
+        if (length == 0) {
+            return false;
+        }
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(sample, 0, length);
+            deflater.finish();
+            byte[] output = new byte[BUFFER_SIZE];
+            long compressed = 0;
+            while (!deflater.finished()) {
+                compressed += deflater.deflate(output);
+            }
+            return compressed < length * (1 - minSavings);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private long crc(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+}
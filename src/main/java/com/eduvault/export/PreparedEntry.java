@@ -0,0 +1,10 @@
+package com.eduvault.export;
+
+import java.nio.file.Path;
+
+/**
+ * An export entry that is ready to be copied into an archive as is: {@code data} holds the
+ * bytes exactly as they go into the ZIP, already deflated when {@code method} is DEFLATED.
+ */
+record PreparedEntry(Path data, int method, long crc, long size, long compressedSize) {
+}
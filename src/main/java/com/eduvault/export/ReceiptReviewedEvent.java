@@ -0,0 +1,13 @@
+package com.eduvault.export;
+
+import com.eduvault.user.enums.DocumentType;
+import com.eduvault.user.enums.Level;
+import com.eduvault.user.enums.Status;
+
+/**
+ * Published when staff approve or reject a receipt, and delivered to listeners once the review
+ * has committed. {@code item} is the archive entry for an approved receipt and {@code null}
+ * otherwise.
+ */
+public record ReceiptReviewedEvent(DocumentType documentType, Level studentLevel, Status state, ZipItem item) {
+}
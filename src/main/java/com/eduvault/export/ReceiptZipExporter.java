@@ -0,0 +1,214 @@
+package com.eduvault.export;
+
+import com.eduvault.storage.BlobCache;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Writes receipt archives straight to an output stream. Stored PDFs are fetched on the export
+ * fetch pool, a bounded number ahead of the writer, spilled to disk and then prepared by the
+ * {@link EntryCompressor} on the compress pool. The writer takes them back in list order, so
+ * the archive layout does not depend on which download finishes first, and only copies the
+ * prepared bytes in raw. Memory use stays at one copy buffer however many receipts the export
+ * covers.
+ */
+@Slf4j
+@Component
+public class ReceiptZipExporter {
+    static final String MANIFEST_NAME = "manifest.csv";
+
+    private final BlobCache blobCache;
+    private final AsyncTaskExecutor exportFetchExecutor;
+    private final AsyncTaskExecutor exportCompressExecutor;
+    private final EntryCompressor entryCompressor;
+    private final int parallelism;
+
+    @Value("${app.ingest.spill-dir:${java.io.tmpdir}}")
+    private String spillDir;
+
+    public ReceiptZipExporter(BlobCache blobCache,
+                              @Qualifier("exportFetchExecutor") AsyncTaskExecutor exportFetchExecutor,
+                              @Qualifier("exportCompressExecutor") AsyncTaskExecutor exportCompressExecutor,
+                              EntryCompressor entryCompressor,
+                              @Value("${app.export.fetch.parallelism:8}") int parallelism) {
+        this.blobCache = blobCache;
+        this.exportFetchExecutor = exportFetchExecutor;
+        this.exportCompressExecutor = exportCompressExecutor;
+        this.entryCompressor = entryCompressor;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Streams every item into a ZIP on {@code out}, followed by a {@value #MANIFEST_NAME} entry
+     * listing each item and whether it made it into the archive. Items that cannot be downloaded
+     * are recorded there and left out; a failure while writing aborts the export, since the
+     * client has gone away.
+     */
+    public void write(List<ZipItem> items, OutputStream out) throws IOException {
+        write(items, out, true);
+    }
+
+    /**
+     * Like {@link #write(List, OutputStream)}, but the manifest can be left out for archives that
+     * are appended to later. Returns the number of items that could not be downloaded.
+     */
+    public int write(List<ZipItem> items, OutputStream out, boolean includeManifest) throws IOException {
+        int failed = 0;
+        Set<String> names = new HashSet<>();
+        StringBuilder manifest = new StringBuilder("path,url,status,error\n");
+        Deque<Fetch> window = new ArrayDeque<>(parallelism);
+        Iterator<ZipItem> pending = items.iterator();
+
+        ZipArchiveOutputStream zos = new ZipArchiveOutputStream(out);
+        try {
+            fill(window, pending);
+            while (!window.isEmpty()) {
+                Fetch fetch = window.poll();
+                String name = uniqueName(fetch.item().path(), names);
+                PreparedEntry prepared;
+                try {
+                    prepared = fetch.result().join();
+                } catch (CompletionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    log.warn("Could not download PDF {} for export: {}", fetch.item().url(), cause.getMessage());
+                    manifest.append(csvRow(name, fetch.item().url(), "FAILED", cause.getMessage()));
+                    failed++;
+                    fill(window, pending);
+                    continue;
+                }
+
+                try (InputStream data = Files.newInputStream(prepared.data())) {
+                    zos.addRawArchiveEntry(rawEntry(name, prepared), data);
+                } finally {
+                    Files.deleteIfExists(prepared.data());
+                }
+                manifest.append(csvRow(name, fetch.item().url(), "OK", null));
+                fill(window, pending);
+            }
+
+            if (includeManifest) {
+                zos.putArchiveEntry(new ZipArchiveEntry(uniqueName(MANIFEST_NAME, names)));
+                zos.write(manifest.toString().getBytes(StandardCharsets.UTF_8));
+                zos.closeArchiveEntry();
+            }
+            zos.finish();
+            zos.flush();
+            return failed;
+        } finally {
+            window.forEach(this::discard);
+        }
+    }
+
+    private void fill(Deque<Fetch> window, Iterator<ZipItem> pending) {
+        while (window.size() < parallelism && pending.hasNext()) {
+            ZipItem item = pending.next();
+            window.add(new Fetch(item, CompletableFuture.supplyAsync(() -> download(item), exportFetchExecutor)
+                    .thenApplyAsync(this::prepare, exportCompressExecutor)));
+        }
+    }
+
+    private Path download(ZipItem item) {
+        Path file = null;
+        try {
+            Path dir = Path.of(spillDir);
+            Files.createDirectories(dir);
+            file = Files.createTempFile(dir, "export-", ".pdf");
+            try (InputStream in = blobCache.openStream(item.url())) {
+                Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return file;
+        } catch (IOException e) {
+            deleteQuietly(file);
+            throw new CompletionException(e);
+        } catch (RuntimeException e) {
+            deleteQuietly(file);
+            throw e;
+        }
+    }
+
+    private PreparedEntry prepare(Path file) {
+        try {
+            return entryCompressor.prepare(file);
+        } catch (IOException e) {
+            deleteQuietly(file);
+            throw new CompletionException(e);
+        } catch (RuntimeException e) {
+            deleteQuietly(file);
+            throw e;
+        }
+    }
+
+    private ZipArchiveEntry rawEntry(String name, PreparedEntry prepared) {
+        ZipArchiveEntry entry = new ZipArchiveEntry(name);
+        entry.setMethod(prepared.method());
+        entry.setCrc(prepared.crc());
+        entry.setSize(prepared.size());
+        entry.setCompressedSize(prepared.compressedSize());
+        return entry;
+    }
+
+    private void discard(Fetch fetch) {
+        fetch.result().thenAccept(prepared -> deleteQuietly(prepared.data()));
+    }
+
+    private void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete export spill file {}: {}", file, e.getMessage());
+        }
+    }
+
+    private String csvRow(String path, String url, String status, String error) {
+        return csv(path) + "," + csv(url) + "," + status + "," + csv(error) + "\n";
+    }
+
+    private String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        return "\"" + value.replace("\"", "\"\"").replace('\n', ' ').replace('\r', ' ') + "\"";
+    }
+
+    private String uniqueName(String path, Set<String> names) {
+        if (names.add(path)) {
+            return path;
+        }
+        int dot = path.lastIndexOf('.');
+        String base = dot > 0 ? path.substring(0, dot) : path;
+        String extension = dot > 0 ? path.substring(dot) : "";
+        for (int n = 2; ; n++) {
+            String candidate = base + "-" + n + extension;
+            if (names.add(candidate)) {
+                return candidate;
+            }
+        }
+    }
+
+    private record Fetch(ZipItem item, CompletableFuture<PreparedEntry> result) {
+    }
+}
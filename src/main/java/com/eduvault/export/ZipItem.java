@@ -0,0 +1,8 @@
+package com.eduvault.export;
+
+/**
+ * One file to place in an export archive: the path inside the archive and the stored URL to
+ * read it from.
+ */
+public record ZipItem(String path, String url) {
+}
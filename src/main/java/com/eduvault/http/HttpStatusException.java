@@ -0,0 +1,19 @@
+package com.eduvault.http;
+
+import java.io.IOException;
+
+/**
+ * An outbound request that got a non-2xx response.
+ */
+public class HttpStatusException extends IOException {
+    private final int status;
+
+    public HttpStatusException(String message, int status) {
+        super(message);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
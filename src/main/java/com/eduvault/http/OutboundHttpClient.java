@@ -0,0 +1,331 @@
+package com.eduvault.http;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The one HTTP client for outbound calls: stored document fetches and payment provider lookups.
+ * It keeps pooled keep-alive connections, negotiates HTTP/2 where the server offers it, caps how
+ * many requests run against one host at a time and retries failed GETs with jittered backoff.
+ * {@code app.http.read-timeout} bounds both the wait for response headers and any single read of
+ * a response body.
+ * Requests are timed per host under {@code eduvault.http.client.requests}.
+ */
+@Slf4j
+@Component
+public class OutboundHttpClient {
+    private static final Set<Integer> RETRYABLE_STATUSES = Set.of(408, 429, 500, 502, 503, 504);
+
+    private final HttpClient client;
+    private final MeterRegistry meterRegistry;
+    private final Duration readTimeout;
+    private final Duration permitTimeout;
+    private final int maxPerHost;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter retries;
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "outbound-http-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public OutboundHttpClient(MeterRegistry meterRegistry,
+                              @Value("${app.http.connect-timeout:5s}") Duration connectTimeout,
+                              @Value("${app.http.read-timeout:30s}") Duration readTimeout,
+                              @Value("${app.http.max-per-host:16}") int maxPerHost,
+                              @Value("${app.http.permit-timeout:30s}") Duration permitTimeout,
+                              @Value("${app.http.max-attempts:3}") int maxAttempts,
+                              @Value("${app.http.retry-backoff:200ms}") Duration retryBackoff) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.meterRegistry = meterRegistry;
+        this.readTimeout = readTimeout;
+        this.maxPerHost = maxPerHost;
+        this.permitTimeout = permitTimeout;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoff = retryBackoff;
+        this.retries = meterRegistry.counter("eduvault.http.client.retries");
+        Gauge.builder("eduvault.http.client.in.flight", inFlight, AtomicInteger::get)
+                .description("Outbound requests holding a per-host slot")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens the body of a GET. The host slot is held until the returned stream is closed, so
+     * callers must close it.
+     */
+    public InputStream openStream(String url) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(uri(url)).timeout(readTimeout).GET().build();
+        return send(request).body();
+    }
+
+    /**
+     * Sends a GET with the given headers, such as {@code Range} or {@code If-None-Match}, and
+     * returns the response with its body unread. Partial content and {@code 304 Not Modified}
+     * come back as responses; other non-2xx statuses are reported as an
+     * {@link HttpStatusException}. The host slot is held until the response is closed.
+     */
+    public OutboundResponse open(String url, Map<String, String> headers) throws IOException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri(url)).timeout(readTimeout).GET();
+        headers.forEach(builder::header);
+        return send(builder.build());
+    }
+
+    /**
+     * Sends a GET with the given headers and returns the body as text. Non-2xx responses that are
+     * not worth retrying, or still failing after the last attempt, are reported as an
+     * {@link HttpStatusException}.
+     */
+    public String getString(String url, Map<String, String> headers) throws IOException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri(url)).timeout(readTimeout).GET();
+        headers.forEach(builder::header);
+        try (InputStream in = send(builder.build()).body()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private URI uri(String url) throws IOException {
+        URI uri;
+        try {
+            uri = URI.create(url);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed URL: " + url, e);
+        }
+        if (uri.getHost() == null) {
+            throw new IOException("URL has no host: " + url);
+        }
+        return uri;
+    }
+
+    private OutboundResponse send(HttpRequest request) throws IOException {
+        String host = request.uri().getHost();
+        Semaphore permits = hostPermits.computeIfAbsent(host, this::newHostPermits);
+        acquire(permits, host);
+        inFlight.incrementAndGet();
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+                permits.release();
+            }
+        };
+
+        try {
+            HttpResponse<InputStream> response = sendWithRetry(request, host);
+            InputStream body = new WatchedBody(response.body(), request.uri(), release);
+            return new OutboundResponse(response.statusCode(), response.headers(), body);
+        } catch (IOException | RuntimeException e) {
+            release.run();
+            throw e;
+        }
+    }
+
+    private HttpResponse<InputStream> sendWithRetry(HttpRequest request, String host) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            String outcome = "IO_ERROR";
+            try {
+                HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+                int status = response.statusCode();
+                outcome = String.valueOf(status);
+                if (status >= 200 && status < 300 || status == 304) {
+                    return response;
+                }
+                response.body().close();
+                if (!RETRYABLE_STATUSES.contains(status) || attempt >= maxAttempts) {
+                    throw new HttpStatusException("GET " + request.uri() + " returned HTTP " + status, status);
+                }
+                log.debug("GET {} returned HTTP {}, retrying (attempt {} of {})", request.uri(), status, attempt, maxAttempts);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while calling " + host);
+            } catch (HttpStatusException e) {
+                throw e;
+            } catch (IOException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                log.debug("GET {} failed, retrying (attempt {} of {}): {}", request.uri(), attempt, maxAttempts, e.getMessage());
+            } finally {
+                sample.stop(meterRegistry.timer("eduvault.http.client.requests", "host", host, "outcome", outcome));
+            }
+            retries.increment();
+            backoff(attempt);
+        }
+    }
+
+    /**
+     * Full jitter: a random wait between zero and the exponential backoff for this attempt, so
+     * callers that failed together do not retry together.
+     */
+    private void backoff(int attempt) throws InterruptedIOException {
+        long ceiling = retryBackoff.toMillis() << Math.min(attempt - 1, 10);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+    }
+
+    private void acquire(Semaphore permits, String host) throws IOException {
+        try {
+            if (!permits.tryAcquire(permitTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new IOException("Timed out waiting for a connection slot to " + host);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a connection slot to " + host);
+        }
+    }
+
+    private Semaphore newHostPermits(String host) {
+        Semaphore permits = new Semaphore(maxPerHost);
+        Gauge.builder("eduvault.http.client.host.waiting", permits, Semaphore::getQueueLength)
+                .description("Outbound requests waiting for a per-host slot")
+                .tag("host", host)
+                .register(meterRegistry);
+        return permits;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        watchdog.shutdownNow();
+    }
+
+    /**
+     * A response body that gives up on a read blocked for longer than the read timeout.
+     * {@link HttpRequest#timeout} only covers the wait for the response headers, so without this
+     * a server that stalls mid-body would hold the read, and the host slot, forever. The
+     * watchdog closes the stream, which wakes the reader; the read then fails instead of looking
+     * like the end of the body. Time spent by the caller between reads does not count.
+     */
+    private class WatchedBody extends FilterInputStream {
+        private final URI uri;
+        private final Runnable release;
+        private final ScheduledFuture<?> check;
+        private volatile long readingSince;
+        private volatile boolean timedOut;
+
+        WatchedBody(InputStream in, URI uri, Runnable release) {
+            super(in);
+            this.uri = uri;
+            this.release = release;
+            long period = Math.max(100, readTimeout.toMillis() / 4);
+            this.check = watchdog.scheduleWithFixedDelay(this::check, period, period, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long started = beforeRead();
+            try {
+                return afterRead(super.read());
+            } catch (IOException e) {
+                throw timedOut ? stalled() : e;
+            } finally {
+                readDone(started);
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long started = beforeRead();
+            try {
+                return afterRead(super.read(b, off, len));
+            } catch (IOException e) {
+                throw timedOut ? stalled() : e;
+            } finally {
+                readDone(started);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            check.cancel(false);
+            try {
+                super.close();
+            } finally {
+                release.run();
+            }
+        }
+
+        private long beforeRead() throws IOException {
+            if (timedOut) {
+                throw stalled();
+            }
+            long now = System.nanoTime();
+            readingSince = now;
+            return now;
+        }
+
+        /**
+         * A read woken by the watchdog returns end of stream; report it as the timeout instead.
+         */
+        private int afterRead(int result) throws IOException {
+            if (timedOut) {
+                throw stalled();
+            }
+            return result;
+        }
+
+        private void readDone(long started) {
+            if (readingSince == started) {
+                readingSince = 0;
+            }
+        }
+
+        private HttpTimeoutException stalled() {
+            return new HttpTimeoutException("Read from " + uri.getHost() + " stalled for more than " + readTimeout);
+        }
+
+        private void check() {
+            long since = readingSince;
+            if (since == 0 || System.nanoTime() - since < readTimeout.toNanos()) {
+                return;
+            }
+            timedOut = true;
+            check.cancel(false);
+            log.debug("Aborting stalled read of {}", uri);
+            try {
+                in.close();
+            } catch (IOException e) {
+                log.debug("Could not abort stalled read of {}: {}", uri, e.getMessage());
+            }
+        }
+    }
+}
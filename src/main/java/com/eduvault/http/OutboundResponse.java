@@ -0,0 +1,18 @@
+package com.eduvault.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpHeaders;
+
+/**
+ * The status, headers and body of an outbound GET. The per-host slot is held until the response
+ * is closed.
+ */
+public record OutboundResponse(int status, HttpHeaders headers, InputStream body) implements Closeable {
+
+    @Override
+    public void close() throws IOException {
+        body.close();
+    }
+}
@@ -0,0 +1,315 @@
+package com.eduvault.ingest;
+
+import com.eduvault.config.PdfParsingProperties;
+import com.eduvault.dto.BulkImportEntryResult;
+import com.eduvault.dto.BulkImportResponse;
+import com.eduvault.services.ReceiptUploadDispatcher;
+import com.eduvault.user.User;
+import com.eduvault.user.enums.BulkImportEntryStatus;
+import com.eduvault.user.enums.DocumentType;
+import com.eduvault.user.enums.Level;
+import com.eduvault.user.repo.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Imports a batch of receipts from a ZIP archive described by a CSV manifest of
+ * {@code fileName,matricNumber,documentType,studentLevel} rows.
+ * <p>
+ * The archive is read as a stream: each listed entry is spilled to disk through the ingest
+ * path and handed to the owning receipt service on the bulk import pool. A semaphore caps how
+ * many entries are spilled or processing at once, so reading never runs far ahead of the workers.
+ * If the archive turns out to be unreadable partway through, the entries read so far are still
+ * imported and reported, and the manifest rows not reached are marked failed with the read error.
+ */
+@Slf4j
+@Service
+public class BulkImportService {
+    private static final String PDF_CONTENT_TYPE = "application/pdf";
+
+    private final IngestService ingestService;
+    private final ReceiptUploadDispatcher receiptUploadDispatcher;
+    private final UserRepository userRepository;
+    private final PdfParsingProperties pdfParsingProperties;
+    private final TaskExecutor bulkImportExecutor;
+    private final int concurrency;
+    private final int maxEntries;
+
+    public BulkImportService(IngestService ingestService,
+                             ReceiptUploadDispatcher receiptUploadDispatcher,
+                             UserRepository userRepository,
+                             PdfParsingProperties pdfParsingProperties,
+                             @Qualifier("bulkImportExecutor") TaskExecutor bulkImportExecutor,
+                             @Value("${app.ingest.bulk.concurrency:4}") int concurrency,
+                             @Value("${app.ingest.bulk.max-entries:1000}") int maxEntries) {
+        this.ingestService = ingestService;
+        this.receiptUploadDispatcher = receiptUploadDispatcher;
+        this.userRepository = userRepository;
+        this.pdfParsingProperties = pdfParsingProperties;
+        this.bulkImportExecutor = bulkImportExecutor;
+        this.concurrency = concurrency;
+        this.maxEntries = maxEntries;
+    }
+
+    public BulkImportResponse importArchive(MultipartFile archive, MultipartFile manifest) throws IOException {
+        Map<String, ManifestRow> rows = readManifest(manifest);
+        Map<String, CompletableFuture<BulkImportEntryResult>> pending = new LinkedHashMap<>();
+        List<BulkImportEntryResult> unlisted = new ArrayList<>();
+        Semaphore permits = new Semaphore(concurrency);
+        String readError = null;
+
+        try (ZipInputStream zip = new ZipInputStream(archive.getInputStream())) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (entry.isDirectory() || entry.getName().startsWith("__MACOSX/")) {
+                    continue;
+                }
+                String fileName = baseName(entry.getName());
+                ManifestRow row = rows.get(fileName);
+                if (row == null) {
+                    unlisted.add(skipped(fileName, "Not listed in the manifest"));
+                    continue;
+                }
+                if (pending.containsKey(fileName)) {
+                    unlisted.add(skipped(fileName, "Duplicate file in archive"));
+                    continue;
+                }
+
+                acquire(permits);
+                IngestedFile ingested;
+                try {
+                    ingested = ingestService.ingest(new LimitedInputStream(zip, pdfParsingProperties.getMaxBytes().toBytes()),
+                            fileName, PDF_CONTENT_TYPE);
+                } catch (IOException e) {
+                    permits.release();
+                    pending.put(fileName, CompletableFuture.completedFuture(failed(row, e.getMessage())));
+                    continue;
+                }
+
+                CompletableFuture<BulkImportEntryResult> result = new CompletableFuture<>();
+                pending.put(fileName, result);
+                try {
+                    bulkImportExecutor.execute(() -> {
+                        try (ingested) {
+                            result.complete(importEntry(row, ingested));
+                        } catch (Exception e) {
+                            result.complete(failed(row, e.getMessage()));
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    ingested.close();
+                    permits.release();
+                    result.complete(failed(row, "Could not schedule import: " + e.getMessage()));
+                }
+            }
+        } catch (InterruptedIOException e) {
+            // entries already handed to the pool finish and clean up on their own
+            throw e;
+        } catch (IOException e) {
+            log.warn("Bulk import archive became unreadable after {} entries: {}", pending.size(), e.getMessage());
+            readError = "Not imported: the archive could not be read past this point (" + e.getMessage() + ")";
+        }
+
+        List<BulkImportEntryResult> entries = new ArrayList<>();
+        for (Map.Entry<String, ManifestRow> row : rows.entrySet()) {
+            CompletableFuture<BulkImportEntryResult> result = pending.get(row.getKey());
+            if (result != null) {
+                entries.add(result.join());
+            } else if (readError != null) {
+                entries.add(failed(row.getValue(), readError));
+            } else {
+                entries.add(skipped(row.getValue(), "File not found in archive"));
+            }
+        }
+        entries.addAll(unlisted);
+
+        return BulkImportResponse.builder()
+                .total(entries.size())
+                .imported(count(entries, BulkImportEntryStatus.IMPORTED))
+                .failed(count(entries, BulkImportEntryStatus.FAILED))
+                .skipped(count(entries, BulkImportEntryStatus.SKIPPED))
+                .entries(entries)
+                .build();
+    }
+
+    private BulkImportEntryResult importEntry(ManifestRow row, IngestedFile file) throws IOException {
+        User user = userRepository.findByMatricNumber(row.matricNumber())
+                .orElseThrow(() -> new IllegalArgumentException("No student with matric number " + row.matricNumber()));
+        UUID receiptId = receiptUploadDispatcher.upload(row.documentType(), file, user.getEmail(), row.studentLevel());
+        return result(row, BulkImportEntryStatus.IMPORTED, receiptId, null);
+    }
+
+    private Map<String, ManifestRow> readManifest(MultipartFile manifest) throws IOException {
+        Map<String, ManifestRow> rows = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(manifest.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || (lineNumber == 1 && line.toLowerCase(Locale.ROOT).startsWith("filename"))) {
+                    continue;
+                }
+                String[] columns = line.split(",", -1);
+                if (columns.length < 4) {
+                    throw new IllegalArgumentException("Manifest line " + lineNumber + " must have fileName, matricNumber, documentType and studentLevel");
+                }
+                ManifestRow row = new ManifestRow(
+                        baseName(unquote(columns[0])),
+                        unquote(columns[1]),
+                        parseDocumentType(unquote(columns[2]), lineNumber),
+                        parseLevel(unquote(columns[3]), lineNumber));
+                if (rows.putIfAbsent(row.fileName(), row) != null) {
+                    throw new IllegalArgumentException("Manifest lists " + row.fileName() + " more than once");
+                }
+                if (rows.size() > maxEntries) {
+                    throw new IllegalArgumentException("Manifest has more than " + maxEntries + " entries");
+                }
+            }
+        }
+        if (rows.isEmpty()) {
+            throw new IllegalArgumentException("Manifest is empty");
+        }
+        return rows;
+    }
+
+    private DocumentType parseDocumentType(String value, int lineNumber) {
+        try {
+            return DocumentType.valueOf(value.toUpperCase(Locale.ROOT).replace('-', '_').replace(' ', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown document type '" + value + "' on manifest line " + lineNumber);
+        }
+    }
+
+    private Level parseLevel(String value, int lineNumber) {
+        String normalized = value.toUpperCase(Locale.ROOT);
+        try {
+            return Level.valueOf(normalized.startsWith("LEVEL_") ? normalized : "LEVEL_" + normalized);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown level '" + value + "' on manifest line " + lineNumber);
+        }
+    }
+
+    private void acquire(Semaphore permits) throws InterruptedIOException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a bulk import slot");
+        }
+    }
+
+    private BulkImportEntryResult failed(ManifestRow row, String message) {
+        return result(row, BulkImportEntryStatus.FAILED, null, message);
+    }
+
+    private BulkImportEntryResult skipped(ManifestRow row, String message) {
+        return result(row, BulkImportEntryStatus.SKIPPED, null, message);
+    }
+
+    private BulkImportEntryResult skipped(String fileName, String message) {
+        return BulkImportEntryResult.builder()
+                .fileName(fileName)
+                .status(BulkImportEntryStatus.SKIPPED)
+                .message(message)
+                .build();
+    }
+
+    private BulkImportEntryResult result(ManifestRow row, BulkImportEntryStatus status, UUID receiptId, String message) {
+        return BulkImportEntryResult.builder()
+                .fileName(row.fileName())
+                .matricNumber(row.matricNumber())
+                .documentType(row.documentType())
+                .studentLevel(row.studentLevel())
+                .status(status)
+                .receiptId(receiptId)
+                .message(message)
+                .build();
+    }
+
+    private int count(List<BulkImportEntryResult> entries, BulkImportEntryStatus status) {
+        return (int) entries.stream().filter(e -> e.getStatus() == status).count();
+    }
+
+    private String baseName(String name) {
+        int slash = Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\'));
+        return slash >= 0 ? name.substring(slash + 1) : name;
+    }
+
+    private String unquote(String value) {
+        String trimmed = value.trim();
+        if (trimmed.length() >= 2 && trimmed.startsWith("\"") && trimmed.endsWith("\"")) {
+            return trimmed.substring(1, trimmed.length() - 1).trim();
+        }
+        return trimmed;
+    }
+
+    private record ManifestRow(String fileName, String matricNumber, DocumentType documentType, Level studentLevel) {
+    }
+
+    /**
+     * Stops a single archive entry from being spilled past the parse size limit, and leaves the
+     * underlying archive stream open for the next entry.
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long read;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private void count(int n) throws IOException {
+            read += n;
+            if (read > limit) {
+                throw new IOException("File is larger than the " + limit + " byte limit");
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.eduvault.ingest;
+
+import com.eduvault.dto.IngestJobResponse;
+import com.eduvault.entities.IngestJob;
+import com.eduvault.repositories.IngestJobRepository;
+import com.eduvault.services.ReceiptUploadDispatcher;
+import com.eduvault.services.WebSocketNotificationService;
+import com.eduvault.user.enums.DocumentType;
+import com.eduvault.user.enums.IngestJobStatus;
+import com.eduvault.user.enums.Level;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Accepts receipt uploads without holding the request thread: the upload is spilled to disk,
+ * an {@link IngestJob} is recorded and the storage upload, extraction and persistence run on
+ * the ingest job pool. The owner is told about completion over the notifications queue.
+ */
+@Slf4j
+@Service
+public class IngestJobService {
+    private static final int MAX_ERROR_LENGTH = 255;
+
+    private final IngestService ingestService;
+    private final ParseScheduler parseScheduler;
+    private final IngestJobRepository ingestJobRepository;
+    private final ReceiptUploadDispatcher receiptUploadDispatcher;
+    private final WebSocketNotificationService webSocketNotificationService;
+    private final TaskExecutor ingestJobExecutor;
+    private final LocalDateTime startedAt = LocalDateTime.now();
+
+    public IngestJobService(IngestService ingestService,
+                            ParseScheduler parseScheduler,
+                            IngestJobRepository ingestJobRepository,
+                            ReceiptUploadDispatcher receiptUploadDispatcher,
+                            WebSocketNotificationService webSocketNotificationService,
+                            @Qualifier("ingestJobExecutor") TaskExecutor ingestJobExecutor) {
+        this.ingestService = ingestService;
+        this.parseScheduler = parseScheduler;
+        this.ingestJobRepository = ingestJobRepository;
+        this.receiptUploadDispatcher = receiptUploadDispatcher;
+        this.webSocketNotificationService = webSocketNotificationService;
+        this.ingestJobExecutor = ingestJobExecutor;
+    }
+
+    public IngestJobResponse submit(DocumentType type, MultipartFile file, String email, Level studentLevel) throws IOException {
+        receiptUploadDispatcher.ensureCanUpload(type, email, studentLevel);
+
+        IngestedFile ingested = ingestService.ingest(file);
+        // the spill file belongs to this method until the job is handed to the pool
+        IngestJob job;
+        try {
+            job = ingestJobRepository.save(IngestJob.builder()
+                    .ownerEmail(email)
+                    .documentType(type)
+                    .studentLevel(studentLevel)
+                    .status(IngestJobStatus.QUEUED)
+                    .createdAt(LocalDateTime.now())
+                    .build());
+        } catch (RuntimeException e) {
+            ingested.close();
+            throw e;
+        }
+
+        UUID jobId = job.getId();
+        try {
+            ingestJobExecutor.execute(() -> run(jobId, ingested));
+        } catch (TaskRejectedException e) {
+            ingested.close();
+            ingestJobRepository.delete(job);
+            throw parseScheduler.busy();
+        } catch (RuntimeException e) {
+            ingested.close();
+            throw e;
+        }
+
+        return toResponse(job);
+    }
+
+    /**
+     * Queued jobs and their spill files only live in this node's memory, so jobs that were still
+     * queued or running when the node went down can never finish. They are failed at startup
+     * and their owners notified, so polling clients reach a terminal state. Jobs created after
+     * this node started are left alone. This assumes one node runs ingest jobs.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void failOrphanedJobs() {
+        List<IngestJob> orphaned = ingestJobRepository.findByStatusInAndCreatedAtBefore(
+                List.of(IngestJobStatus.QUEUED, IngestJobStatus.PROCESSING), startedAt);
+        for (IngestJob job : orphaned) {
+            job.setStatus(IngestJobStatus.FAILED);
+            job.setErrorMessage("The server restarted before this upload was processed; please upload it again.");
+            job.setCompletedAt(LocalDateTime.now());
+            IngestJob saved = ingestJobRepository.save(job);
+            webSocketNotificationService.sendIngestJobUpdate(saved.getOwnerEmail(), toResponse(saved));
+        }
+        if (!orphaned.isEmpty()) {
+            log.warn("Failed {} ingest jobs left unfinished by a previous run", orphaned.size());
+        }
+    }
+
+    public IngestJobResponse getJob(UUID jobId, String email) {
+        IngestJob job = ingestJobRepository.findById(jobId)
+                .orElseThrow(() -> new EntityNotFoundException("Ingest job not found"));
+        if (!job.getOwnerEmail().equals(email)) {
+            throw new AccessDeniedException("Unauthorized to view this ingest job");
+        }
+        return toResponse(job);
+    }
+
+    private void run(UUID jobId, IngestedFile ingested) {
+        IngestJob job;
+        try {
+            job = ingestJobRepository.findById(jobId)
+                    .orElseThrow(() -> new EntityNotFoundException("Ingest job not found"));
+        } catch (RuntimeException e) {
+            ingested.close();
+            log.warn("Ingest job {} could not be loaded: {}", jobId, e.getMessage());
+            return;
+        }
+
+        try (ingested) {
+            job.setStatus(IngestJobStatus.PROCESSING);
+            job.setStartedAt(LocalDateTime.now());
+            job = ingestJobRepository.save(job);
+
+            UUID receiptId = receiptUploadDispatcher.upload(job.getDocumentType(), ingested, job.getOwnerEmail(), job.getStudentLevel());
+            job.setReceiptId(receiptId);
+            job.setStatus(IngestJobStatus.COMPLETED);
+        } catch (Exception e) {
+            log.warn("Ingest job {} failed: {}", jobId, e.getMessage());
+            job.setStatus(IngestJobStatus.FAILED);
+            job.setErrorMessage(truncate(e.getMessage()));
+        }
+
+        job.setCompletedAt(LocalDateTime.now());
+        IngestJob saved = ingestJobRepository.save(job);
+        webSocketNotificationService.sendIngestJobUpdate(saved.getOwnerEmail(), toResponse(saved));
+    }
+
+    private String truncate(String message) {
+        if (message == null || message.length() <= MAX_ERROR_LENGTH) {
+            return message;
+        }
+        return message.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    private IngestJobResponse toResponse(IngestJob job) {
+        return IngestJobResponse.builder()
+                .jobId(job.getId())
+                .documentType(job.getDocumentType())
+                .studentLevel(job.getStudentLevel())
+                .status(job.getStatus())
+                .receiptId(job.getReceiptId())
+                .errorMessage(job.getErrorMessage())
+                .createdAt(job.getCreatedAt())
+                .startedAt(job.getStartedAt())
+                .completedAt(job.getCompletedAt())
+                .build();
+    }
+}
@@ -0,0 +1,89 @@
+package com.eduvault.ingest;
+
+import com.eduvault.pdf.ExtractedFields;
+import com.eduvault.user.enums.DocumentType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.function.Supplier;
+
+/**
+ * Meters for the receipt upload path. Every stage is a timer named {@code eduvault.ingest.stage}
+ * tagged with the stage and document type, with percentile histograms so dashboards can show
+ * tail latency per stage.
+ */
+@Component
+@RequiredArgsConstructor
+public class IngestMetrics {
+    public static final String USER_LOOKUP = "user_lookup";
+    public static final String DIGEST_LOOKUP = "digest_lookup";
+    public static final String UPLOAD = "upload";
+    public static final String PARSE = "parse";
+    public static final String EXTRACT = "extract";
+    public static final String SAVE = "save";
+
+    private final MeterRegistry registry;
+
+    public <T> T time(String stage, DocumentType documentType, Supplier<T> work) {
+        return stageTimer(stage, documentType).record(work);
+    }
+
+    public <T> T timeIo(String stage, DocumentType documentType, IoWork<T> work) throws IOException {
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            return work.run();
+        } finally {
+            sample.stop(stageTimer(stage, documentType));
+        }
+    }
+
+    public void recordDocument(DocumentType documentType, long bytes, int characters) {
+        DistributionSummary.builder("eduvault.ingest.file.size")
+                .baseUnit("bytes")
+                .tag("document_type", tag(documentType))
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(bytes);
+        DistributionSummary.builder("eduvault.ingest.text.length")
+                .baseUnit("characters")
+                .tag("document_type", tag(documentType))
+                .register(registry)
+                .record(characters);
+    }
+
+    public void recordExtraction(DocumentType documentType, ExtractedFields fields) {
+        for (String field : fields.names()) {
+            if (fields.get(field) == null) {
+                Counter.builder("eduvault.ingest.extraction.misses")
+                        .description("Fields a receipt template could not find")
+                        .tag("document_type", tag(documentType))
+                        .tag("field", field)
+                        .register(registry)
+                        .increment();
+            }
+        }
+    }
+
+    private Timer stageTimer(String stage, DocumentType documentType) {
+        return Timer.builder("eduvault.ingest.stage")
+                .description("Time spent in each stage of a receipt upload")
+                .tag("stage", stage)
+                .tag("document_type", tag(documentType))
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private String tag(DocumentType documentType) {
+        return documentType != null ? documentType.name() : "NONE";
+    }
+
+    @FunctionalInterface
+    public interface IoWork<T> {
+        T run() throws IOException;
+    }
+}
@@ -0,0 +1,226 @@
+package com.eduvault.ingest;
+
+import com.eduvault.entities.BlobDigest;
+import com.eduvault.repositories.BlobDigestRepository;
+import com.eduvault.user.enums.DocumentType;
+import com.eduvault.user.utils.UploadResponse;
+import com.eduvault.storage.BlobStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Slf4j
+@Service
+public class IngestService {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+    private final BlobStore blobStore;
+    private final ParseScheduler parseScheduler;
+    private final AsyncTaskExecutor ingestIoExecutor;
+    private final BlobDigestRepository blobDigestRepository;
+    private final IngestMetrics ingestMetrics;
+
+    @Value("${app.ingest.spill-dir:${java.io.tmpdir}}")
+    private String spillDir;
+
+    public IngestService(BlobStore blobStore,
+                         ParseScheduler parseScheduler,
+                         @Qualifier("ingestIoExecutor") AsyncTaskExecutor ingestIoExecutor,
+                         BlobDigestRepository blobDigestRepository,
+                         IngestMetrics ingestMetrics) {
+        this.blobStore = blobStore;
+        this.parseScheduler = parseScheduler;
+        this.ingestIoExecutor = ingestIoExecutor;
+        this.blobDigestRepository = blobDigestRepository;
+        this.ingestMetrics = ingestMetrics;
+    }
+
+    public IngestedFile ingest(MultipartFile file) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return ingest(in, file.getOriginalFilename(), file.getContentType());
+        }
+    }
+
+    /**
+     * Copies the stream to a spill file through a pooled per-thread buffer, hashing it on the way,
+     * so the upload is read once and never held in heap as a whole.
+     */
+    public IngestedFile ingest(InputStream in, String originalFilename, String contentType) throws IOException {
+        Path dir = Path.of(spillDir);
+        Files.createDirectories(dir);
+        Path spill = Files.createTempFile(dir, "ingest-", suffixFor(originalFilename));
+
+        MessageDigest digest = sha256();
+        byte[] buffer = BUFFERS.get();
+        long size = 0;
+        try (OutputStream out = Files.newOutputStream(spill)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+                size += read;
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(spill);
+            throw e;
+        }
+
+        return new IngestedFile(spill, originalFilename, contentType, size, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    /**
+     * Returns the stored URL and text for an upload, reusing earlier work for byte-identical files:
+     * a digest already seen for this document type skips both the upload and the parse, and one
+     * seen under another type only needs the parse.
+     */
+    public StoredDocument uploadAndExtract(IngestedFile file, DocumentType documentType) throws IOException {
+        Optional<BlobDigest> known = ingestMetrics.time(IngestMetrics.DIGEST_LOOKUP, documentType,
+                () -> blobDigestRepository.findBySha256AndDocumentType(file.getSha256(), documentType));
+        if (known.isPresent()) {
+            log.debug("Reusing stored copy of {} for {}", file.getSha256(), documentType);
+            return new StoredDocument(known.get().getPdfUrl(), known.get().getPublicId(), known.get().getContent());
+        }
+
+        Optional<BlobDigest> sameBytes = blobDigestRepository.findFirstBySha256(file.getSha256());
+        if (sameBytes.isPresent()) {
+            String content = read(file, documentType);
+            return remember(file, documentType,
+                    new StoredDocument(sameBytes.get().getPdfUrl(), sameBytes.get().getPublicId(), content));
+        }
+
+        return remember(file, documentType, uploadAndRead(file, documentType));
+    }
+
+    private StoredDocument remember(IngestedFile file, DocumentType documentType, StoredDocument document) {
+        try {
+            blobDigestRepository.save(BlobDigest.builder()
+                    .sha256(file.getSha256())
+                    .documentType(documentType)
+                    .size(file.getSize())
+                    .pdfUrl(document.pdfUrl())
+                    .publicId(document.publicId())
+                    .content(document.content())
+                    .createdAt(LocalDateTime.now())
+                    .build());
+        } catch (DataIntegrityViolationException e) {
+            // the same file was stored concurrently; either copy will do
+            log.debug("Digest {} for {} was already recorded", file.getSha256(), documentType);
+        } catch (DataAccessException e) {
+            log.warn("Could not record digest {} for {}: {}", file.getSha256(), documentType, e.getMessage());
+        }
+        return document;
+    }
+
+    /**
+     * Uploads the file to storage on the ingest I/O pool while extracting its text on the parse
+     * pool, then joins both. If extraction fails the upload is cancelled, and if it had already
+     * finished the stored asset is deleted so a failed receipt leaves nothing new behind.
+     */
+    private StoredDocument uploadAndRead(IngestedFile file, DocumentType documentType) throws IOException {
+        AtomicBoolean aborted = new AtomicBoolean();
+        AtomicBoolean discarded = new AtomicBoolean();
+
+        Future<UploadResponse> upload = ingestIoExecutor.submit(() -> {
+            UploadResponse response = ingestMetrics.timeIo(IngestMetrics.UPLOAD, documentType, () -> blobStore.upload(file));
+            if (aborted.get()) {
+                discard(response, discarded);
+            }
+            return response;
+        });
+
+        String content;
+        try {
+            content = read(file, documentType);
+        } catch (IOException | RuntimeException e) {
+            aborted.set(true);
+            if (!upload.cancel(true) && upload.isDone()) {
+                try {
+                    discard(upload.get(), discarded);
+                } catch (InterruptedException | ExecutionException ignored) {
+                    // nothing was stored
+                }
+            }
+            throw e;
+        }
+
+        UploadResponse stored = await(upload);
+        return new StoredDocument(stored.getSecureUrl(), stored.getPublicId(), content);
+    }
+
+    private String read(IngestedFile file, DocumentType documentType) throws IOException {
+        String content = ingestMetrics.timeIo(IngestMetrics.PARSE, documentType, () -> parseScheduler.readDocument(file, documentType));
+        ingestMetrics.recordDocument(documentType, file.getSize(), content.length());
+        return content;
+    }
+
+    private UploadResponse await(Future<UploadResponse> upload) throws IOException {
+        try {
+            return upload.get();
+        } catch (InterruptedException e) {
+            upload.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the storage upload");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IOException("Storage upload failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Deletes what a failed ingest stored. A content-addressed store may have handed back a blob
+     * that was already there, which other receipts can still point to, so only blobs this upload
+     * created are deleted.
+     */
+    private void discard(UploadResponse response, AtomicBoolean discarded) {
+        if (response == null || !response.isCreated() || !discarded.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            blobStore.delete(response.getPublicId());
+        } catch (Exception e) {
+            log.warn("Could not delete orphaned upload {}: {}", response.getPublicId(), e.getMessage());
+        }
+    }
+
+    private String suffixFor(String originalFilename) {
+        if (originalFilename == null || originalFilename.isBlank()) {
+            return ".tmp";
+        }
+        String name = originalFilename.replaceAll("[^a-zA-Z0-9._-]", "_");
+        return "-" + (name.length() > 100 ? name.substring(name.length() - 100) : name);
+    }
+
+    private MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.eduvault.ingest;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * An upload that has been read exactly once into a spill file. Storage upload, hashing and
+ * text extraction all read from {@link #getPath()} instead of going back to the multipart request.
+ * Closing it deletes the spill file.
+ */
+@Slf4j
+@Getter
+public class IngestedFile implements AutoCloseable {
+    private final Path path;
+    private final String originalFilename;
+    private final String contentType;
+    private final long size;
+    private final String sha256;
+
+    IngestedFile(Path path, String originalFilename, String contentType, long size, String sha256) {
+        this.path = path;
+        this.originalFilename = originalFilename;
+        this.contentType = contentType;
+        this.size = size;
+        this.sha256 = sha256;
+    }
+
+    public InputStream openStream() throws IOException {
+        return Files.newInputStream(path);
+    }
+
+    public boolean isPdf() {
+        return originalFilename != null && originalFilename.endsWith(".pdf");
+    }
+
+    @Override
+    public void close() {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete spill file {}: {}", path, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.eduvault.ingest;
+
+import com.eduvault.exceptions.ServerBusyException;
+import com.eduvault.services.PdfReaderService;
+import com.eduvault.user.enums.DocumentType;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs text extraction on the CPU-sized parse pool instead of the request thread.
+ * <p>
+ * Every parse holds one of {@code pool size + queue capacity} slots, so submissions never overflow
+ * the pool's queue. A slot is held only for the parse itself; the spill, the storage upload and
+ * the database work around it are I/O-bound and are not limited by this CPU-sized budget.
+ * Interactive uploads mark their thread with {@link #admit()}, and their parse is turned away with
+ * {@link ServerBusyException} when no slot is free instead of waiting for one. Background callers
+ * (async ingest jobs, bulk imports) have no one to retry for them and instead wait for a slot.
+ */
+@Component
+public class ParseScheduler {
+    private static final ThreadLocal<Admission> ADMITTED = new ThreadLocal<>();
+
+    private final PdfReaderService pdfReaderService;
+    private final ThreadPoolTaskExecutor ingestParseExecutor;
+    private final Semaphore slots;
+    private final Duration retryAfter;
+
+    public ParseScheduler(PdfReaderService pdfReaderService,
+                          @Qualifier("ingestParseExecutor") ThreadPoolTaskExecutor ingestParseExecutor,
+                          @Value("${app.ingest.parse.retry-after:5s}") Duration retryAfter) {
+        this.pdfReaderService = pdfReaderService;
+        this.ingestParseExecutor = ingestParseExecutor;
+        this.slots = new Semaphore(ingestParseExecutor.getMaxPoolSize() + ingestParseExecutor.getQueueCapacity());
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Makes parses on the current request thread fail fast with {@link ServerBusyException} until
+     * the admission is closed. No slot is reserved here; the parse takes one when it starts. A
+     * request that arrives while every slot is taken is still turned away before doing any work.
+     */
+    public Admission admit() {
+        if (ADMITTED.get() != null) {
+            return new Admission(false);
+        }
+        if (slots.availablePermits() == 0) {
+            throw busy();
+        }
+        Admission admission = new Admission(true);
+        ADMITTED.set(admission);
+        return admission;
+    }
+
+    public String readDocument(IngestedFile file, DocumentType documentType) throws IOException {
+        return run(() -> pdfReaderService.readDocument(file, documentType));
+    }
+
+    public String readPdf(IngestedFile file, DocumentType documentType) throws IOException {
+        return run(() -> pdfReaderService.readPdf(file, documentType));
+    }
+
+    private String run(Callable<String> parse) throws IOException {
+        if (ADMITTED.get() != null) {
+            if (!slots.tryAcquire()) {
+                throw busy();
+            }
+        } else {
+            acquire();
+        }
+        try {
+            return submitAndWait(parse);
+        } finally {
+            slots.release();
+        }
+    }
+
+    private String submitAndWait(Callable<String> parse) throws IOException {
+        Future<String> result;
+        try {
+            result = ingestParseExecutor.submit(parse);
+        } catch (TaskRejectedException e) {
+            // only happens while the pool is shutting down
+            throw busy();
+        }
+
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the document to be read");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IOException("Could not read document: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private void acquire() throws InterruptedIOException {
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a parse slot");
+        }
+    }
+
+    public ServerBusyException busy() {
+        return new ServerBusyException("Too many uploads are being processed right now. Please try again shortly.", retryAfter);
+    }
+
+    /**
+     * Fail-fast parsing for the current thread, from {@link #admit()}. Nested admissions on the
+     * same thread share the outer one.
+     */
+    public final class Admission implements AutoCloseable {
+        private final boolean owner;
+
+        private Admission(boolean owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public void close() {
+            if (owner) {
+                ADMITTED.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.eduvault.ingest;
+
+/**
+ * Result of the ingest pipeline: where the document was stored and the text extracted from it.
+ */
+public record StoredDocument(String pdfUrl, String publicId, String content) {
+}
@@ -0,0 +1,52 @@
+package com.eduvault.paging;
+
+import com.eduvault.dto.CursorPage;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Position of the last receipt on a page, ordered by {@code uploadedAt DESC, id DESC}.
+ * Clients only ever see it as an opaque token and pass it back to fetch the next page.
+ */
+public record ReceiptCursor(LocalDateTime uploadedAt, UUID id) {
+    private static final char SEPARATOR = '|';
+
+    public String encode() {
+        String raw = uploadedAt.toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ReceiptCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            return new ReceiptCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    UUID.fromString(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    /**
+     * Builds a page from rows fetched with a limit of {@code size + 1}; the extra row only
+     * tells whether another page follows and is not returned.
+     */
+    public static <T> CursorPage<T> page(List<T> rows, int size, Function<T, ReceiptCursor> cursorOf) {
+        boolean hasMore = rows.size() > size;
+        List<T> items = hasMore ? List.copyOf(rows.subList(0, size)) : rows;
+        return CursorPage.<T>builder()
+                .items(items)
+                .size(items.size())
+                .nextCursor(hasMore ? cursorOf.apply(items.get(items.size() - 1)).encode() : null)
+                .build();
+    }
+}
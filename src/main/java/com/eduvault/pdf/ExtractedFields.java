@@ -0,0 +1,30 @@
+package com.eduvault.pdf;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Field values pulled from one document by a {@link ReceiptTemplate}. Fields the template
+ * declares but could not find are present with a {@code null} value.
+ */
+public class ExtractedFields {
+    private final Map<String, String> values;
+
+    ExtractedFields(Map<String, String> values) {
+        this.values = Collections.unmodifiableMap(new LinkedHashMap<>(values));
+    }
+
+    public String get(String field) {
+        return values.get(field);
+    }
+
+    public Set<String> names() {
+        return values.keySet();
+    }
+
+    public Map<String, String> asMap() {
+        return values;
+    }
+}
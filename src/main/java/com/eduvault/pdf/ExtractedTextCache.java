@@ -0,0 +1,52 @@
+package com.eduvault.pdf;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory LRU of extracted PDF text keyed by content digest and bounded by the total number of
+ * characters held. An entry remembers how many pages it covers, so text read under one page limit
+ * is reused under another whenever both limits yield the same pages.
+ */
+@Component
+public class ExtractedTextCache {
+    private final long maxChars;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long chars;
+
+    public ExtractedTextCache(@Value("${app.pdf.text-cache.max-chars:4000000}") long maxChars) {
+        this.maxChars = maxChars;
+    }
+
+    public synchronized String get(String sha256, int pageLimit) {
+        Entry entry = entries.get(sha256);
+        if (entry == null || entry.pagesRead() != Math.min(pageLimit, entry.pageCount())) {
+            return null;
+        }
+        return entry.text();
+    }
+
+    public synchronized void put(String sha256, int pageLimit, int pageCount, String text) {
+        if (text.length() > maxChars) {
+            return;
+        }
+        Entry previous = entries.put(sha256, new Entry(text, Math.min(pageLimit, pageCount), pageCount));
+        if (previous != null) {
+            chars -= previous.text().length();
+        }
+        chars += text.length();
+
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (chars > maxChars && eldest.hasNext()) {
+            chars -= eldest.next().getValue().text().length();
+            eldest.remove();
+        }
+    }
+
+    private record Entry(String text, int pagesRead, int pageCount) {
+    }
+}
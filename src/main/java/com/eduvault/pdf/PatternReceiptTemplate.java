@@ -0,0 +1,138 @@
+package com.eduvault.pdf;
+
+import com.eduvault.user.enums.DocumentType;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * A template made of regex fields. Each field lists one or more patterns in order of preference,
+ * and the value is capture group 1 of the first occurrence of the most preferred pattern that
+ * matches anywhere in the text.
+ * <p>
+ * All patterns are compiled once, together with a combined pattern that finds every position
+ * where any of them can match. Extraction walks the text once with that combined pattern and
+ * tries the individual patterns only at those positions, stopping as soon as every field has
+ * its preferred value.
+ */
+public class PatternReceiptTemplate implements ReceiptTemplate {
+    private final DocumentType documentType;
+    private final List<Field> fields;
+    private final List<Alternative> alternatives;
+    private final Pattern scanner;
+
+    private PatternReceiptTemplate(DocumentType documentType, List<Field> fields) {
+        this.documentType = documentType;
+        this.fields = fields;
+        this.alternatives = fields.stream().flatMap(f -> f.alternatives.stream()).toList();
+        this.scanner = Pattern.compile(alternatives.stream()
+                .map(a -> "(?" + inlineFlags(a.pattern.flags()) + ":" + a.pattern.pattern() + ")")
+                .collect(Collectors.joining("|")));
+    }
+
+    public static Builder builder(DocumentType documentType, int flags) {
+        return new Builder(documentType, flags);
+    }
+
+    @Override
+    public DocumentType documentType() {
+        return documentType;
+    }
+
+    @Override
+    public ExtractedFields extract(String content) {
+        String[] found = new String[alternatives.size()];
+        Matcher scan = scanner.matcher(content);
+        Matcher[] matchers = new Matcher[alternatives.size()];
+
+        int from = 0;
+        while (from <= content.length() && !complete(found) && scan.find(from)) {
+            int position = scan.start();
+            for (int i = 0; i < alternatives.size(); i++) {
+                if (found[i] != null) {
+                    continue;
+                }
+                if (matchers[i] == null) {
+                    matchers[i] = alternatives.get(i).pattern.matcher(content)
+                            .useTransparentBounds(true)
+                            .useAnchoringBounds(false);
+                }
+                Matcher m = matchers[i].region(position, content.length());
+                if (m.lookingAt()) {
+                    found[i] = m.group(1).trim();
+                }
+            }
+            from = position + 1;
+        }
+
+        Map<String, String> values = new LinkedHashMap<>();
+        for (Field field : fields) {
+            String value = null;
+            for (Alternative alternative : field.alternatives) {
+                if (found[alternative.index] != null) {
+                    value = found[alternative.index];
+                    break;
+                }
+            }
+            values.put(field.name, value);
+        }
+        return new ExtractedFields(values);
+    }
+
+    private boolean complete(String[] found) {
+        for (Field field : fields) {
+            if (found[field.alternatives.get(0).index] == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String inlineFlags(int flags) {
+        StringBuilder sb = new StringBuilder();
+        if ((flags & Pattern.CASE_INSENSITIVE) != 0) sb.append('i');
+        if ((flags & Pattern.DOTALL) != 0) sb.append('s');
+        if ((flags & Pattern.MULTILINE) != 0) sb.append('m');
+        return sb.isEmpty() ? "" : sb.toString();
+    }
+
+    private record Field(String name, List<Alternative> alternatives) {
+    }
+
+    private record Alternative(int index, Pattern pattern) {
+    }
+
+    public static class Builder {
+        private final DocumentType documentType;
+        private final int flags;
+        private final List<Field> fields = new ArrayList<>();
+        private int next;
+
+        private Builder(DocumentType documentType, int flags) {
+            this.documentType = documentType;
+            this.flags = flags;
+        }
+
+        /**
+         * Declares a field. Every regex must have the value in capture group 1; later regexes
+         * are only used when the earlier ones do not match.
+         */
+        public Builder field(String name, String... regexes) {
+            List<Alternative> alternatives = new ArrayList<>();
+            for (String regex : regexes) {
+                alternatives.add(new Alternative(next++, Pattern.compile(regex, flags)));
+            }
+            fields.add(new Field(name, alternatives));
+            return this;
+        }
+
+        public PatternReceiptTemplate build() {
+            return new PatternReceiptTemplate(documentType, List.copyOf(fields));
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.eduvault.pdf;
+
+import com.eduvault.ingest.IngestMetrics;
+import com.eduvault.user.enums.DocumentType;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+@Component
+public class ReceiptExtractor {
+    private final Map<DocumentType, ReceiptTemplate> templates = new EnumMap<>(DocumentType.class);
+    private final IngestMetrics ingestMetrics;
+
+    public ReceiptExtractor(IngestMetrics ingestMetrics) {
+        this.ingestMetrics = ingestMetrics;
+        for (ReceiptTemplate template : ReceiptTemplates.all()) {
+            templates.put(template.documentType(), template);
+        }
+    }
+
+    public ExtractedFields extract(DocumentType documentType, String content) {
+        ReceiptTemplate template = templates.get(documentType);
+        if (template == null) {
+            throw new IllegalArgumentException("No extraction template for " + documentType);
+        }
+        ExtractedFields fields = ingestMetrics.time(IngestMetrics.EXTRACT, documentType, () -> template.extract(content));
+        ingestMetrics.recordExtraction(documentType, fields);
+        return fields;
+    }
+}
@@ -0,0 +1,9 @@
+package com.eduvault.pdf;
+
+import com.eduvault.user.enums.DocumentType;
+
+public interface ReceiptTemplate {
+    DocumentType documentType();
+
+    ExtractedFields extract(String content);
+}
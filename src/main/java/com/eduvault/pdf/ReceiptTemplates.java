@@ -0,0 +1,94 @@
+package com.eduvault.pdf;
+
+import com.eduvault.user.enums.DocumentType;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Field layouts for every receipt type the app accepts.
+ */
+public final class ReceiptTemplates {
+    private static final String LINE = "\\s+([^\\r\\n]+)";
+
+    private ReceiptTemplates() {
+    }
+
+    public static List<ReceiptTemplate> all() {
+        return List.of(
+                collegeDue(),
+                deptDue(),
+                courseForm(),
+                schoolFeeReceipt(),
+                schoolFeeInvoice(),
+                new RemitaReceiptTemplate()
+        );
+    }
+
+    static ReceiptTemplate collegeDue() {
+        return PatternReceiptTemplate.builder(DocumentType.COLLEGE_DUE, Pattern.CASE_INSENSITIVE)
+                .field("name", "Payer's Name" + LINE)
+                .field("email", "Payer's Email" + LINE)
+                .field("matricNumber", "Matric No" + LINE)
+                .field("department", "Department" + LINE)
+                .field("academicSession", "Academic Session" + LINE)
+                .field("level", "Level" + LINE)
+                .field("transactionReference", "Transaction Reference" + LINE)
+                .field("status", "Status" + LINE)
+                .field("amount", "Total Amount\\s+(NGN[\\d,]+)")
+                .field("date", "Date Paid" + LINE)
+                .build();
+    }
+
+    static ReceiptTemplate deptDue() {
+        return PatternReceiptTemplate.builder(DocumentType.DEPT_DUE, Pattern.CASE_INSENSITIVE)
+                .field("name", "Payer's Name" + LINE)
+                .field("email", "Payer's Email" + LINE)
+                .field("matricNumber", "Matric No" + LINE)
+                .field("academicSession", "Academic Session" + LINE)
+                .field("level", "Level" + LINE)
+                .field("transactionReference", "Transaction Reference" + LINE)
+                .field("status", "Status" + LINE)
+                .field("amount", "Total Amount\\s+(NGN[\\d,]+)")
+                .field("date", "Date Paid" + LINE)
+                .build();
+    }
+
+    static ReceiptTemplate courseForm() {
+        return PatternReceiptTemplate.builder(DocumentType.COURSE_FORM, Pattern.CASE_INSENSITIVE)
+                .field("session", "(\\d{4}/\\d{4}\\s+SESSION)")
+                .field("name", "Name:\\s*([A-Za-z ]+)")
+                .field("programme", "Programme:\\s*([A-Za-z ]+)")
+                .field("level", "Level:\\s*([0-9]+L)")
+                .field("matricNumber", "ID:\\s*(\\d+)")
+                .build();
+    }
+
+    static ReceiptTemplate schoolFeeReceipt() {
+        return PatternReceiptTemplate.builder(DocumentType.SCHOOL_FEE_RECEIPT, Pattern.CASE_INSENSITIVE | Pattern.DOTALL)
+                .field("name", "([A-Z][A-Za-z ]+)\\s+Received from", "Received from\\s+([A-Za-z ]+)")
+                .field("college", "(College[^\\r\\n]+?)(?=Date:)")
+                .field("department", "Department:\\s*([^\\r\\n]+)")
+                .field("date", "Date:\\s*(\\d{2}/\\d{2}/\\d{4})")
+                .field("receiptNumber", "Receipt No:\\s*(\\d+)", "(\\d+)Receipt No:")
+                .field("matricNumber", "Matric. No.:\\s*([^\\r\\n]+)")
+                .field("level", "Level:\\s*([^\\r\\n]+)")
+                .field("invoiceNumber", "Invoice No.:\\s*([^\\r\\n]+)")
+                .field("bank", "Bank:\\s*([^\\r\\n]+)")
+                .field("amount", "TOTAL\\s*([\\d,]+\\.\\d{2})")
+                .field("description", "(Returning.*School Fees)")
+                .build();
+    }
+
+    static ReceiptTemplate schoolFeeInvoice() {
+        return PatternReceiptTemplate.builder(DocumentType.SCHOOL_FEE_INVOICE, Pattern.CASE_INSENSITIVE | Pattern.DOTALL)
+                .field("name", "([A-Z][A-Za-z ]+)\\s+\\d{11},")
+                .field("phone", "(\\d{11}),")
+                .field("email", "([\\w.%-]+@[\\w.-]+\\.[A-Za-z]{2,6})")
+                .field("amount", "Total:\\s*N([\\d,]+\\.\\d{2})")
+                .field("rrr", "REMITA RRR:\\s*(\\d+)")
+                .field("invoiceNumber", "REFERENCE/INVOICE NO.\\s*([A-Z0-9/]+)")
+                .field("date", "(\\d{1,2}\\s+\\w+\\s+\\d{4}\\s+\\d{2}:\\d{2}:\\d{2})")
+                .build();
+    }
+}
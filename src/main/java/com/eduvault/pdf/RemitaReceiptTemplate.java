@@ -0,0 +1,110 @@
+package com.eduvault.pdf;
+
+import com.eduvault.user.enums.DocumentType;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Line-oriented template for Remita school fee receipts, where a label and its value are either
+ * on the same line or on one of the next two lines. Each line is upper-cased once and every
+ * label is checked against it in the same pass.
+ */
+public class RemitaReceiptTemplate implements ReceiptTemplate {
+    private static final Pattern RRR_LINE = Pattern.compile("\\d{4}-\\d{4}-\\d{4,}");
+    private static final Pattern AUTHORIZATION_NUMBER = Pattern.compile("\\d{6,}");
+    private static final String BALANCE_DUE = "BALANCE DUE";
+    private static final String TOTAL_AMOUNT = "TOTAL AMOUNT";
+
+    private static final Map<String, String> LABELS = Map.of(
+            "name", "NAME",
+            "email", "EMAIL",
+            "phoneNumber", "PHONE NUMBER",
+            "amount", TOTAL_AMOUNT
+    );
+    private static final Map<String, Pattern> LABEL_PATTERNS = Map.of(
+            "name", labelPattern("NAME"),
+            "email", labelPattern("EMAIL"),
+            "phoneNumber", labelPattern("PHONE NUMBER"),
+            "amount", labelPattern(TOTAL_AMOUNT)
+    );
+
+    @Override
+    public DocumentType documentType() {
+        return DocumentType.REMITA_SCHOOL_FEE_RECEIPT;
+    }
+
+    @Override
+    public ExtractedFields extract(String content) {
+        String[] lines = content.split("\\r?\\n");
+        String[] upper = new String[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            upper[i] = lines[i].toUpperCase(Locale.ROOT);
+        }
+
+        Map<String, String> values = new LinkedHashMap<>();
+        String rrr = null;
+        String balanceDue = null;
+        boolean balanceDueSeen = false;
+        String authorizationRef = null;
+
+        for (int i = 0; i < lines.length; i++) {
+            if (rrr == null && RRR_LINE.matcher(lines[i]).matches()) {
+                rrr = lines[i];
+            }
+
+            for (Map.Entry<String, String> label : LABELS.entrySet()) {
+                if (values.get(label.getKey()) == null && upper[i].contains(label.getValue())) {
+                    values.put(label.getKey(), valueFor(lines, upper, i, label.getValue(), LABEL_PATTERNS.get(label.getKey())));
+                }
+            }
+
+            if (!balanceDueSeen && upper[i].contains(BALANCE_DUE)) {
+                balanceDueSeen = true;
+                if (i + 1 < lines.length && upper[i + 1].contains(TOTAL_AMOUNT)) {
+                    balanceDue = (i + 2 < lines.length) ? lines[i + 2].trim() : null;
+                } else {
+                    balanceDue = (i + 1 < lines.length) ? lines[i + 1].trim() : null;
+                }
+            }
+
+            if (authorizationRef == null && (upper[i].contains("AUTHORIZATION REF") || upper[i].contains("CARD PAYMENT"))) {
+                Matcher m = AUTHORIZATION_NUMBER.matcher(lines[i]);
+                if (m.find()) {
+                    authorizationRef = m.group();
+                }
+            }
+        }
+
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("rrr", rrr);
+        fields.put("name", values.get("name"));
+        fields.put("email", values.get("email"));
+        fields.put("phoneNumber", values.get("phoneNumber"));
+        fields.put("amount", values.get("amount"));
+        fields.put("balanceDue", balanceDue);
+        fields.put("authorizationRef", authorizationRef);
+        return new ExtractedFields(fields);
+    }
+
+    private String valueFor(String[] lines, String[] upper, int i, String label, Pattern labelPattern) {
+        String cleaned = labelPattern.matcher(lines[i].trim()).replaceAll("").trim();
+        if (!cleaned.isEmpty()) {
+            return cleaned;
+        }
+        for (int next = i + 1; next <= i + 2 && next < lines.length; next++) {
+            String candidate = lines[next].trim();
+            if (!upper[next].contains(label) && !candidate.isEmpty()) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static Pattern labelPattern(String label) {
+        return Pattern.compile(Pattern.quote(label), Pattern.CASE_INSENSITIVE);
+    }
+}
@@ -0,0 +1,14 @@
+package com.eduvault.repositories;
+
+import com.eduvault.entities.BlobDigest;
+import com.eduvault.user.enums.DocumentType;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+import java.util.UUID;
+
+public interface BlobDigestRepository extends JpaRepository<BlobDigest, UUID> {
+    Optional<BlobDigest> findBySha256AndDocumentType(String sha256, DocumentType documentType);
+
+    Optional<BlobDigest> findFirstBySha256(String sha256);
+}
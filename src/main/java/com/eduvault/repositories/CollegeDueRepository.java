@@ -1,26 +1,96 @@
 package com.eduvault.repositories;
 
 import com.eduvault.entities.CollegeDue;
+import com.eduvault.repositories.projections.ApprovalWatermark;
+import com.eduvault.repositories.projections.CollegeDueView;
+import com.eduvault.repositories.projections.StudentReceiptFileView;
 import com.eduvault.user.enums.Level;
 import com.eduvault.user.enums.Status;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface CollegeDueRepository extends JpaRepository<CollegeDue, UUID> {
-    List<CollegeDue> findByUploadedBy(UUID userId);
+    String SELECT_VIEW = """
+        SELECT r.id AS id, r.name AS name, r.date AS date, r.email AS email,
+               r.matricNumber AS matricNumber, r.department AS department,
+               r.academicSession AS academicSession, r.level AS level,
+               r.transactionReference AS transactionReference, r.status AS status,
+               r.amount AS amount, r.pdfUrl AS pdfUrl, r.uploadedBy AS uploadedBy,
+               r.uploadedAt AS uploadedAt
+        FROM CollegeDue r
+    """;
+
+    @Query(SELECT_VIEW + "WHERE r.uploadedBy = :uploadedBy ORDER BY r.uploadedAt DESC")
+    List<CollegeDueView> findViewsByUploadedBy(@Param("uploadedBy") UUID uploadedBy);
+
+    @Query(SELECT_VIEW + """
+        WHERE r.uploadedBy = :uploadedBy AND r.studentLevel = :studentLevel
+        ORDER BY r.uploadedAt DESC
+    """)
+    List<CollegeDueView> findViewsByStudentLevelAndUploadedBy(@Param("studentLevel") Level studentLevel,
+                                                              @Param("uploadedBy") UUID uploadedBy);
+
+    Optional<CollegeDue> findFirstByUploadedByOrderByUploadedAtDesc(UUID uploadedBy);
+
+    Optional<CollegeDue> findFirstByUploadedByAndStudentLevelOrderByUploadedAtDesc(UUID uploadedBy, Level studentLevel);
+
+    boolean existsByUploadedByAndStudentLevelAndStateNot(UUID uploadedBy, Level studentLevel, Status state);
 
     @Query("SELECT c.uploadedBy FROM CollegeDue c WHERE c.id = :id")
     UUID findUploadedByById(@Param("id") UUID id);
 
     List<CollegeDue> findByState(Status state);
-    List<CollegeDue> findByStudentLevelAndUploadedBy(Level studentLevel, UUID uploadedBy);
-    List<CollegeDue> findByStudentLevel(Level level);
+
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<StudentReceiptFileView> streamByStateAndPdfUrlIsNotNull(Status state);
+
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<StudentReceiptFileView> streamByStateAndStudentLevelAndPdfUrlIsNotNull(Status state, Level studentLevel);
+
+    @Query("""
+        SELECT COUNT(r) AS approvedCount, MAX(r.approvedAt) AS lastApprovedAt
+        FROM CollegeDue r
+        WHERE r.state = :state AND r.studentLevel = :studentLevel AND r.pdfUrl IS NOT NULL
+    """)
+    ApprovalWatermark findWatermarkByStateAndStudentLevel(@Param("state") Status state, @Param("studentLevel") Level studentLevel);
+
+    @Query(SELECT_VIEW + "WHERE r.uploadedAt IS NOT NULL ORDER BY r.uploadedAt DESC, r.id DESC")
+    List<CollegeDueView> findPage(Limit limit);
+
+    @Query(SELECT_VIEW + """
+        WHERE r.uploadedAt <= :uploadedAt AND (r.uploadedAt, r.id) < (:uploadedAt, :id)
+        ORDER BY r.uploadedAt DESC, r.id DESC
+    """)
+    List<CollegeDueView> findPageAfter(@Param("uploadedAt") LocalDateTime uploadedAt, @Param("id") UUID id, Limit limit);
+
+    @Query(SELECT_VIEW + """
+        WHERE r.studentLevel = :studentLevel AND r.uploadedAt IS NOT NULL
+        ORDER BY r.uploadedAt DESC, r.id DESC
+    """)
+    List<CollegeDueView> findPageByStudentLevel(@Param("studentLevel") Level studentLevel, Limit limit);
+
+    @Query(SELECT_VIEW + """
+        WHERE r.studentLevel = :studentLevel
+          AND r.uploadedAt <= :uploadedAt AND (r.uploadedAt, r.id) < (:uploadedAt, :id)
+        ORDER BY r.uploadedAt DESC, r.id DESC
+    """)
+    List<CollegeDueView> findPageByStudentLevelAfter(@Param("studentLevel") Level studentLevel,
+                                                     @Param("uploadedAt") LocalDateTime uploadedAt,
+                                                     @Param("id") UUID id, Limit limit);
 
 
     long countByState(Status state);
@@ -1,24 +1,92 @@
 package com.eduvault.repositories;
 
 import com.eduvault.entities.CourseForm;
+import com.eduvault.repositories.projections.ApprovalWatermark;
+import com.eduvault.repositories.projections.CourseFormView;
+import com.eduvault.repositories.projections.StudentReceiptFileView;
 import com.eduvault.user.enums.Level;
 import com.eduvault.user.enums.Status;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface CourseFormRepository extends JpaRepository<CourseForm, UUID> {
-    List<CourseForm> findByUploadedBy(UUID userId);
+    String SELECT_VIEW = """
+        SELECT r.id AS id, r.name AS name, r.matricNumber AS matricNumber,
+               r.programme AS programme, r.level AS level, r.session AS session,
+               r.state AS state, r.pdfUrl AS pdfUrl, r.uploadedBy AS uploadedBy,
+               r.uploadedAt AS uploadedAt
+        FROM CourseForm r
+    """;
+
+    @Query(SELECT_VIEW + "WHERE r.uploadedBy = :uploadedBy ORDER BY r.uploadedAt DESC")
+    List<CourseFormView> findViewsByUploadedBy(@Param("uploadedBy") UUID uploadedBy);
+
+    @Query(SELECT_VIEW + """
+        WHERE r.uploadedBy = :uploadedBy AND r.studentLevel = :studentLevel
+        ORDER BY r.uploadedAt DESC
+    """)
+    List<CourseFormView> findViewsByStudentLevelAndUploadedBy(@Param("studentLevel") Level studentLevel,
+                                                              @Param("uploadedBy") UUID uploadedBy);
+
+    Optional<CourseForm> findFirstByUploadedByOrderByUploadedAtDesc(UUID uploadedBy);
+
+    Optional<CourseForm> findFirstByUploadedByAndStudentLevelOrderByUploadedAtDesc(UUID uploadedBy, Level studentLevel);
+
+    boolean existsByUploadedByAndStudentLevelAndStateNot(UUID uploadedBy, Level studentLevel, Status state);
 
     @Query("SELECT c.uploadedBy FROM CourseForm c WHERE c.id = :id")
     UUID findUploadedByById(@Param("id") UUID id);
 
     List<CourseForm> findByState(Status state);
-    List<CourseForm> findByStudentLevelAndUploadedBy(Level studentLevel, UUID uploadedBy);
 
-    List<CourseForm> findByStudentLevel(Level level);
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<StudentReceiptFileView> streamByStateAndPdfUrlIsNotNull(Status state);
+
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<StudentReceiptFileView> streamByStateAndStudentLevelAndPdfUrlIsNotNull(Status state, Level studentLevel);
+
+    @Query("""
+        SELECT COUNT(r) AS approvedCount, MAX(r.approvedAt) AS lastApprovedAt
+        FROM CourseForm r
+        WHERE r.state = :state AND r.studentLevel = :studentLevel AND r.pdfUrl IS NOT NULL
+    """)
+    ApprovalWatermark findWatermarkByStateAndStudentLevel(@Param("state") Status state, @Param("studentLevel") Level studentLevel);
+
+    @Query(SELECT_VIEW + "WHERE r.uploadedAt IS NOT NULL ORDER BY r.uploadedAt DESC, r.id DESC")
+    List<CourseFormView> findPage(Limit limit);
+
+    @Query(SELECT_VIEW + """
+        WHERE r.uploadedAt <= :uploadedAt AND (r.uploadedAt, r.id) < (:uploadedAt, :id)
+        ORDER BY r.uploadedAt DESC, r.id DESC
+    """)
+    List<CourseFormView> findPageAfter(@Param("uploadedAt") LocalDateTime uploadedAt, @Param("id") UUID id, Limit limit);
+
+    @Query(SELECT_VIEW + """
+        WHERE r.studentLevel = :studentLevel AND r.uploadedAt IS NOT NULL
+        ORDER BY r.uploadedAt DESC, r.id DESC
+    """)
+    List<CourseFormView> findPageByStudentLevel(@Param("studentLevel") Level studentLevel, Limit limit);
+
+    @Query(SELECT_VIEW + """
+        WHERE r.studentLevel = :studentLevel
+          AND r.uploadedAt <= :uploadedAt AND (r.uploadedAt, r.id) < (:uploadedAt, :id)
+        ORDER BY r.uploadedAt DESC, r.id DESC
+    """)
+    List<CourseFormView> findPageByStudentLevelAfter(@Param("studentLevel") Level studentLevel,
+                                                     @Param("uploadedAt") LocalDateTime uploadedAt,
+                                                     @Param("id") UUID id, Limit limit);
 
 }
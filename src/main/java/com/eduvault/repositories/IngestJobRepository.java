@@ -0,0 +1,14 @@
+package com.eduvault.repositories;
+
+import com.eduvault.entities.IngestJob;
+import com.eduvault.user.enums.IngestJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface IngestJobRepository extends JpaRepository<IngestJob, UUID> {
+    List<IngestJob> findByStatusInAndCreatedAtBefore(Collection<IngestJobStatus> statuses, LocalDateTime createdAt);
+}
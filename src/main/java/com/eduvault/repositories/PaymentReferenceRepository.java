@@ -0,0 +1,21 @@
+package com.eduvault.repositories;
+
+import com.eduvault.entities.PaymentReference;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface PaymentReferenceRepository extends JpaRepository<PaymentReference, UUID> {
+    List<PaymentReference> findByReference(String reference);
+
+    /**
+     * Takes a lock on a normalized reference that is held until the surrounding transaction
+     * ends, so claims for the same reference run one at a time even before any row exists.
+     */
+    @Query(value = "SELECT 1 FROM (SELECT pg_advisory_xact_lock(hashtext('payment_reference:' || :reference))) AS locked",
+            nativeQuery = true)
+    Integer lockReference(@Param("reference") String reference);
+}
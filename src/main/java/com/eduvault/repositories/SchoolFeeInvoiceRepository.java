@@ -1,24 +1,92 @@
 package com.eduvault.repositories;
 
 import com.eduvault.entities.SchoolFeeInvoice;
+import com.eduvault.repositories.projections.ApprovalWatermark;
+import com.eduvault.repositories.projections.SchoolFeeInvoiceView;
+import com.eduvault.repositories.projections.ReceiptFileView;
 import com.eduvault.user.enums.Level;
 import com.eduvault.user.enums.Status;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface SchoolFeeInvoiceRepository extends JpaRepository<SchoolFeeInvoice, UUID> {
-    List<SchoolFeeInvoice> findByUploadedBy(UUID userId);
+    String SELECT_VIEW = """
+        SELECT r.id AS id, r.name AS name, r.email AS email,
+               r.invoiceNumber AS invoiceNumber, r.phone AS phone, r.amount AS amount,
+               r.RRR AS RRR, r.uploadedBy AS uploadedBy, r.uploadedAt AS uploadedAt,
+               r.pdfUrl AS pdfUrl
+        FROM SchoolFeeInvoice r
+    """;
+
+    @Query(SELECT_VIEW + "WHERE r.uploadedBy = :uploadedBy ORDER BY r.uploadedAt DESC")
+    List<SchoolFeeInvoiceView> findViewsByUploadedBy(@Param("uploadedBy") UUID uploadedBy);
+
+    @Query(SELECT_VIEW + """
+        WHERE r.uploadedBy = :uploadedBy AND r.studentLevel = :studentLevel
+        ORDER BY r.uploadedAt DESC
+    """)
+    List<SchoolFeeInvoiceView> findViewsByStudentLevelAndUploadedBy(@Param("studentLevel") Level studentLevel,
+                                                                    @Param("uploadedBy") UUID uploadedBy);
+
+    Optional<SchoolFeeInvoice> findFirstByUploadedByOrderByUploadedAtDesc(UUID uploadedBy);
+
+    Optional<SchoolFeeInvoice> findFirstByUploadedByAndStudentLevelOrderByUploadedAtDesc(UUID uploadedBy, Level studentLevel);
+
+    boolean existsByUploadedByAndStudentLevelAndStateNot(UUID uploadedBy, Level studentLevel, Status state);
 
     @Query("SELECT s.uploadedBy FROM DeptDue s WHERE s.id = :id")
     UUID findUploadedByById(@Param("id") UUID id);
 
     List<SchoolFeeInvoice> findByState(Status state);
-    List<SchoolFeeInvoice> findByStudentLevelAndUploadedBy(Level studentLevel, UUID uploadedBy);
 
-    List<SchoolFeeInvoice> findByStudentLevel(Level level);
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<ReceiptFileView> streamByStateAndPdfUrlIsNotNull(Status state);
+
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<ReceiptFileView> streamByStateAndStudentLevelAndPdfUrlIsNotNull(Status state, Level studentLevel);
+
+    @Query("""
+        SELECT COUNT(r) AS approvedCount, MAX(r.approvedAt) AS lastApprovedAt
+        FROM SchoolFeeInvoice r
+        WHERE r.state = :state AND r.studentLevel = :studentLevel AND r.pdfUrl IS NOT NULL
+    """)
+    ApprovalWatermark findWatermarkByStateAndStudentLevel(@Param("state") Status state, @Param("studentLevel") Level studentLevel);
+
+    @Query(SELECT_VIEW + "WHERE r.uploadedAt IS NOT NULL ORDER BY r.uploadedAt DESC, r.id DESC")
+    List<SchoolFeeInvoiceView> findPage(Limit limit);
+
+    @Query(SELECT_VIEW + """
+        WHERE r.uploadedAt <= :uploadedAt AND (r.uploadedAt, r.id) < (:uploadedAt, :id)
+        ORDER BY r.uploadedAt DESC, r.id DESC
+    """)
+    List<SchoolFeeInvoiceView> findPageAfter(@Param("uploadedAt") LocalDateTime uploadedAt, @Param("id") UUID id, Limit limit);
+
+    @Query(SELECT_VIEW + """
+        WHERE r.studentLevel = :studentLevel AND r.uploadedAt IS NOT NULL
+        ORDER BY r.uploadedAt DESC, r.id DESC
+    """)
+    List<SchoolFeeInvoiceView> findPageByStudentLevel(@Param("studentLevel") Level studentLevel, Limit limit);
+
+    @Query(SELECT_VIEW + """
+        WHERE r.studentLevel = :studentLevel
+          AND r.uploadedAt <= :uploadedAt AND (r.uploadedAt, r.id) < (:uploadedAt, :id)
+        ORDER BY r.uploadedAt DESC, r.id DESC
+    """)
+    List<SchoolFeeInvoiceView> findPageByStudentLevelAfter(@Param("studentLevel") Level studentLevel,
+                                                           @Param("uploadedAt") LocalDateTime uploadedAt,
+                                                           @Param("id") UUID id, Limit limit);
 
 }
@@ -1,23 +1,94 @@
 package com.eduvault.repositories;
 
 import com.eduvault.entities.SchoolFeeReceipt;
+import com.eduvault.repositories.projections.ApprovalWatermark;
+import com.eduvault.repositories.projections.SchoolFeeReceiptView;
+import com.eduvault.repositories.projections.StudentReceiptFileView;
 import com.eduvault.user.enums.Level;
 import com.eduvault.user.enums.Status;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface SchoolFeeReceiptRepository extends JpaRepository<SchoolFeeReceipt, UUID> {
-    List<SchoolFeeReceipt> findByUploadedBy(UUID userId);
+    String SELECT_VIEW = """
+        SELECT r.id AS id, r.name AS name, r.college AS college, r.department AS department,
+               r.date AS date, r.receiptNumber AS receiptNumber,
+               r.matricNumber AS matricNumber, r.level AS level,
+               r.invoiceNumber AS invoiceNumber, r.Bank AS bank, r.amount AS amount,
+               r.description AS description, r.pdfUrl AS pdfUrl, r.uploadedBy AS uploadedBy,
+               r.uploadedAt AS uploadedAt
+        FROM SchoolFeeReceipt r
+    """;
+
+    @Query(SELECT_VIEW + "WHERE r.uploadedBy = :uploadedBy ORDER BY r.uploadedAt DESC")
+    List<SchoolFeeReceiptView> findViewsByUploadedBy(@Param("uploadedBy") UUID uploadedBy);
+
+    @Query(SELECT_VIEW + """
+        WHERE r.uploadedBy = :uploadedBy AND r.studentLevel = :studentLevel
+        ORDER BY r.uploadedAt DESC
+    """)
+    List<SchoolFeeReceiptView> findViewsByStudentLevelAndUploadedBy(@Param("studentLevel") Level studentLevel,
+                                                                    @Param("uploadedBy") UUID uploadedBy);
+
+    Optional<SchoolFeeReceipt> findFirstByUploadedByOrderByUploadedAtDesc(UUID uploadedBy);
+
+    Optional<SchoolFeeReceipt> findFirstByUploadedByAndStudentLevelOrderByUploadedAtDesc(UUID uploadedBy, Level studentLevel);
+
+    boolean existsByUploadedByAndStudentLevelAndStateNot(UUID uploadedBy, Level studentLevel, Status state);
 
     @Query("SELECT s.uploadedBy FROM SchoolFeeReceipt s WHERE s.id = :id")
     UUID findUploadedByById(@Param("id") UUID id);
 
     List<SchoolFeeReceipt> findByState(Status state);
-    List<SchoolFeeReceipt> findByStudentLevel(Level level);
-    List<SchoolFeeReceipt> findByStudentLevelAndUploadedBy(Level studentLevel, UUID uploadedBy);
+
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<StudentReceiptFileView> streamByStateAndPdfUrlIsNotNull(Status state);
+
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<StudentReceiptFileView> streamByStateAndStudentLevelAndPdfUrlIsNotNull(Status state, Level studentLevel);
+
+    @Query("""
+        SELECT COUNT(r) AS approvedCount, MAX(r.approvedAt) AS lastApprovedAt
+        FROM SchoolFeeReceipt r
+        WHERE r.state = :state AND r.studentLevel = :studentLevel AND r.pdfUrl IS NOT NULL
+    """)
+    ApprovalWatermark findWatermarkByStateAndStudentLevel(@Param("state") Status state, @Param("studentLevel") Level studentLevel);
+
+    @Query(SELECT_VIEW + "WHERE r.uploadedAt IS NOT NULL ORDER BY r.uploadedAt DESC, r.id DESC")
+    List<SchoolFeeReceiptView> findPage(Limit limit);
+
+    @Query(SELECT_VIEW + """
+        WHERE r.uploadedAt <= :uploadedAt AND (r.uploadedAt, r.id) < (:uploadedAt, :id)
+        ORDER BY r.uploadedAt DESC, r.id DESC
+    """)
+    List<SchoolFeeReceiptView> findPageAfter(@Param("uploadedAt") LocalDateTime uploadedAt, @Param("id") UUID id, Limit limit);
+
+    @Query(SELECT_VIEW + """
+        WHERE r.studentLevel = :studentLevel AND r.uploadedAt IS NOT NULL
+        ORDER BY r.uploadedAt DESC, r.id DESC
+    """)
+    List<SchoolFeeReceiptView> findPageByStudentLevel(@Param("studentLevel") Level studentLevel, Limit limit);
+
+    @Query(SELECT_VIEW + """
+        WHERE r.studentLevel = :studentLevel
+          AND r.uploadedAt <= :uploadedAt AND (r.uploadedAt, r.id) < (:uploadedAt, :id)
+        ORDER BY r.uploadedAt DESC, r.id DESC
+    """)
+    List<SchoolFeeReceiptView> findPageByStudentLevelAfter(@Param("studentLevel") Level studentLevel,
+                                                           @Param("uploadedAt") LocalDateTime uploadedAt,
+                                                           @Param("id") UUID id, Limit limit);
 
 }
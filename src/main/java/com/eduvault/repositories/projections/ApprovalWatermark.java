@@ -0,0 +1,13 @@
+package com.eduvault.repositories.projections;
+
+import java.time.LocalDateTime;
+
+/**
+ * How many downloadable receipts of a type and level are approved, and when the latest of them
+ * was approved. A prebuilt archive is current while it matches these.
+ */
+public interface ApprovalWatermark {
+    long getApprovedCount();
+
+    LocalDateTime getLastApprovedAt();
+}
@@ -0,0 +1,38 @@
+package com.eduvault.repositories.projections;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * The columns of {@code CollegeDue} shown in receipt listings. Values are bound by alias, so the
+ * select list must name each column after its getter.
+ */
+public interface CollegeDueView {
+    UUID getId();
+
+    String getName();
+
+    String getDate();
+
+    String getEmail();
+
+    String getMatricNumber();
+
+    String getDepartment();
+
+    String getAcademicSession();
+
+    String getLevel();
+
+    String getTransactionReference();
+
+    String getStatus();
+
+    String getAmount();
+
+    String getPdfUrl();
+
+    UUID getUploadedBy();
+
+    LocalDateTime getUploadedAt();
+}
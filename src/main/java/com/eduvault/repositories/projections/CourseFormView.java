@@ -0,0 +1,31 @@
+package com.eduvault.repositories.projections;
+
+import com.eduvault.user.enums.Status;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * The columns of {@code CourseForm} shown in receipt listings, bound by alias.
+ */
+public interface CourseFormView {
+    UUID getId();
+
+    String getName();
+
+    String getMatricNumber();
+
+    String getProgramme();
+
+    String getLevel();
+
+    String getSession();
+
+    Status getState();
+
+    String getPdfUrl();
+
+    UUID getUploadedBy();
+
+    LocalDateTime getUploadedAt();
+}
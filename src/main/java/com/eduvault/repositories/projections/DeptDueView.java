@@ -0,0 +1,35 @@
+package com.eduvault.repositories.projections;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * The columns of {@code DeptDue} shown in receipt listings, bound by alias.
+ */
+public interface DeptDueView {
+    UUID getId();
+
+    String getName();
+
+    String getDate();
+
+    String getEmail();
+
+    String getMatricNumber();
+
+    String getAcademicSession();
+
+    String getLevel();
+
+    String getTransactionReference();
+
+    String getStatus();
+
+    String getAmount();
+
+    String getPdfUrl();
+
+    LocalDateTime getUploadedAt();
+
+    UUID getUploadedBy();
+}
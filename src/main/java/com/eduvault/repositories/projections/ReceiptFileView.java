@@ -0,0 +1,14 @@
+package com.eduvault.repositories.projections;
+
+import java.util.UUID;
+
+/**
+ * The columns an export needs from a receipt, read without loading the entity.
+ */
+public interface ReceiptFileView {
+    UUID getId();
+
+    String getName();
+
+    String getPdfUrl();
+}
@@ -0,0 +1,31 @@
+package com.eduvault.repositories.projections;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * The columns of {@code RemitaSchoolFeeReceipt} shown in receipt listings, bound by alias.
+ */
+public interface RemitaSchoolFeeReceiptView {
+    UUID getId();
+
+    String getRRR();
+
+    String getName();
+
+    String getEmail();
+
+    String getPhoneNumber();
+
+    String getAmount();
+
+    String getBalanceDue();
+
+    String getAuthorizationRef();
+
+    String getPdfUrl();
+
+    UUID getUploadedBy();
+
+    LocalDateTime getUploadedAt();
+}
@@ -0,0 +1,29 @@
+package com.eduvault.repositories.projections;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * The columns of {@code SchoolFeeInvoice} shown in receipt listings, bound by alias.
+ */
+public interface SchoolFeeInvoiceView {
+    UUID getId();
+
+    String getName();
+
+    String getEmail();
+
+    String getInvoiceNumber();
+
+    String getPhone();
+
+    String getAmount();
+
+    String getRRR();
+
+    UUID getUploadedBy();
+
+    LocalDateTime getUploadedAt();
+
+    String getPdfUrl();
+}
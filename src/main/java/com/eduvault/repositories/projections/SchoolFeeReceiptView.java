@@ -0,0 +1,39 @@
+package com.eduvault.repositories.projections;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * The columns of {@code SchoolFeeReceipt} shown in receipt listings, bound by alias.
+ */
+public interface SchoolFeeReceiptView {
+    UUID getId();
+
+    String getName();
+
+    String getCollege();
+
+    String getDepartment();
+
+    String getDate();
+
+    String getReceiptNumber();
+
+    String getMatricNumber();
+
+    String getLevel();
+
+    String getInvoiceNumber();
+
+    String getBank();
+
+    String getAmount();
+
+    String getDescription();
+
+    String getPdfUrl();
+
+    UUID getUploadedBy();
+
+    LocalDateTime getUploadedAt();
+}
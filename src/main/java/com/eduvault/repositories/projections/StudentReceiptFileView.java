@@ -0,0 +1,8 @@
+package com.eduvault.repositories.projections;
+
+/**
+ * {@link ReceiptFileView} for receipts that also record the student's matric number.
+ */
+public interface StudentReceiptFileView extends ReceiptFileView {
+    String getMatricNumber();
+}
@@ -1,67 +1,80 @@
 package com.eduvault.services;
 
-import com.cloudinary.Cloudinary;
-import com.cloudinary.api.ApiResponse;
-import com.cloudinary.utils.ObjectUtils;
+import com.eduvault.bootstrap.ReceiptIndexInitializer;
+import com.eduvault.dto.CursorPage;
 import com.eduvault.dto.CollegeDueResponse;
 import com.eduvault.dto.FileDownloadResponse;
 import com.eduvault.entities.CollegeDue;
+import com.eduvault.export.ReceiptZipExporter;
+import com.eduvault.export.ZipItem;
+import com.eduvault.ingest.IngestMetrics;
+import com.eduvault.ingest.IngestService;
+import com.eduvault.ingest.IngestedFile;
+import com.eduvault.ingest.ParseScheduler;
+import com.eduvault.ingest.StoredDocument;
+import com.eduvault.pdf.ExtractedFields;
+import com.eduvault.paging.ReceiptCursor;
+import com.eduvault.pdf.ReceiptExtractor;
 import com.eduvault.repositories.CollegeDueRepository;
+import com.eduvault.repositories.projections.ApprovalWatermark;
+import com.eduvault.repositories.projections.CollegeDueView;
+import com.eduvault.repositories.projections.StudentReceiptFileView;
 import com.eduvault.user.User;
+import com.eduvault.user.enums.DocumentType;
 import com.eduvault.user.enums.Level;
 import com.eduvault.user.enums.Status;
 import com.eduvault.user.repo.UserRepository;
-import com.eduvault.user.service.CloudinaryService;
-import com.eduvault.user.utils.UploadResponse;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.*;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URL;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class CollegeDueService {
-    private final PdfReaderService pdfReaderService;
+    private final IngestService ingestService;
+    private final ParseScheduler parseScheduler;
+    private final ReceiptExtractor receiptExtractor;
+    private final IngestMetrics ingestMetrics;
+    private final PaymentReferenceService paymentReferenceService;
     private final CollegeDueRepository collegeDueRepository;
     private final UserRepository userRepository;
-    private final CloudinaryService cloudinaryService;
-    private final Cloudinary cloudinary;
+    private final ReceiptZipExporter receiptZipExporter;
 
 
-    public CollegeDueResponse processReceipt (MultipartFile file, String e_mail, Level studentLevel) throws IOException {
-        User user = userRepository.findByEmail(e_mail)
+    public CollegeDueResponse processReceipt(IngestedFile file, String e_mail, Level studentLevel) throws IOException {
+        User user = ingestMetrics.time(IngestMetrics.USER_LOOKUP, DocumentType.COLLEGE_DUE, () -> userRepository.findByEmail(e_mail))
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
-        UploadResponse uploadResponse = cloudinaryService.upload(file);
-        String pdfUrl = uploadResponse.getSecureUrl();
-        String content = pdfReaderService.readDocument(file);
+        StoredDocument document = ingestService.uploadAndExtract(file, DocumentType.COLLEGE_DUE);
+        String pdfUrl = document.pdfUrl();
+        String content = document.content();
 
         System.out.println("---- PDF CONTENT ----");
         System.out.println(content);
         System.out.println("---------------------");
-        String name = extractField(content, "Payer's Name", "[^\\r\\n]+");
-        String email = extractField(content, "Payer's Email", "[^\\r\\n]+");
-        String matric = extractField(content, "Matric No", "[^\\r\\n]+");
-        String department = extractField(content, "Department", "[^\\r\\n]+");
-        String session = extractField(content, "Academic Session", "[^\\r\\n]+");
-        String level = extractField(content, "Level", "[^\\r\\n]+");
-        String transactionRef = extractField(content, "Transaction Reference", "[^\\r\\n]+");
-        String status = extractField(content, "Status", "[^\\r\\n]+");
-        String amount = extractField(content, "Total Amount", "NGN[\\d,]+");
-        String date = extractField(content, "Date Paid", "[^\\r\\n]+");
+        ExtractedFields fields = receiptExtractor.extract(DocumentType.COLLEGE_DUE, content);
+        String name = fields.get("name");
+        String email = fields.get("email");
+        String matric = fields.get("matricNumber");
+        String department = fields.get("department");
+        String session = fields.get("academicSession");
+        String level = fields.get("level");
+        String transactionRef = fields.get("transactionReference");
+        String status = fields.get("status");
+        String amount = fields.get("amount");
+        String date = fields.get("date");
 
         CollegeDue due = CollegeDue.builder()
                 .name(name != null ? name.trim() : null)
@@ -81,7 +94,16 @@ public class CollegeDueService {
                 .studentLevel(studentLevel)
                 .build();
 
-        CollegeDue savedReceipt = collegeDueRepository.save(due);
+        CollegeDue savedReceipt = paymentReferenceService.claimAndSave(DocumentType.COLLEGE_DUE, transactionRef, user.getId(), () -> {
+            try {
+                return ingestMetrics.time(IngestMetrics.SAVE, DocumentType.COLLEGE_DUE, () -> collegeDueRepository.saveAndFlush(due));
+            } catch (DataIntegrityViolationException e) {
+                if (ReceiptIndexInitializer.isOnePerLevelViolation(e, "college_due")) {
+                    throw alreadyUploaded(studentLevel);
+                }
+                throw e;
+            }
+        }, CollegeDue::getId);
 
         return CollegeDueResponse.builder()
                 .id(savedReceipt.getId())
@@ -101,187 +123,149 @@ public class CollegeDueService {
                 .build();
     }
 
-    private String extractField(String content, String label, String regex) {
-        Pattern pattern = Pattern.compile(label + "\\s+(" + regex + ")", Pattern.CASE_INSENSITIVE);
-        Matcher matcher = pattern.matcher(content);
-        if (matcher.find()) {
-            return matcher.group(1).trim();
+    public CollegeDueResponse uploadReceipt(MultipartFile file, String email, Level studentLevel) throws IOException {
+        try (ParseScheduler.Admission admission = parseScheduler.admit()) {
+            ensureCanUpload(email, studentLevel);
+            try (IngestedFile ingested = ingestService.ingest(file)) {
+                return processReceipt(ingested, email, studentLevel);
+            }
         }
-        return null;
     }
 
-    public CollegeDueResponse uploadReceipt(MultipartFile file, String email, Level studentLevel) throws IOException {
+    public CollegeDueResponse uploadReceipt(IngestedFile file, String email, Level studentLevel) throws IOException {
+        ensureCanUpload(email, studentLevel);
+        return processReceipt(file, email, studentLevel);
+    }
+
+    public void ensureCanUpload(String email, Level studentLevel) {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
 
-        List<CollegeDue> receipts = collegeDueRepository.findByUploadedBy(user.getId());
-
-        boolean alreadyUploadedForLevel = receipts.stream()
-                .anyMatch(receipt ->
-                        receipt.getStudentLevel() == studentLevel && receipt.getState() != Status.REJECTED
-                );
+        if (collegeDueRepository.existsByUploadedByAndStudentLevelAndStateNot(user.getId(), studentLevel, Status.REJECTED)) {
+            throw alreadyUploaded(studentLevel);
+        }
+    }
 
-            if (alreadyUploadedForLevel) {
-                throw new IllegalStateException(
-                        "You have already uploaded a receipt for " + studentLevel + ". " +
+    private IllegalStateException alreadyUploaded(Level studentLevel) {
+        return new IllegalStateException(
+                "You have already uploaded a receipt for " + studentLevel + ". " +
                         "You can only re-upload if your receipt was rejected."
-                );
-            }
-
-        return processReceipt(file, email, studentLevel);
+        );
     }
 
+    @Transactional(readOnly = true)
+    public CursorPage<CollegeDueResponse> getReceiptsPage(Level studentLevel, ReceiptCursor after, int size) {
+        Limit limit = Limit.of(size + 1);
+        List<CollegeDueView> receipts;
+        if (studentLevel == null) {
+            receipts = after == null
+                    ? collegeDueRepository.findPage(limit)
+                    : collegeDueRepository.findPageAfter(after.uploadedAt(), after.id(), limit);
+        } else {
+            receipts = after == null
+                    ? collegeDueRepository.findPageByStudentLevel(studentLevel, limit)
+                    : collegeDueRepository.findPageByStudentLevelAfter(studentLevel, after.uploadedAt(), after.id(), limit);
+        }
+        return ReceiptCursor.page(receipts.stream().map(this::toResponse).toList(), size,
+                receipt -> new ReceiptCursor(receipt.getUploadedAt(), receipt.getId()));
+    }
 
-
-    public List<CollegeDueResponse> getAllReceipts() {
-        List<CollegeDue> receipts = collegeDueRepository.findAll();
-        return receipts.stream()
-                .map(receipt -> CollegeDueResponse.builder()
-                        .id(receipt.getId())
-                        .amount(receipt.getAmount())
-                        .matricNumber(receipt.getMatricNumber())
-                        .department(receipt.getDepartment())
-                        .academicSession(receipt.getAcademicSession())
-                        .email(receipt.getEmail())
-                        .name(receipt.getName())
-                        .level(receipt.getLevel())
-                        .status(receipt.getStatus())
-                        .date(receipt.getDate())
-                        .transactionReference(receipt.getTransactionReference())
-                        .pdfUrl(receipt.getPdfUrl())
-                        .uploadedAt(receipt.getUploadedAt())
-                        .uploadedBy(receipt.getUploadedBy())
-                        .build())
-
-                .toList();    }
-
-
-    public List<CollegeDueResponse> getAllReceiptsByLevel(Level studentLevel) {
-        List<CollegeDue> receipts = collegeDueRepository.findByStudentLevel(studentLevel);
-        return receipts.stream()
-                .map(receipt -> CollegeDueResponse.builder()
-                        .id(receipt.getId())
-                        .amount(receipt.getAmount())
-                        .matricNumber(receipt.getMatricNumber())
-                        .department(receipt.getDepartment())
-                        .academicSession(receipt.getAcademicSession())
-                        .email(receipt.getEmail())
-                        .name(receipt.getName())
-                        .level(receipt.getLevel())
-                        .status(receipt.getStatus())
-                        .date(receipt.getDate())
-                        .transactionReference(receipt.getTransactionReference())
-                        .pdfUrl(receipt.getPdfUrl())
-                        .uploadedAt(receipt.getUploadedAt())
-                        .uploadedBy(receipt.getUploadedBy())
-                        .build())
-
-                .toList();    }
-
+    @Transactional(readOnly = true)
     public List<CollegeDueResponse> getAllReceiptsByLevelByUser(Level studentLevel, String email) {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
-        List<CollegeDue> receipts = collegeDueRepository.findByStudentLevelAndUploadedBy(studentLevel, user.getId());
-        return receipts.stream()
-                .map(receipt -> CollegeDueResponse.builder()
-                        .id(receipt.getId())
-                        .amount(receipt.getAmount())
-                        .matricNumber(receipt.getMatricNumber())
-                        .department(receipt.getDepartment())
-                        .academicSession(receipt.getAcademicSession())
-                        .email(receipt.getEmail())
-                        .name(receipt.getName())
-                        .level(receipt.getLevel())
-                        .status(receipt.getStatus())
-                        .date(receipt.getDate())
-                        .transactionReference(receipt.getTransactionReference())
-                        .pdfUrl(receipt.getPdfUrl())
-                        .uploadedAt(receipt.getUploadedAt())
-                        .uploadedBy(receipt.getUploadedBy())
-                        .build())
-
-                .toList();    }
+        return collegeDueRepository.findViewsByStudentLevelAndUploadedBy(studentLevel, user.getId()).stream()
+                .map(this::toResponse)
+                .toList();
+    }
 
+    @Transactional(readOnly = true)
     public List<CollegeDueResponse> getAllReceiptsByUser(String email) {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
-        List<CollegeDue> receipts = collegeDueRepository.findByUploadedBy(user.getId());
-        return receipts.stream()
-                .map(receipt -> CollegeDueResponse.builder()
-                        .id(receipt.getId())
-                        .amount(receipt.getAmount())
-                        .matricNumber(receipt.getMatricNumber())
-                        .department(receipt.getDepartment())
-                        .academicSession(receipt.getAcademicSession())
-                        .email(receipt.getEmail())
-                        .name(receipt.getName())
-                        .level(receipt.getLevel())
-                        .status(receipt.getStatus())
-                        .date(receipt.getDate())
-                        .transactionReference(receipt.getTransactionReference())
-                        .pdfUrl(receipt.getPdfUrl())
-                        .uploadedAt(receipt.getUploadedAt())
-                        .uploadedBy(receipt.getUploadedBy())
-                        .build())
-
+        return collegeDueRepository.findViewsByUploadedBy(user.getId()).stream()
+                .map(this::toResponse)
                 .toList();
     }
+
+    private CollegeDueResponse toResponse(CollegeDueView view) {
+        return CollegeDueResponse.builder()
+                .id(view.getId())
+                .name(view.getName())
+                .date(view.getDate())
+                .email(view.getEmail())
+                .matricNumber(view.getMatricNumber())
+                .department(view.getDepartment())
+                .academicSession(view.getAcademicSession())
+                .level(view.getLevel())
+                .transactionReference(view.getTransactionReference())
+                .status(view.getStatus())
+                .amount(view.getAmount())
+                .pdfUrl(view.getPdfUrl())
+                .uploadedBy(view.getUploadedBy())
+                .uploadedAt(view.getUploadedAt())
+                .build();
+    }
     public UUID getUploadedBy(UUID receiptId) {
         return collegeDueRepository.findUploadedByById(receiptId);
     }
 
-    public byte[] downloadApprovedReceiptsAsZip() throws IOException {
-        List<CollegeDue> receipts = collegeDueRepository.findByState(Status.APPROVED);
+    @Transactional(readOnly = true)
+    public StreamingResponseBody downloadApprovedReceiptsAsZip() {
+        List<ZipItem> items;
+        try (Stream<StudentReceiptFileView> receipts = collegeDueRepository.streamByStateAndPdfUrlIsNotNull(Status.APPROVED)) {
+            items = receipts.map(this::toZipItem).toList();
+        }
+        return out -> receiptZipExporter.write(items, out);
+    }
 
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             ZipOutputStream zos = new ZipOutputStream(baos)) {
+    @Transactional(readOnly = true)
+    public List<ZipItem> approvedZipItems(Level studentLevel) {
+        try (Stream<StudentReceiptFileView> receipts = collegeDueRepository.streamByStateAndStudentLevelAndPdfUrlIsNotNull(Status.APPROVED, studentLevel)) {
+            return receipts.map(this::toZipItem).toList();
+        }
+    }
 
-            for (CollegeDue receipt : receipts) {
-                if (receipt.getPdfUrl() == null) continue;
+    @Transactional(readOnly = true)
+    public ApprovalWatermark approvedWatermark(Level studentLevel) {
+        return collegeDueRepository.findWatermarkByStateAndStudentLevel(Status.APPROVED, studentLevel);
+    }
 
-                String safeName = receipt.getName() != null ? receipt.getName().replaceAll("\\s+", "_") : "receipt";
-                String fileName = safeName + "-" + receipt.getMatricNumber() + ".pdf";
+    public ZipItem toZipItem(CollegeDue receipt) {
+        return zipItem(receipt.getName(), receipt.getMatricNumber(), receipt.getPdfUrl());
+    }
 
-                try (InputStream in = new URL(receipt.getPdfUrl()).openStream()) {
-                    zos.putNextEntry(new ZipEntry(fileName));
-                    in.transferTo(zos);
-                    zos.closeEntry();
-                } catch (Exception e) {
-                    System.err.println("Could not download PDF: " + receipt.getPdfUrl() + " -> " + e.getMessage());
-                }
-            }
+    private ZipItem toZipItem(StudentReceiptFileView receipt) {
+        return zipItem(receipt.getName(), receipt.getMatricNumber(), receipt.getPdfUrl());
+    }
 
-            zos.finish();
-            return baos.toByteArray();
-        }
+    private ZipItem zipItem(String name, String matricNumber, String pdfUrl) {
+        String safeName = name != null ? name.replaceAll("\\s+", "_") : "receipt";
+        String fileName = safeName + "-" + matricNumber + ".pdf";
+        return new ZipItem(fileName, pdfUrl);
     }
 
-    public FileDownloadResponse downloadReceiptByUser(String email) throws IOException {
+    /**
+     * Finds the user's newest receipt, or their newest for {@code studentLevel} when one is given.
+     */
+    public FileDownloadResponse downloadReceiptByUser(String email, Level studentLevel) throws IOException {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
 
-        CollegeDue receipt = collegeDueRepository.findByUploadedBy(user.getId())
-                .stream()
-                .max(Comparator.comparing(CollegeDue::getUploadedAt))
+        Optional<CollegeDue> latest = studentLevel == null
+                ? collegeDueRepository.findFirstByUploadedByOrderByUploadedAtDesc(user.getId())
+                : collegeDueRepository.findFirstByUploadedByAndStudentLevelOrderByUploadedAtDesc(user.getId(), studentLevel);
+        CollegeDue receipt = latest
                 .orElseThrow(() -> new EntityNotFoundException("No receipt found for this user."));
 
         if (receipt.getPdfUrl() == null || receipt.getPdfUrl().isBlank()) {
             throw new FileNotFoundException("No PDF found for this receipt.");
         }
 
-        String fileUrl = receipt.getPdfUrl();
-
-        byte[] pdfBytes;
-        try (InputStream in = new URL(fileUrl).openStream()) {
-            pdfBytes = in.readAllBytes();
-        } catch (Exception e) {
-            throw new IOException("Could not download PDF from Cloudinary: " + e.getMessage(), e);
-        }
-
         String fileName = (receipt.getName() != null ? receipt.getName().replaceAll("\\s+", "_") : "receipt")
                 + "-" + receipt.getMatricNumber() + ".pdf";
 
-        return new FileDownloadResponse(fileName, pdfBytes);
+        return new FileDownloadResponse(fileName, receipt.getPdfUrl());
     }
 
 }
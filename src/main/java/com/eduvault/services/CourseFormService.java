@@ -1,59 +1,73 @@
 package com.eduvault.services;
 
-import com.cloudinary.Cloudinary;
+import com.eduvault.bootstrap.ReceiptIndexInitializer;
+import com.eduvault.dto.CursorPage;
 import com.eduvault.dto.CourseFormResponse;
 import com.eduvault.dto.FileDownloadResponse;
 import com.eduvault.entities.CollegeDue;
 import com.eduvault.entities.CourseForm;
+import com.eduvault.export.ReceiptZipExporter;
+import com.eduvault.export.ZipItem;
+import com.eduvault.ingest.IngestMetrics;
+import com.eduvault.ingest.IngestService;
+import com.eduvault.ingest.IngestedFile;
+import com.eduvault.ingest.ParseScheduler;
+import com.eduvault.ingest.StoredDocument;
+import com.eduvault.pdf.ExtractedFields;
+import com.eduvault.paging.ReceiptCursor;
+import com.eduvault.pdf.ReceiptExtractor;
 import com.eduvault.repositories.CourseFormRepository;
+import com.eduvault.repositories.projections.ApprovalWatermark;
+import com.eduvault.repositories.projections.CourseFormView;
+import com.eduvault.repositories.projections.StudentReceiptFileView;
 import com.eduvault.user.User;
+import com.eduvault.user.enums.DocumentType;
 import com.eduvault.user.enums.Level;
 import com.eduvault.user.enums.Status;
 import com.eduvault.user.repo.UserRepository;
-import com.eduvault.user.service.CloudinaryService;
-import com.eduvault.user.utils.UploadResponse;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URL;
 import java.time.LocalDateTime;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class CourseFormService {
     private final UserRepository userRepository;
     private final CourseFormRepository courseFormRepository;
-    private final CloudinaryService cloudinaryService;
-    private final PdfReaderService pdfReaderService;
-    private final Cloudinary cloudinary;
-
-
-    public CourseFormResponse processReceipt  (MultipartFile file, String e_mail, Level studentLevel) throws IOException {
-        User user = userRepository.findByEmail(e_mail).orElseThrow(() -> new EntityNotFoundException("User not found"));
-        UploadResponse uploadResponse = cloudinaryService.upload(file);
-        String pdfUrl = uploadResponse.getSecureUrl();
-        String content = pdfReaderService.readDocument(file);
+    private final IngestService ingestService;
+    private final ParseScheduler parseScheduler;
+    private final ReceiptExtractor receiptExtractor;
+    private final IngestMetrics ingestMetrics;
+    private final ReceiptZipExporter receiptZipExporter;
+
+
+    public CourseFormResponse processReceipt(IngestedFile file, String e_mail, Level studentLevel) throws IOException {
+        User user = ingestMetrics.time(IngestMetrics.USER_LOOKUP, DocumentType.COURSE_FORM, () -> userRepository.findByEmail(e_mail)).orElseThrow(() -> new EntityNotFoundException("User not found"));
+        StoredDocument document = ingestService.uploadAndExtract(file, DocumentType.COURSE_FORM);
+        String pdfUrl = document.pdfUrl();
+        String content = document.content();
         System.out.println("---- PDF CONTENT ----");
         System.out.println(content);
         System.out.println("---------------------");
-        String session = extractField(content, "(\\d{4}/\\d{4}\\s+SESSION)", null);
-        String name = extractField(content, "Name:", "([A-Za-z ]+)");
-        String programme = extractField(content, "Programme:", "([A-Za-z ]+)");
-        String level = extractField(content, "Level:", "([0-9]+L)");
-        String matric = extractField(content, "ID:", "(\\d+)");
+        ExtractedFields fields = receiptExtractor.extract(DocumentType.COURSE_FORM, content);
+        String session = fields.get("session");
+        String name = fields.get("name");
+        String programme = fields.get("programme");
+        String level = fields.get("level");
+        String matric = fields.get("matricNumber");
 
         CourseForm form = CourseForm.builder()
                 .name(name != null ? name.trim() : null)
@@ -61,10 +75,22 @@ public class CourseFormService {
                 .level(level)
                 .matricNumber(matric)
                 .session(session)
+                .pdfUrl(pdfUrl)
+                .uploadedBy(user.getId())
+                .uploadedAt(LocalDateTime.now())
+                .state(Status.PENDING)
                 .studentLevel(studentLevel)
                 .build();
 
-        CourseForm savedForm = courseFormRepository.save(form);
+        CourseForm savedForm;
+        try {
+            savedForm = ingestMetrics.time(IngestMetrics.SAVE, DocumentType.COURSE_FORM, () -> courseFormRepository.save(form));
+        } catch (DataIntegrityViolationException e) {
+            if (ReceiptIndexInitializer.isOnePerLevelViolation(e, "course_form")) {
+                throw alreadyUploaded(studentLevel);
+            }
+            throw e;
+        }
 
         return CourseFormResponse.builder()
                 .id(savedForm.getId())
@@ -73,177 +99,153 @@ public class CourseFormService {
                 .level(savedForm.getLevel())
                 .matricNumber(savedForm.getMatricNumber())
                 .session(savedForm.getSession())
-                .uploadedAt(LocalDateTime.now())
-                .uploadedBy(user.getId())
-                .state(Status.PENDING)
+                .uploadedAt(savedForm.getUploadedAt())
+                .uploadedBy(savedForm.getUploadedBy())
+                .state(savedForm.getState())
                 .build();
     }
 
-    private String extractField(String content, String label, String regex) {
-        Pattern pattern = Pattern.compile(label + "\\s*(" + regex + ")", Pattern.CASE_INSENSITIVE);
-        Matcher matcher = pattern.matcher(content);
-        if (matcher.find()) {
-            return matcher.group(1).trim();
+    public CourseFormResponse uploadReceipt(MultipartFile file, String email, Level studentLevel) throws IOException {
+        try (ParseScheduler.Admission admission = parseScheduler.admit()) {
+            ensureCanUpload(email, studentLevel);
+            try (IngestedFile ingested = ingestService.ingest(file)) {
+                return processReceipt(ingested, email, studentLevel);
+            }
         }
-        return null;
     }
 
+    public CourseFormResponse uploadReceipt(IngestedFile file, String email, Level studentLevel) throws IOException {
+        ensureCanUpload(email, studentLevel);
+        return processReceipt(file, email, studentLevel);
+    }
 
-    public CourseFormResponse uploadReceipt(MultipartFile file, String email, Level studentLevel) throws IOException {
+    public void ensureCanUpload(String email, Level studentLevel) {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
 
-        List<CourseForm> receipts = courseFormRepository.findByUploadedBy(user.getId());
-
-        boolean alreadyUploadedForLevel = receipts.stream()
-                .anyMatch(receipt ->
-                        receipt.getStudentLevel() == studentLevel && receipt.getState() != Status.REJECTED
-                );
-
-        if (alreadyUploadedForLevel) {
-            throw new IllegalStateException(
-                    "You have already uploaded a receipt for " + studentLevel + ". " +
-                            "You can only re-upload if your receipt was rejected."
-            );
+        if (courseFormRepository.existsByUploadedByAndStudentLevelAndStateNot(user.getId(), studentLevel, Status.REJECTED)) {
+            throw alreadyUploaded(studentLevel);
         }
-        return processReceipt(file, email, studentLevel);
     }
 
+    private IllegalStateException alreadyUploaded(Level studentLevel) {
+        return new IllegalStateException(
+                "You have already uploaded a receipt for " + studentLevel + ". " +
+                        "You can only re-upload if your receipt was rejected."
+        );
+    }
+
+    @Transactional(readOnly = true)
     public List<CourseFormResponse> getAllReceiptsByUser(String email) {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
-        List<CourseForm> receipts = courseFormRepository.findByUploadedBy(user.getId());
-        return receipts.stream()
-                .map(receipt -> CourseFormResponse.builder()
-                        .id(receipt.getId())
-                        .name(receipt.getName())
-                        .matricNumber(receipt.getMatricNumber())
-                        .programme(receipt.getProgramme())
-                        .session(receipt.getSession())
-                        .level(receipt.getLevel())
-                        .state(receipt.getState())
-                        .pdfUrl(receipt.getPdfUrl())
-                        .uploadedAt(receipt.getUploadedAt())
-                        .uploadedBy(receipt.getUploadedBy())
-                        .build())
-
+        return courseFormRepository.findViewsByUploadedBy(user.getId()).stream()
+                .map(this::toResponse)
                 .toList();
     }
 
-    public List<CourseFormResponse> getAllReceipts() {
-        List<CourseForm> receipts = courseFormRepository.findAll();
-        return receipts.stream()
-                .map(receipt -> CourseFormResponse.builder()
-                        .id(receipt.getId())
-                        .name(receipt.getName())
-                        .matricNumber(receipt.getMatricNumber())
-                        .programme(receipt.getProgramme())
-                        .session(receipt.getSession())
-                        .level(receipt.getLevel())
-                        .state(receipt.getState())
-                        .pdfUrl(receipt.getPdfUrl())
-                        .uploadedAt(receipt.getUploadedAt())
-                        .uploadedBy(receipt.getUploadedBy())
-                        .build())
-
-                .toList();    }
-
-
-    public List<CourseFormResponse> getAllReceiptsByLevel(Level studentLevel) {
-        List<CourseForm> receipts = courseFormRepository.findByStudentLevel(studentLevel);
-        return receipts.stream()
-                .map(receipt -> CourseFormResponse.builder()
-                        .id(receipt.getId())
-                        .name(receipt.getName())
-                        .matricNumber(receipt.getMatricNumber())
-                        .programme(receipt.getProgramme())
-                        .session(receipt.getSession())
-                        .level(receipt.getLevel())
-                        .state(receipt.getState())
-                        .pdfUrl(receipt.getPdfUrl())
-                        .uploadedAt(receipt.getUploadedAt())
-                        .uploadedBy(receipt.getUploadedBy())
-                        .build())
-
-                .toList();    }
+    private CourseFormResponse toResponse(CourseFormView view) {
+        return CourseFormResponse.builder()
+                .id(view.getId())
+                .name(view.getName())
+                .matricNumber(view.getMatricNumber())
+                .programme(view.getProgramme())
+                .level(view.getLevel())
+                .session(view.getSession())
+                .state(view.getState())
+                .pdfUrl(view.getPdfUrl())
+                .uploadedBy(view.getUploadedBy())
+                .uploadedAt(view.getUploadedAt())
+                .build();
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<CourseFormResponse> getReceiptsPage(Level studentLevel, ReceiptCursor after, int size) {
+        Limit limit = Limit.of(size + 1);
+        List<CourseFormView> receipts;
+        if (studentLevel == null) {
+            receipts = after == null
+                    ? courseFormRepository.findPage(limit)
+                    : courseFormRepository.findPageAfter(after.uploadedAt(), after.id(), limit);
+        } else {
+            receipts = after == null
+                    ? courseFormRepository.findPageByStudentLevel(studentLevel, limit)
+                    : courseFormRepository.findPageByStudentLevelAfter(studentLevel, after.uploadedAt(), after.id(), limit);
+        }
+        return ReceiptCursor.page(receipts.stream().map(this::toResponse).toList(), size,
+                receipt -> new ReceiptCursor(receipt.getUploadedAt(), receipt.getId()));
+    }
 
+    @Transactional(readOnly = true)
     public List<CourseFormResponse> getAllReceiptsByLevelByUser(Level studentLevel, String email) {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
-        List<CourseForm> receipts = courseFormRepository.findByStudentLevelAndUploadedBy(studentLevel, user.getId());
-        return receipts.stream()
-                .map(receipt -> CourseFormResponse.builder()
-                        .id(receipt.getId())
-                        .name(receipt.getName())
-                        .matricNumber(receipt.getMatricNumber())
-                        .programme(receipt.getProgramme())
-                        .session(receipt.getSession())
-                        .level(receipt.getLevel())
-                        .state(receipt.getState())
-                        .pdfUrl(receipt.getPdfUrl())
-                        .uploadedAt(receipt.getUploadedAt())
-                        .uploadedBy(receipt.getUploadedBy())
-                        .build())
-
-                .toList();    }
+        return courseFormRepository.findViewsByStudentLevelAndUploadedBy(studentLevel, user.getId()).stream()
+                .map(this::toResponse)
+                .toList();
+    }
 
 
     public UUID getUploadedBy(UUID receiptId) {
         return courseFormRepository.findUploadedByById(receiptId);
     }
 
-    public byte[] downloadApprovedReceiptsAsZip() throws IOException {
-        List<CourseForm> receipts = courseFormRepository.findByState(Status.APPROVED);
+    @Transactional(readOnly = true)
+    public StreamingResponseBody downloadApprovedReceiptsAsZip() {
+        List<ZipItem> items;
+        try (Stream<StudentReceiptFileView> receipts = courseFormRepository.streamByStateAndPdfUrlIsNotNull(Status.APPROVED)) {
+            items = receipts.map(this::toZipItem).toList();
+        }
+        return out -> receiptZipExporter.write(items, out);
+    }
 
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             ZipOutputStream zos = new ZipOutputStream(baos)) {
+    @Transactional(readOnly = true)
+    public List<ZipItem> approvedZipItems(Level studentLevel) {
+        try (Stream<StudentReceiptFileView> receipts = courseFormRepository.streamByStateAndStudentLevelAndPdfUrlIsNotNull(Status.APPROVED, studentLevel)) {
+            return receipts.map(this::toZipItem).toList();
+        }
+    }
 
-            for (CourseForm receipt : receipts) {
-                if (receipt.getPdfUrl() == null) continue;
+    @Transactional(readOnly = true)
+    public ApprovalWatermark approvedWatermark(Level studentLevel) {
+        return courseFormRepository.findWatermarkByStateAndStudentLevel(Status.APPROVED, studentLevel);
+    }
 
-                String safeName = receipt.getName() != null ? receipt.getName().replaceAll("\\s+", "_") : "receipt";
-                String fileName = safeName + "-" + receipt.getMatricNumber() + ".pdf";
+    public ZipItem toZipItem(CourseForm receipt) {
+        return zipItem(receipt.getName(), receipt.getMatricNumber(), receipt.getPdfUrl());
+    }
 
-                try (InputStream in = new URL(receipt.getPdfUrl()).openStream()) {
-                    zos.putNextEntry(new ZipEntry(fileName));
-                    in.transferTo(zos);
-                    zos.closeEntry();
-                } catch (Exception e) {
-                    System.err.println("Could not download PDF: " + receipt.getPdfUrl() + " -> " + e.getMessage());
-                }
-            }
+    private ZipItem toZipItem(StudentReceiptFileView receipt) {
+        return zipItem(receipt.getName(), receipt.getMatricNumber(), receipt.getPdfUrl());
+    }
 
-            zos.finish();
-            return baos.toByteArray();
-        }
+    private ZipItem zipItem(String name, String matricNumber, String pdfUrl) {
+        String safeName = name != null ? name.replaceAll("\\s+", "_") : "receipt";
+        String fileName = safeName + "-" + matricNumber + ".pdf";
+        return new ZipItem(fileName, pdfUrl);
     }
 
-    public FileDownloadResponse downloadReceiptByUser(String email) throws IOException {
+    /**
+     * Finds the user's newest receipt, or their newest for {@code studentLevel} when one is given.
+     */
+    public FileDownloadResponse downloadReceiptByUser(String email, Level studentLevel) throws IOException {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
 
-        CourseForm receipt = courseFormRepository.findByUploadedBy(user.getId())
-                .stream()
-                .max(Comparator.comparing(CourseForm::getUploadedAt))
+        Optional<CourseForm> latest = studentLevel == null
+                ? courseFormRepository.findFirstByUploadedByOrderByUploadedAtDesc(user.getId())
+                : courseFormRepository.findFirstByUploadedByAndStudentLevelOrderByUploadedAtDesc(user.getId(), studentLevel);
+        CourseForm receipt = latest
                 .orElseThrow(() -> new EntityNotFoundException("No receipt found for this user."));
 
         if (receipt.getPdfUrl() == null || receipt.getPdfUrl().isBlank()) {
             throw new FileNotFoundException("No PDF found for this receipt.");
         }
 
-        String fileUrl = receipt.getPdfUrl();
-
-        byte[] pdfBytes;
-        try (InputStream in = new URL(fileUrl).openStream()) {
-            pdfBytes = in.readAllBytes();
-        } catch (Exception e) {
-            throw new IOException("Could not download PDF from Cloudinary: " + e.getMessage(), e);
-        }
-
         String fileName = (receipt.getName() != null ? receipt.getName().replaceAll("\\s+", "_") : "receipt")
                 + "-" + receipt.getMatricNumber() + ".pdf";
 
-        return new FileDownloadResponse(fileName, pdfBytes);
+        return new FileDownloadResponse(fileName, receipt.getPdfUrl());
     }
 
 }
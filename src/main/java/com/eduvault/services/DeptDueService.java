@@ -1,62 +1,77 @@
 package com.eduvault.services;
 
-import com.cloudinary.Cloudinary;
+import com.eduvault.bootstrap.ReceiptIndexInitializer;
+import com.eduvault.dto.CursorPage;
 import com.eduvault.dto.DeptDueResponse;
 import com.eduvault.dto.FileDownloadResponse;
 import com.eduvault.entities.CourseForm;
 import com.eduvault.entities.DeptDue;
+import com.eduvault.export.ReceiptZipExporter;
+import com.eduvault.export.ZipItem;
+import com.eduvault.ingest.IngestMetrics;
+import com.eduvault.ingest.IngestService;
+import com.eduvault.ingest.IngestedFile;
+import com.eduvault.ingest.ParseScheduler;
+import com.eduvault.ingest.StoredDocument;
+import com.eduvault.pdf.ExtractedFields;
+import com.eduvault.paging.ReceiptCursor;
+import com.eduvault.pdf.ReceiptExtractor;
 import com.eduvault.repositories.DeptDueRepository;
+import com.eduvault.repositories.projections.ApprovalWatermark;
+import com.eduvault.repositories.projections.DeptDueView;
+import com.eduvault.repositories.projections.StudentReceiptFileView;
 import com.eduvault.user.User;
+import com.eduvault.user.enums.DocumentType;
 import com.eduvault.user.enums.Level;
 import com.eduvault.user.enums.Status;
 import com.eduvault.user.repo.UserRepository;
-import com.eduvault.user.service.CloudinaryService;
-import com.eduvault.user.utils.UploadResponse;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URL;
 import java.time.LocalDateTime;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class DeptDueService {
     private final UserRepository userRepository;
     private final DeptDueRepository deptDueRepository;
-    private final CloudinaryService cloudinaryService;
-    private final PdfReaderService pdfReaderService;
-    private final Cloudinary cloudinary;
-
-    public DeptDueResponse processReceipt (MultipartFile file, String e_mail, Level studentLevel) throws IOException {
-        User user = userRepository.findByEmail(e_mail).orElseThrow(() -> new EntityNotFoundException("User not found"));
-        UploadResponse uploadResponse = cloudinaryService.upload(file);
-        String pdfUrl = uploadResponse.getSecureUrl();
-        String content = pdfReaderService.readDocument(file);
+    private final IngestService ingestService;
+    private final ParseScheduler parseScheduler;
+    private final ReceiptExtractor receiptExtractor;
+    private final IngestMetrics ingestMetrics;
+    private final PaymentReferenceService paymentReferenceService;
+    private final ReceiptZipExporter receiptZipExporter;
+
+    public DeptDueResponse processReceipt(IngestedFile file, String e_mail, Level studentLevel) throws IOException {
+        User user = ingestMetrics.time(IngestMetrics.USER_LOOKUP, DocumentType.DEPT_DUE, () -> userRepository.findByEmail(e_mail)).orElseThrow(() -> new EntityNotFoundException("User not found"));
+        StoredDocument document = ingestService.uploadAndExtract(file, DocumentType.DEPT_DUE);
+        String pdfUrl = document.pdfUrl();
+        String content = document.content();
         System.out.println("---- PDF CONTENT ----");
         System.out.println(content);
         System.out.println("---------------------");
-        String name = extractField(content, "Payer's Name", "[^\\r\\n]+");
-        String email = extractField(content, "Payer's Email", "[^\\r\\n]+");
-        String matric = extractField(content, "Matric No", "[^\\r\\n]+");
-        String session = extractField(content, "Academic Session", "[^\\r\\n]+");
-        String level = extractField(content, "Level", "[^\\r\\n]+");
-        String transactionRef = extractField(content, "Transaction Reference", "[^\\r\\n]+");
-        String status = extractField(content, "Status", "[^\\r\\n]+");
-        String amount = extractField(content, "Total Amount", "NGN[\\d,]+");
-        String date = extractField(content, "Date Paid", "[^\\r\\n]+");
+        ExtractedFields fields = receiptExtractor.extract(DocumentType.DEPT_DUE, content);
+        String name = fields.get("name");
+        String email = fields.get("email");
+        String matric = fields.get("matricNumber");
+        String session = fields.get("academicSession");
+        String level = fields.get("level");
+        String transactionRef = fields.get("transactionReference");
+        String status = fields.get("status");
+        String amount = fields.get("amount");
+        String date = fields.get("date");
 
         DeptDue due = DeptDue.builder()
                 .name(name != null ? name.trim() : null)
@@ -75,7 +90,16 @@ public class DeptDueService {
                 .studentLevel(studentLevel)
                 .build();
 
-        DeptDue savedReceipt = deptDueRepository.save(due);
+        DeptDue savedReceipt = paymentReferenceService.claimAndSave(DocumentType.DEPT_DUE, transactionRef, user.getId(), () -> {
+            try {
+                return ingestMetrics.time(IngestMetrics.SAVE, DocumentType.DEPT_DUE, () -> deptDueRepository.saveAndFlush(due));
+            } catch (DataIntegrityViolationException e) {
+                if (ReceiptIndexInitializer.isOnePerLevelViolation(e, "dept_due")) {
+                    throw alreadyUploaded(studentLevel);
+                }
+                throw e;
+            }
+        }, DeptDue::getId);
 
         return DeptDueResponse.builder()
                 .id(savedReceipt.getId())
@@ -94,179 +118,149 @@ public class DeptDueService {
                 .build();
     }
 
-    private String extractField(String content, String label, String regex) {
-        Pattern pattern = Pattern.compile(label + "\\s+(" + regex + ")", Pattern.CASE_INSENSITIVE);
-        Matcher matcher = pattern.matcher(content);
-        if (matcher.find()) {
-            return matcher.group(1).trim();
+    public DeptDueResponse uploadReceipt(MultipartFile file, String email, Level studentLevel) throws IOException {
+        try (ParseScheduler.Admission admission = parseScheduler.admit()) {
+            ensureCanUpload(email, studentLevel);
+            try (IngestedFile ingested = ingestService.ingest(file)) {
+                return processReceipt(ingested, email, studentLevel);
+            }
         }
-        return null;
     }
 
-    public DeptDueResponse uploadReceipt(MultipartFile file, String email, Level studentLevel) throws IOException {
+    public DeptDueResponse uploadReceipt(IngestedFile file, String email, Level studentLevel) throws IOException {
+        ensureCanUpload(email, studentLevel);
+        return processReceipt(file, email, studentLevel);
+    }
+
+    public void ensureCanUpload(String email, Level studentLevel) {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
 
-        List<DeptDue> receipts = deptDueRepository.findByUploadedBy(user.getId());
-        boolean alreadyUploadedForLevel = receipts.stream()
-                .anyMatch(receipt ->
-                        receipt.getStudentLevel() == studentLevel && receipt.getState() != Status.REJECTED
-                );
-
-        if (alreadyUploadedForLevel) {
-            throw new IllegalStateException(
-                    "You have already uploaded a receipt for " + studentLevel + ". " +
-                            "You can only re-upload if your receipt was rejected."
-            );
+        if (deptDueRepository.existsByUploadedByAndStudentLevelAndStateNot(user.getId(), studentLevel, Status.REJECTED)) {
+            throw alreadyUploaded(studentLevel);
         }
-        return processReceipt(file, email, studentLevel);
     }
 
-    public List<DeptDueResponse> getAllReceipts() {
-        List<DeptDue> receipts = deptDueRepository.findAll();
-        return receipts.stream()
-                .map(receipt -> DeptDueResponse.builder()
-                        .id(receipt.getId())
-                        .amount(receipt.getAmount())
-                        .matricNumber(receipt.getMatricNumber())
-                        .academicSession(receipt.getAcademicSession())
-                        .email(receipt.getEmail())
-                        .name(receipt.getName())
-                        .level(receipt.getLevel())
-                        .status(receipt.getStatus())
-                        .date(receipt.getDate())
-                        .transactionReference(receipt.getTransactionReference())
-                        .pdfUrl(receipt.getPdfUrl())
-                        .uploadedAt(receipt.getUploadedAt())
-                        .uploadedBy(receipt.getUploadedBy())
-                        .build())
-
-                .toList();    }
-
-    public List<DeptDueResponse> getAllReceiptsByLevel(Level studentLevel) {
-        List<DeptDue> receipts = deptDueRepository.findByStudentLevel(studentLevel);
-        return receipts.stream()
-                .map(receipt -> DeptDueResponse.builder()
-                        .id(receipt.getId())
-                        .amount(receipt.getAmount())
-                        .matricNumber(receipt.getMatricNumber())
-                        .academicSession(receipt.getAcademicSession())
-                        .email(receipt.getEmail())
-                        .name(receipt.getName())
-                        .level(receipt.getLevel())
-                        .status(receipt.getStatus())
-                        .date(receipt.getDate())
-                        .transactionReference(receipt.getTransactionReference())
-                        .pdfUrl(receipt.getPdfUrl())
-                        .uploadedAt(receipt.getUploadedAt())
-                        .uploadedBy(receipt.getUploadedBy())
-                        .build())
+    private IllegalStateException alreadyUploaded(Level studentLevel) {
+        return new IllegalStateException(
+                "You have already uploaded a receipt for " + studentLevel + ". " +
+                        "You can only re-upload if your receipt was rejected."
+        );
+    }
 
-                .toList();    }
+    @Transactional(readOnly = true)
+    public CursorPage<DeptDueResponse> getReceiptsPage(Level studentLevel, ReceiptCursor after, int size) {
+        Limit limit = Limit.of(size + 1);
+        List<DeptDueView> receipts;
+        if (studentLevel == null) {
+            receipts = after == null
+                    ? deptDueRepository.findPage(limit)
+                    : deptDueRepository.findPageAfter(after.uploadedAt(), after.id(), limit);
+        } else {
+            receipts = after == null
+                    ? deptDueRepository.findPageByStudentLevel(studentLevel, limit)
+                    : deptDueRepository.findPageByStudentLevelAfter(studentLevel, after.uploadedAt(), after.id(), limit);
+        }
+        return ReceiptCursor.page(receipts.stream().map(this::toResponse).toList(), size,
+                receipt -> new ReceiptCursor(receipt.getUploadedAt(), receipt.getId()));
+    }
 
+    @Transactional(readOnly = true)
     public List<DeptDueResponse> getAllReceiptsByLevelByUser(Level studentLevel, String email) {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
-        List<DeptDue> receipts = deptDueRepository.findByStudentLevelAndUploadedBy(studentLevel, user.getId());
-        return receipts.stream()
-                .map(receipt -> DeptDueResponse.builder()
-                        .id(receipt.getId())
-                        .amount(receipt.getAmount())
-                        .matricNumber(receipt.getMatricNumber())
-                        .academicSession(receipt.getAcademicSession())
-                        .email(receipt.getEmail())
-                        .name(receipt.getName())
-                        .level(receipt.getLevel())
-                        .status(receipt.getStatus())
-                        .date(receipt.getDate())
-                        .transactionReference(receipt.getTransactionReference())
-                        .pdfUrl(receipt.getPdfUrl())
-                        .uploadedAt(receipt.getUploadedAt())
-                        .uploadedBy(receipt.getUploadedBy())
-                        .build())
-                .toList();    }
-
+        return deptDueRepository.findViewsByStudentLevelAndUploadedBy(studentLevel, user.getId()).stream()
+                .map(this::toResponse)
+                .toList();
+    }
 
+    @Transactional(readOnly = true)
     public List<DeptDueResponse> getAllReceiptsByUser(String email) {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
-        List<DeptDue> receipts = deptDueRepository.findByUploadedBy(user.getId());
-        return receipts.stream()
-                .map(receipt -> DeptDueResponse.builder()
-                        .id(receipt.getId())
-                        .amount(receipt.getAmount())
-                        .matricNumber(receipt.getMatricNumber())
-                        .academicSession(receipt.getAcademicSession())
-                        .email(receipt.getEmail())
-                        .name(receipt.getName())
-                        .level(receipt.getLevel())
-                        .status(receipt.getStatus())
-                        .date(receipt.getDate())
-                        .transactionReference(receipt.getTransactionReference())
-                        .pdfUrl(receipt.getPdfUrl())
-                        .uploadedAt(receipt.getUploadedAt())
-                        .uploadedBy(receipt.getUploadedBy())
-                        .build())
-
+        return deptDueRepository.findViewsByUploadedBy(user.getId()).stream()
+                .map(this::toResponse)
                 .toList();
     }
 
+    private DeptDueResponse toResponse(DeptDueView view) {
+        return DeptDueResponse.builder()
+                .id(view.getId())
+                .name(view.getName())
+                .date(view.getDate())
+                .email(view.getEmail())
+                .matricNumber(view.getMatricNumber())
+                .academicSession(view.getAcademicSession())
+                .level(view.getLevel())
+                .transactionReference(view.getTransactionReference())
+                .status(view.getStatus())
+                .amount(view.getAmount())
+                .pdfUrl(view.getPdfUrl())
+                .uploadedAt(view.getUploadedAt())
+                .uploadedBy(view.getUploadedBy())
+                .build();
+    }
+
     public UUID getUploadedBy(UUID receiptId) {
         return deptDueRepository.findUploadedByById(receiptId);
     }
 
-    public byte[] downloadApprovedReceiptsAsZip() throws IOException {
-        List<DeptDue> receipts = deptDueRepository.findByState(Status.APPROVED);
+    @Transactional(readOnly = true)
+    public StreamingResponseBody downloadApprovedReceiptsAsZip() {
+        List<ZipItem> items;
+        try (Stream<StudentReceiptFileView> receipts = deptDueRepository.streamByStateAndPdfUrlIsNotNull(Status.APPROVED)) {
+            items = receipts.map(this::toZipItem).toList();
+        }
+        return out -> receiptZipExporter.write(items, out);
+    }
 
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             ZipOutputStream zos = new ZipOutputStream(baos)) {
+    @Transactional(readOnly = true)
+    public List<ZipItem> approvedZipItems(Level studentLevel) {
+        try (Stream<StudentReceiptFileView> receipts = deptDueRepository.streamByStateAndStudentLevelAndPdfUrlIsNotNull(Status.APPROVED, studentLevel)) {
+            return receipts.map(this::toZipItem).toList();
+        }
+    }
 
-            for (DeptDue receipt : receipts) {
-                if (receipt.getPdfUrl() == null) continue;
+    @Transactional(readOnly = true)
+    public ApprovalWatermark approvedWatermark(Level studentLevel) {
+        return deptDueRepository.findWatermarkByStateAndStudentLevel(Status.APPROVED, studentLevel);
+    }
 
-                String safeName = receipt.getName() != null ? receipt.getName().replaceAll("\\s+", "_") : "receipt";
-                String fileName = safeName + "-" + receipt.getMatricNumber() + ".pdf";
+    public ZipItem toZipItem(DeptDue receipt) {
+        return zipItem(receipt.getName(), receipt.getMatricNumber(), receipt.getPdfUrl());
+    }
 
-                try (InputStream in = new URL(receipt.getPdfUrl()).openStream()) {
-                    zos.putNextEntry(new ZipEntry(fileName));
-                    in.transferTo(zos);
-                    zos.closeEntry();
-                } catch (Exception e) {
-                    System.err.println("Could not download PDF: " + receipt.getPdfUrl() + " -> " + e.getMessage());
-                }
-            }
+    private ZipItem toZipItem(StudentReceiptFileView receipt) {
+        return zipItem(receipt.getName(), receipt.getMatricNumber(), receipt.getPdfUrl());
+    }
 
-            zos.finish();
-            return baos.toByteArray();
-        }
+    private ZipItem zipItem(String name, String matricNumber, String pdfUrl) {
+        String safeName = name != null ? name.replaceAll("\\s+", "_") : "receipt";
+        String fileName = safeName + "-" + matricNumber + ".pdf";
+        return new ZipItem(fileName, pdfUrl);
     }
 
-    public FileDownloadResponse downloadReceiptByUser(String email) throws IOException {
+    /**
+     * Finds the user's newest receipt, or their newest for {@code studentLevel} when one is given.
+     */
+    public FileDownloadResponse downloadReceiptByUser(String email, Level studentLevel) throws IOException {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
 
-        DeptDue receipt = deptDueRepository.findByUploadedBy(user.getId())
-                .stream()
-                .max(Comparator.comparing(DeptDue::getUploadedAt))
+        Optional<DeptDue> latest = studentLevel == null
+                ? deptDueRepository.findFirstByUploadedByOrderByUploadedAtDesc(user.getId())
+                : deptDueRepository.findFirstByUploadedByAndStudentLevelOrderByUploadedAtDesc(user.getId(), studentLevel);
+        DeptDue receipt = latest
                 .orElseThrow(() -> new EntityNotFoundException("No receipt found for this user."));
 
         if (receipt.getPdfUrl() == null || receipt.getPdfUrl().isBlank()) {
             throw new FileNotFoundException("No PDF found for this receipt.");
         }
 
-        String fileUrl = receipt.getPdfUrl();
-
-        byte[] pdfBytes;
-        try (InputStream in = new URL(fileUrl).openStream()) {
-            pdfBytes = in.readAllBytes();
-        } catch (Exception e) {
-            throw new IOException("Could not download PDF from Cloudinary: " + e.getMessage(), e);
-        }
-
         String fileName = (receipt.getName() != null ? receipt.getName().replaceAll("\\s+", "_") : "receipt")
                 + "-" + receipt.getMatricNumber() + ".pdf";
 
-        return new FileDownloadResponse(fileName, pdfBytes);
+        return new FileDownloadResponse(fileName, receipt.getPdfUrl());
     }
 }
 
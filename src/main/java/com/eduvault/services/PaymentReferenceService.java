@@ -0,0 +1,118 @@
+package com.eduvault.services;
+
+import com.eduvault.entities.PaymentReference;
+import com.eduvault.repositories.PaymentReferenceRepository;
+import com.eduvault.user.enums.DocumentType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Keeps one row per payment reference (RRR or transaction reference) and receipt type, so a
+ * paid receipt can only ever belong to one student. The same student may reuse a reference,
+ * e.g. a Remita invoice and its receipt share the RRR, or a re-upload after a rejection.
+ */
+@Service
+@RequiredArgsConstructor
+public class PaymentReferenceService {
+    private static final int MAX_REFERENCE_LENGTH = 64;
+
+    private final PaymentReferenceRepository paymentReferenceRepository;
+
+    /**
+     * Claims a reference for a student and saves their receipt in one transaction, linking the
+     * claim to the saved receipt. Claims for the same normalized reference are serialized with a
+     * transaction-scoped lock, so two students cannot both pass the check, whatever receipt type
+     * they upload. If the save fails, the claim is rolled back with it. Receipts without a usable
+     * reference are just saved.
+     */
+    @Transactional
+    public <T> T claimAndSave(DocumentType documentType, String reference, UUID userId,
+                              Supplier<T> save, Function<T, UUID> idOf) {
+        String normalized = normalize(reference);
+        if (normalized == null) {
+            return save.get();
+        }
+
+        paymentReferenceRepository.lockReference(normalized);
+        PaymentReference claim = claim(documentType, normalized, userId);
+        T saved = save.get();
+        claim.setReceiptId(idOf.apply(saved));
+        paymentReferenceRepository.save(claim);
+        return saved;
+    }
+
+    /**
+     * Records the claim of a receipt saved before claims were kept. A reference the student
+     * already holds for this type is left pointing at the receipt it has. Returns {@code false},
+     * changing nothing, when another student already holds the reference.
+     */
+    @Transactional
+    public boolean claimExisting(DocumentType documentType, String reference, UUID userId, UUID receiptId) {
+        String normalized = normalize(reference);
+        if (normalized == null) {
+            return true;
+        }
+
+        paymentReferenceRepository.lockReference(normalized);
+        for (PaymentReference claimed : paymentReferenceRepository.findByReference(normalized)) {
+            if (!claimed.getUploadedBy().equals(userId)) {
+                return false;
+            }
+            if (claimed.getDocumentType() == documentType) {
+                return true;
+            }
+        }
+        paymentReferenceRepository.save(PaymentReference.builder()
+                .reference(normalized)
+                .documentType(documentType)
+                .uploadedBy(userId)
+                .receiptId(receiptId)
+                .createdAt(LocalDateTime.now())
+                .build());
+        return true;
+    }
+
+    private PaymentReference claim(DocumentType documentType, String normalized, UUID userId) {
+        PaymentReference own = null;
+        for (PaymentReference claimed : paymentReferenceRepository.findByReference(normalized)) {
+            if (!claimed.getUploadedBy().equals(userId)) {
+                throw duplicate();
+            }
+            if (claimed.getDocumentType() == documentType) {
+                own = claimed;
+            }
+        }
+        if (own != null) {
+            return own;
+        }
+        return PaymentReference.builder()
+                .reference(normalized)
+                .documentType(documentType)
+                .uploadedBy(userId)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    private String normalize(String reference) {
+        if (reference == null) {
+            return null;
+        }
+        String normalized = reference.replaceAll("[^A-Za-z0-9]", "").toUpperCase(Locale.ROOT);
+        if (normalized.isEmpty()) {
+            return null;
+        }
+        return normalized.length() > MAX_REFERENCE_LENGTH ? normalized.substring(0, MAX_REFERENCE_LENGTH) : normalized;
+    }
+
+    private IllegalStateException duplicate() {
+        return new IllegalStateException("This payment reference has already been used on another student's receipt.");
+    }
+}
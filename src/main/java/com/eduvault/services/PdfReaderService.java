@@ -1,26 +1,194 @@
 package com.eduvault.services;
 
+import com.eduvault.config.PdfParsingProperties;
+import com.eduvault.exceptions.PdfParsingException;
+import com.eduvault.ingest.IngestedFile;
+import com.eduvault.pdf.ExtractedTextCache;
+import com.eduvault.user.enums.DocumentType;
+import lombok.RequiredArgsConstructor;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessBufferedFileInputStream;
+import org.apache.pdfbox.io.ScratchFile;
+import org.apache.pdfbox.pdfparser.PDFParser;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.pdfbox.text.TextPosition;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
 
 @Service
+@RequiredArgsConstructor
 public class PdfReaderService {
-    public String readDocument(MultipartFile file) throws IOException {
-        String content = "";
+    private final PdfParsingProperties properties;
+    private final ExtractedTextCache extractedTextCache;
 
-        if (file.getOriginalFilename() != null && file.getOriginalFilename().endsWith(".pdf")) {
-            try (PDDocument document = PDDocument.load(file.getInputStream())) {
-                PDFTextStripper pdfStripper = new PDFTextStripper();
-                content = pdfStripper.getText(document);
+    public String readDocument(IngestedFile file) throws IOException {
+        return readDocument(file, null);
+    }
+
+    /**
+     * Reads the text of an ingested file within the configured byte, page and time budgets.
+     * Parse buffers beyond the main-memory allowance go to a scratch file instead of the heap,
+     * and text already extracted from the same bytes is served from the shared cache.
+     */
+    public String readDocument(IngestedFile file, DocumentType documentType) throws IOException {
+        if (file.isPdf()) {
+            return readPdf(file, documentType);
+        }
+        checkSize(file.getSize());
+        return new String(Files.readAllBytes(file.getPath()));
+    }
+
+    /**
+     * Like {@link #readDocument(IngestedFile, DocumentType)}, but always parses the file as a PDF
+     * whatever its name.
+     */
+    public String readPdf(IngestedFile file, DocumentType documentType) throws IOException {
+        checkSize(file.getSize());
+
+        int pageLimit = properties.pageLimitFor(documentType);
+        String cached = extractedTextCache.get(file.getSha256(), pageLimit);
+        if (cached != null) {
+            return cached;
+        }
+        long deadline = System.nanoTime() + properties.getTimeBudget().toNanos();
+        try (PDDocument document = load(file, deadline)) {
+            String text = strip(document, pageLimit, deadline);
+            extractedTextCache.put(file.getSha256(), pageLimit, document.getNumberOfPages(), text);
+            return text;
+        }
+    }
+
+    /**
+     * Parses the file the way {@link PDDocument#load} does, but through a source that checks the
+     * time budget as the parser reads, so a file that sends the parser in circles is abandoned
+     * instead of holding a parse slot.
+     */
+    private PDDocument load(IngestedFile file, long deadline) throws IOException {
+        ScratchFile scratchFile = new ScratchFile(memoryUsage());
+        BoundedFileSource source = null;
+        try {
+            source = new BoundedFileSource(file.getPath().toFile(), deadline);
+            PDFParser parser = new PDFParser(source, "", null, null, scratchFile);
+            parser.parse();
+            return parser.getPDDocument();
+        } catch (IOException | RuntimeException e) {
+            IOUtils.closeQuietly(source);
+            IOUtils.closeQuietly(scratchFile);
+            throw e;
+        }
+    }
+
+    private String strip(PDDocument document, int pageLimit, long deadline) throws IOException {
+        BoundedTextStripper stripper = new BoundedTextStripper(deadline);
+        stripper.setEndPage(pageLimit);
+        return stripper.getText(document);
+    }
+
+    private MemoryUsageSetting memoryUsage() {
+        return MemoryUsageSetting.setupMixed(properties.getMaxMainMemory().toBytes());
+    }
+
+    private void checkSize(long size) {
+        if (size > properties.getMaxBytes().toBytes()) {
+            throw new PdfParsingException("Document is too large to process (" + size + " bytes, limit "
+                    + properties.getMaxBytes().toBytes() + " bytes)");
+        }
+    }
+
+    private void checkDeadline(long deadline) {
+        if (System.nanoTime() - deadline > 0) {
+            throw new PdfParsingException("Document took longer than "
+                    + properties.getTimeBudget().toSeconds() + "s to read and was abandoned");
+        }
+    }
+
+    /**
+     * Checks the time budget every few thousand reads; once it has run out every read fails, so
+     * the parser cannot recover and carry on.
+     */
+    private class BoundedFileSource extends RandomAccessBufferedFileInputStream {
+        private static final int CHECK_INTERVAL = 4096;
+
+        private final long deadline;
+        private int reads;
+
+        BoundedFileSource(File file, long deadline) throws IOException {
+            super(file);
+            this.deadline = deadline;
+        }
+
+        @Override
+        public int read() throws IOException {
+            tick();
+            return super.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            tick();
+            return super.read(b, off, len);
+        }
+
+        @Override
+        public int peek() throws IOException {
+            tick();
+            return super.peek();
+        }
+
+        @Override
+        public void seek(long position) throws IOException {
+            tick();
+            super.seek(position);
+        }
+
+        private void tick() {
+            if (++reads >= CHECK_INTERVAL) {
+                reads = 0;
+                checkDeadline(deadline);
             }
-        } else {
-            content = new String(file.getBytes());
+        }
+    }
+
+    private class BoundedTextStripper extends PDFTextStripper {
+        private final long deadline;
+
+        BoundedTextStripper(long deadline) throws IOException {
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected void startPage(PDPage page) throws IOException {
+            checkDeadline();
+            super.startPage(page);
         }
 
-        return content;
+        @Override
+        protected void writeString(String text, List<TextPosition> textPositions) throws IOException {
+            checkDeadline();
+            super.writeString(text, textPositions);
+        }
+
+        /**
+         * Content streams can be long or loop through forms without producing text, so the
+         * budget is also checked per operator.
+         */
+        @Override
+        protected void processOperator(Operator operator, List<COSBase> operands) throws IOException {
+            checkDeadline();
+            super.processOperator(operator, operands);
+        }
+
+        private void checkDeadline() {
+            PdfReaderService.this.checkDeadline(deadline);
+        }
     }
 }
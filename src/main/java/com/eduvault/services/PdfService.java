@@ -1,20 +1,25 @@
 package com.eduvault.services;
 
 import com.eduvault.bootstrap.RrrExtractor;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
+import com.eduvault.ingest.IngestService;
+import com.eduvault.ingest.IngestedFile;
+import com.eduvault.ingest.ParseScheduler;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 
 @Service
+@RequiredArgsConstructor
 public class PdfService {
+    private final IngestService ingestService;
+    private final ParseScheduler parseScheduler;
 
     public String extractRRRFromFile(MultipartFile file) throws IOException {
-        try (PDDocument document = PDDocument.load(file.getInputStream())) {
-            PDFTextStripper stripper = new PDFTextStripper();
-            String text = stripper.getText(document);
+        try (ParseScheduler.Admission admission = parseScheduler.admit();
+             IngestedFile ingested = ingestService.ingest(file)) {
+            String text = parseScheduler.readPdf(ingested, null);
 
             return RrrExtractor.extractRRR(text);
         }
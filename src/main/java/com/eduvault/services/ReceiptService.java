@@ -2,15 +2,19 @@ package com.eduvault.services;
 
 import com.eduvault.dto.ReceiptResponse;
 import com.eduvault.entities.*;
+import com.eduvault.export.ReceiptReviewedEvent;
 import com.eduvault.repositories.*;
 import com.eduvault.user.User;
+import com.eduvault.user.enums.DocumentType;
 import com.eduvault.user.enums.Status;
 import com.eduvault.user.repo.UserRepository;
 import com.eduvault.utils.NotificationUtils;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.UUID;
@@ -37,9 +41,11 @@ public class ReceiptService {
     private final RemitaSchoolFeeReceiptRepository remitaSchoolFeeReceiptRepository;
     private final UserRepository userRepository;
     private final NotificationService notificationService;
+    private final ApplicationEventPublisher eventPublisher;
 
 
 
+    @Transactional
     public ReceiptResponse approveSchoolFeeReceipt(UUID receiptId, String email){
         SchoolFeeReceipt receipt = schoolFeeReceiptRepository.findById(receiptId)  .orElseThrow(()-> new EntityNotFoundException("Receipt not found"));
         receipt.setState(Status.APPROVED);
@@ -49,6 +55,7 @@ public class ReceiptService {
         User staff = userRepository.findByEmail(email).orElseThrow(()-> new EntityNotFoundException("Receipt not found"));
         receipt.setApprovedBy(staff.getId());
         receipt.setApprovedAt(LocalDateTime.now());
+        eventPublisher.publishEvent(new ReceiptReviewedEvent(DocumentType.SCHOOL_FEE_RECEIPT, receipt.getStudentLevel(), Status.APPROVED, schoolFeeReceiptService.toZipItem(receipt)));
         notificationService.createNotification(user.getEmail(), NotificationUtils.DOCUMENT_APPROVED, "Your School Fee Receipt for "+ receipt.getStudentLevel() + " has been received and approved by the school");
         return ReceiptResponse.builder()
                 .message("Receipt Approved Successfully!")
@@ -56,8 +63,10 @@ public class ReceiptService {
 
     }
 
+    @Transactional
     public ReceiptResponse rejectSchoolFeeReceipt(UUID receiptId, String reason, String email){
         SchoolFeeReceipt receipt = schoolFeeReceiptRepository.findById(receiptId)  .orElseThrow(()-> new EntityNotFoundException("Receipt not found"));
+        Status previousState = receipt.getState();
         receipt.setState(Status.REJECTED);
         receipt.setUpdatedAt(LocalDateTime.now());
         UUID userId = schoolFeeReceiptService.getUploadedBy(receiptId);
@@ -66,6 +75,9 @@ public class ReceiptService {
         User staff = userRepository.findByEmail(email).orElseThrow(()-> new EntityNotFoundException("Receipt not found"));
         receipt.setRejectedBy(staff.getId());
         receipt.setRejectedAt(LocalDateTime.now());
+        if (previousState == Status.APPROVED) {
+            eventPublisher.publishEvent(new ReceiptReviewedEvent(DocumentType.SCHOOL_FEE_RECEIPT, receipt.getStudentLevel(), Status.REJECTED, null));
+        }
         String reuploadLink = link;
         String document = "School Fee Receipt";
         emailService.sendReceiptRejectionEmail(user.getEmail(), reason, reuploadLink, user.getMatricNumber(), document);
@@ -76,6 +88,7 @@ public class ReceiptService {
     }
 
 
+    @Transactional
     public ReceiptResponse approveSchoolFeeInvoice(UUID receiptId, String email){
         SchoolFeeInvoice receipt = schoolFeeInvoiceRepository.findById(receiptId)  .orElseThrow(()-> new EntityNotFoundException("Receipt not found"));
         receipt.setState(Status.APPROVED);
@@ -85,6 +98,7 @@ public class ReceiptService {
         User staff = userRepository.findByEmail(email).orElseThrow(()-> new EntityNotFoundException("Receipt not found"));
         receipt.setApprovedBy(staff.getId());
         receipt.setApprovedAt(LocalDateTime.now());
+        eventPublisher.publishEvent(new ReceiptReviewedEvent(DocumentType.SCHOOL_FEE_INVOICE, receipt.getStudentLevel(), Status.APPROVED, schoolFeeInvoiceService.toZipItem(receipt)));
         notificationService.createNotification(user.getEmail(), NotificationUtils.DOCUMENT_APPROVED, "Your School Fee Invoice  for "+ receipt.getStudentLevel() + " has been received and approved by the school");
         return ReceiptResponse.builder()
                 .message("Receipt Approved Successfully!")
@@ -92,8 +106,10 @@ public class ReceiptService {
 
     }
 
+    @Transactional
     public ReceiptResponse rejectSchoolFeeInvoice(UUID receiptId, String reason, String email){
         SchoolFeeInvoice receipt = schoolFeeInvoiceRepository.findById(receiptId)  .orElseThrow(()-> new EntityNotFoundException("Receipt not found"));
+        Status previousState = receipt.getState();
         receipt.setState(Status.REJECTED);
         receipt.setUpdatedAt(LocalDateTime.now());
         UUID userId = schoolFeeInvoiceService.getUploadedBy(receiptId);
@@ -101,6 +117,9 @@ public class ReceiptService {
         User staff = userRepository.findByEmail(email).orElseThrow(()-> new EntityNotFoundException("Receipt not found"));
         receipt.setRejectedBy(staff.getId());
         receipt.setRejectedAt(LocalDateTime.now());
+        if (previousState == Status.APPROVED) {
+            eventPublisher.publishEvent(new ReceiptReviewedEvent(DocumentType.SCHOOL_FEE_INVOICE, receipt.getStudentLevel(), Status.REJECTED, null));
+        }
         notificationService.createNotification(user.getEmail(), NotificationUtils.DOCUMENT_REJECTED, "Your School Fee Invoice for "+ receipt.getStudentLevel() + " has been rejected, something seems to be wrong with the receipt you uploaded; "+ reason);
         String reuploadLink = link;
         String document = "School Fee Invoice";
@@ -111,6 +130,7 @@ public class ReceiptService {
 
     }
 
+    @Transactional
     public ReceiptResponse approveRemitaSchoolFeeReceipt(UUID receiptId, String email){
         RemitaSchoolFeeReceipt receipt = remitaSchoolFeeReceiptRepository.findById(receiptId)  .orElseThrow(()-> new EntityNotFoundException("Receipt not found"));
         receipt.setState(Status.APPROVED);
@@ -120,6 +140,7 @@ public class ReceiptService {
         User staff = userRepository.findByEmail(email).orElseThrow(()-> new EntityNotFoundException("Receipt not found"));
         receipt.setApprovedBy(staff.getId());
         receipt.setApprovedAt(LocalDateTime.now());
+        eventPublisher.publishEvent(new ReceiptReviewedEvent(DocumentType.REMITA_SCHOOL_FEE_RECEIPT, receipt.getStudentLevel(), Status.APPROVED, remitaSchoolFeeReceiptService.toZipItem(receipt)));
         notificationService.createNotification(user.getEmail(), NotificationUtils.DOCUMENT_APPROVED, "Your Remita School Fee Receipt for "+ receipt.getStudentLevel() + " has been received and approved by the school");
         return ReceiptResponse.builder()
                 .message("Receipt Approved Successfully!")
@@ -127,8 +148,10 @@ public class ReceiptService {
 
     }
 
+    @Transactional
     public ReceiptResponse rejectRemitaSchoolFeeReceipt(UUID receiptId, String reason, String email){
         RemitaSchoolFeeReceipt receipt = remitaSchoolFeeReceiptRepository.findById(receiptId)  .orElseThrow(()-> new EntityNotFoundException("Receipt not found"));
+        Status previousState = receipt.getState();
         receipt.setState(Status.REJECTED);
         receipt.setUpdatedAt(LocalDateTime.now());
         UUID userId = remitaSchoolFeeReceiptService.getUploadedBy(receiptId);
@@ -136,6 +159,9 @@ public class ReceiptService {
         User staff = userRepository.findByEmail(email).orElseThrow(()-> new EntityNotFoundException("Receipt not found"));
         receipt.setRejectedBy(staff.getId());
         receipt.setRejectedAt(LocalDateTime.now());
+        if (previousState == Status.APPROVED) {
+            eventPublisher.publishEvent(new ReceiptReviewedEvent(DocumentType.REMITA_SCHOOL_FEE_RECEIPT, receipt.getStudentLevel(), Status.REJECTED, null));
+        }
         notificationService.createNotification(user.getEmail(), NotificationUtils.DOCUMENT_REJECTED, "Your Remita School Fee Receipt for "+ receipt.getStudentLevel() + " has been rejected, something seems to be wrong with the receipt you uploaded; "+ reason);
         String reuploadLink = link;
         String document = "Remita School Fee Receipt";
@@ -146,6 +172,7 @@ public class ReceiptService {
 
     }
 
+    @Transactional
     public ReceiptResponse approveDeptDueReceipt(UUID receiptId, String email){
         DeptDue receipt = deptDueRepository.findById(receiptId)  .orElseThrow(()-> new EntityNotFoundException("Receipt not found"));
         receipt.setState(Status.APPROVED);
@@ -155,6 +182,7 @@ public class ReceiptService {
         User staff = userRepository.findByEmail(email).orElseThrow(()-> new EntityNotFoundException("Receipt not found"));
         receipt.setApprovedBy(staff.getId());
         receipt.setApprovedAt(LocalDateTime.now());
+        eventPublisher.publishEvent(new ReceiptReviewedEvent(DocumentType.DEPT_DUE, receipt.getStudentLevel(), Status.APPROVED, deptDueService.toZipItem(receipt)));
         notificationService.createNotification(user.getEmail(), NotificationUtils.DOCUMENT_APPROVED, "Your Dept Due Receipt for "+ receipt.getStudentLevel() + " has been received and approved by the school");
         return ReceiptResponse.builder()
                 .message("Receipt Approved Successfully!")
@@ -162,8 +190,10 @@ public class ReceiptService {
 
     }
 
+    @Transactional
     public ReceiptResponse rejectDeptDueReceipt(UUID receiptId, String reason, String email){
         DeptDue receipt = deptDueRepository.findById(receiptId)  .orElseThrow(()-> new EntityNotFoundException("Receipt not found"));
+        Status previousState = receipt.getState();
         receipt.setState(Status.REJECTED);
         receipt.setUpdatedAt(LocalDateTime.now());
         UUID userId = deptDueService.getUploadedBy(receiptId);
@@ -172,6 +202,9 @@ public class ReceiptService {
         User staff = userRepository.findByEmail(email).orElseThrow(()-> new EntityNotFoundException("Receipt not found"));
         receipt.setRejectedBy(staff.getId());
         receipt.setRejectedAt(LocalDateTime.now());
+        if (previousState == Status.APPROVED) {
+            eventPublisher.publishEvent(new ReceiptReviewedEvent(DocumentType.DEPT_DUE, receipt.getStudentLevel(), Status.REJECTED, null));
+        }
         String reuploadLink = link;
         String document = "Dept Due Receipt";
         emailService.sendReceiptRejectionEmail(user.getEmail(), reason, reuploadLink, user.getMatricNumber(), document);
@@ -181,6 +214,7 @@ public class ReceiptService {
 
     }
 
+    @Transactional
     public ReceiptResponse approveCollegeDueReceipt(UUID receiptId, String email){
         CollegeDue receipt = collegeDueRepository.findById(receiptId)  .orElseThrow(()-> new EntityNotFoundException("Receipt not found"));
         receipt.setState(Status.APPROVED);
@@ -190,6 +224,7 @@ public class ReceiptService {
         User staff = userRepository.findByEmail(email).orElseThrow(()-> new EntityNotFoundException("Receipt not found"));
         receipt.setApprovedBy(staff.getId());
         receipt.setApprovedAt(LocalDateTime.now());
+        eventPublisher.publishEvent(new ReceiptReviewedEvent(DocumentType.COLLEGE_DUE, receipt.getStudentLevel(), Status.APPROVED, collegeDueService.toZipItem(receipt)));
         notificationService.createNotification(user.getEmail(), NotificationUtils.DOCUMENT_APPROVED, "Your College Due Receipt for "+ receipt.getStudentLevel() + "  has been received and approved by the school");
         return ReceiptResponse.builder()
                 .message("Receipt Approved Successfully!")
@@ -197,8 +232,10 @@ public class ReceiptService {
 
     }
 
+    @Transactional
     public ReceiptResponse rejectCollegeDueReceipt(UUID receiptId, String reason, String email){
         CollegeDue receipt = collegeDueRepository.findById(receiptId)  .orElseThrow(()-> new EntityNotFoundException("Receipt not found"));
+        Status previousState = receipt.getState();
         receipt.setState(Status.REJECTED);
         receipt.setUpdatedAt(LocalDateTime.now());
         UUID userId = collegeDueService.getUploadedBy(receiptId);
@@ -206,6 +243,9 @@ public class ReceiptService {
         User staff = userRepository.findByEmail(email).orElseThrow(()-> new EntityNotFoundException("Receipt not found"));
         receipt.setRejectedBy(staff.getId());
         receipt.setRejectedAt(LocalDateTime.now());
+        if (previousState == Status.APPROVED) {
+            eventPublisher.publishEvent(new ReceiptReviewedEvent(DocumentType.COLLEGE_DUE, receipt.getStudentLevel(), Status.REJECTED, null));
+        }
         notificationService.createNotification(user.getEmail(), NotificationUtils.DOCUMENT_REJECTED, "Your College Due Receipt for "+ receipt.getStudentLevel() + " has been rejected, something seems to be wrong with the receipt you uploaded; "+ reason);
         String reuploadLink = link;
         String document = "College Due Receipt";
@@ -216,6 +256,7 @@ public class ReceiptService {
 
     }
 
+    @Transactional
     public ReceiptResponse approveCourseForm(UUID receiptId, String email){
         CourseForm receipt = courseFormRepository.findById(receiptId)  .orElseThrow(()-> new EntityNotFoundException("Receipt not found"));
         receipt.setState(Status.APPROVED);
@@ -225,6 +266,7 @@ public class ReceiptService {
         User staff = userRepository.findByEmail(email).orElseThrow(()-> new EntityNotFoundException("Receipt not found"));
         receipt.setApprovedBy(staff.getId());
         receipt.setApprovedAt(LocalDateTime.now());
+        eventPublisher.publishEvent(new ReceiptReviewedEvent(DocumentType.COURSE_FORM, receipt.getStudentLevel(), Status.APPROVED, courseFormService.toZipItem(receipt)));
         notificationService.createNotification(user.getEmail(), NotificationUtils.DOCUMENT_APPROVED, "Your Course Form for "+ receipt.getStudentLevel() + " has been received and approved by the school");
         return ReceiptResponse.builder()
                 .message("Receipt Approved Successfully!")
@@ -232,8 +274,10 @@ public class ReceiptService {
 
     }
 
+    @Transactional
     public ReceiptResponse rejectCourseForm(UUID receiptId, String reason, String email){
         CourseForm receipt = courseFormRepository.findById(receiptId)  .orElseThrow(()-> new EntityNotFoundException("Receipt not found"));
+        Status previousState = receipt.getState();
         receipt.setState(Status.REJECTED);
         receipt.setUpdatedAt(LocalDateTime.now());
         UUID userId = courseFormService.getUploadedBy(receiptId);
@@ -241,6 +285,9 @@ public class ReceiptService {
         User staff = userRepository.findByEmail(email).orElseThrow(()-> new EntityNotFoundException("Receipt not found"));
         receipt.setRejectedBy(staff.getId());
         receipt.setRejectedAt(LocalDateTime.now());
+        if (previousState == Status.APPROVED) {
+            eventPublisher.publishEvent(new ReceiptReviewedEvent(DocumentType.COURSE_FORM, receipt.getStudentLevel(), Status.REJECTED, null));
+        }
         notificationService.createNotification(user.getEmail(), NotificationUtils.DOCUMENT_REJECTED, "Your Course Form for "+ receipt.getStudentLevel() + "  has been rejected, something seems to be wrong with the receipt you uploaded; "+ reason);
         String reuploadLink = link;
         String document = "Course Form";
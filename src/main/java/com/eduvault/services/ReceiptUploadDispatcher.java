@@ -0,0 +1,46 @@
+package com.eduvault.services;
+
+import com.eduvault.ingest.IngestedFile;
+import com.eduvault.user.enums.DocumentType;
+import com.eduvault.user.enums.Level;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Routes an already ingested upload to the receipt service that owns its {@link DocumentType}.
+ */
+@Service
+@RequiredArgsConstructor
+public class ReceiptUploadDispatcher {
+    private final CollegeDueService collegeDueService;
+    private final DeptDueService deptDueService;
+    private final CourseFormService courseFormService;
+    private final SchoolFeeReceiptService schoolFeeReceiptService;
+    private final SchoolFeeInvoiceService schoolFeeInvoiceService;
+    private final RemitaSchoolFeeReceiptService remitaSchoolFeeReceiptService;
+
+    public void ensureCanUpload(DocumentType type, String email, Level studentLevel) {
+        switch (type) {
+            case COLLEGE_DUE -> collegeDueService.ensureCanUpload(email, studentLevel);
+            case DEPT_DUE -> deptDueService.ensureCanUpload(email, studentLevel);
+            case COURSE_FORM -> courseFormService.ensureCanUpload(email, studentLevel);
+            case SCHOOL_FEE_RECEIPT -> schoolFeeReceiptService.ensureCanUpload(email, studentLevel);
+            case SCHOOL_FEE_INVOICE -> schoolFeeInvoiceService.ensureCanUpload(email, studentLevel);
+            case REMITA_SCHOOL_FEE_RECEIPT -> remitaSchoolFeeReceiptService.ensureCanUpload(email, studentLevel);
+        }
+    }
+
+    public UUID upload(DocumentType type, IngestedFile file, String email, Level studentLevel) throws IOException {
+        return switch (type) {
+            case COLLEGE_DUE -> collegeDueService.uploadReceipt(file, email, studentLevel).getId();
+            case DEPT_DUE -> deptDueService.uploadReceipt(file, email, studentLevel).getId();
+            case COURSE_FORM -> courseFormService.uploadReceipt(file, email, studentLevel).getId();
+            case SCHOOL_FEE_RECEIPT -> schoolFeeReceiptService.uploadReceipt(file, email, studentLevel).getId();
+            case SCHOOL_FEE_INVOICE -> schoolFeeInvoiceService.uploadReceipt(file, email, studentLevel).getId();
+            case REMITA_SCHOOL_FEE_RECEIPT -> remitaSchoolFeeReceiptService.uploadReceipt(file, email, studentLevel).getId();
+        };
+    }
+}
@@ -1,86 +1,76 @@
 package com.eduvault.services;
 
-import com.cloudinary.Cloudinary;
+import com.eduvault.bootstrap.ReceiptIndexInitializer;
+import com.eduvault.dto.CursorPage;
 import com.eduvault.dto.FileDownloadResponse;
 import com.eduvault.dto.PdfResponse;
 import com.eduvault.entities.DeptDue;
 import com.eduvault.entities.RemitaSchoolFeeReceipt;
+import com.eduvault.export.ReceiptZipExporter;
+import com.eduvault.export.ZipItem;
+import com.eduvault.ingest.IngestMetrics;
+import com.eduvault.ingest.IngestService;
+import com.eduvault.ingest.IngestedFile;
+import com.eduvault.ingest.ParseScheduler;
+import com.eduvault.ingest.StoredDocument;
+import com.eduvault.pdf.ExtractedFields;
+import com.eduvault.paging.ReceiptCursor;
+import com.eduvault.pdf.ReceiptExtractor;
 import com.eduvault.repositories.RemitaSchoolFeeReceiptRepository;
+import com.eduvault.repositories.projections.ApprovalWatermark;
+import com.eduvault.repositories.projections.ReceiptFileView;
+import com.eduvault.repositories.projections.RemitaSchoolFeeReceiptView;
 import com.eduvault.user.User;
+import com.eduvault.user.enums.DocumentType;
 import com.eduvault.user.enums.Level;
 import com.eduvault.user.enums.Status;
 import com.eduvault.user.repo.UserRepository;
-import com.eduvault.user.service.CloudinaryService;
-import com.eduvault.user.utils.UploadResponse;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URL;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class RemitaSchoolFeeReceiptService {
-    private final PdfReaderService pdfReaderService;
+    private final IngestService ingestService;
+    private final ParseScheduler parseScheduler;
+    private final ReceiptExtractor receiptExtractor;
+    private final IngestMetrics ingestMetrics;
+    private final PaymentReferenceService paymentReferenceService;
     private final RemitaSchoolFeeReceiptRepository remitaSchoolFeeReceiptRepository;
-    private final CloudinaryService cloudinaryService;
     private final UserRepository userRepository;
-    private final Cloudinary cloudinary;
+    private final ReceiptZipExporter receiptZipExporter;
 
-    public PdfResponse processReceipt (MultipartFile file, String e_mail, Level studentLevel) throws IOException {
-        User user = userRepository.findByEmail(e_mail)
+    public PdfResponse processReceipt(IngestedFile file, String e_mail, Level studentLevel) throws IOException {
+        User user = ingestMetrics.time(IngestMetrics.USER_LOOKUP, DocumentType.REMITA_SCHOOL_FEE_RECEIPT, () -> userRepository.findByEmail(e_mail))
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
-        UploadResponse uploadResponse = cloudinaryService.upload(file);
-        String pdfUrl = uploadResponse.getSecureUrl();
-        String content = pdfReaderService.readDocument(file);
+        StoredDocument document = ingestService.uploadAndExtract(file, DocumentType.REMITA_SCHOOL_FEE_RECEIPT);
+        String pdfUrl = document.pdfUrl();
+        String content = document.content();
 
         System.out.println("---- PDF CONTENT ----");
         System.out.println(content);
         System.out.println("---------------------");
 
-        String[] lines = content.split("\\r?\\n");
-
-        String rrr = Arrays.stream(lines)
-                .filter(l -> l.matches("\\d{4}-\\d{4}-\\d{4,}"))
-                .findFirst()
-                .orElse(null);
-
-        String name = extractSmart(lines, "NAME");
-        String email = extractSmart(lines, "EMAIL");
-        String phone = extractSmart(lines, "PHONE NUMBER");
-        String amount = extractSmart(lines, "TOTAL AMOUNT");
-        String balanceDue = null;
-        for (int i = 0; i < lines.length; i++) {
-            if (lines[i].toUpperCase().contains("BALANCE DUE")) {
-                if (i + 1 < lines.length && lines[i + 1].toUpperCase().contains("TOTAL AMOUNT")) {
-                    balanceDue = (i + 2 < lines.length) ? lines[i + 2].trim() : null;
-                } else {
-                    balanceDue = (i + 1 < lines.length) ? lines[i + 1].trim() : null;
-                }
-                break;
-            }
-        }
-
-        String authorizationRef = Arrays.stream(lines)
-                .filter(l -> l.toUpperCase().contains("AUTHORIZATION REF") || l.toUpperCase().contains("CARD PAYMENT"))
-                .map(l -> {
-                    Matcher m = Pattern.compile("\\d{6,}").matcher(l);
-                    return m.find() ? m.group() : null;
-                })
-                .filter(Objects::nonNull)
-                .findFirst()
-                .orElse(null);
+        ExtractedFields fields = receiptExtractor.extract(DocumentType.REMITA_SCHOOL_FEE_RECEIPT, content);
+        String rrr = fields.get("rrr");
+        String name = fields.get("name");
+        String email = fields.get("email");
+        String phone = fields.get("phoneNumber");
+        String amount = fields.get("amount");
+        String balanceDue = fields.get("balanceDue");
+        String authorizationRef = fields.get("authorizationRef");
 
         assert name != null;
         String[] nameParts = name.split(" ");
@@ -105,7 +95,16 @@ public class RemitaSchoolFeeReceiptService {
                 .studentLevel(studentLevel)
                 .build();
 
-        RemitaSchoolFeeReceipt savedReceipt = remitaSchoolFeeReceiptRepository.save(receipt);
+        RemitaSchoolFeeReceipt savedReceipt = paymentReferenceService.claimAndSave(DocumentType.REMITA_SCHOOL_FEE_RECEIPT, rrr, user.getId(), () -> {
+            try {
+                return ingestMetrics.time(IngestMetrics.SAVE, DocumentType.REMITA_SCHOOL_FEE_RECEIPT, () -> remitaSchoolFeeReceiptRepository.saveAndFlush(receipt));
+            } catch (DataIntegrityViolationException e) {
+                if (ReceiptIndexInitializer.isOnePerLevelViolation(e, "remita_sch_fee_receipt")) {
+                    throw alreadyUploaded(studentLevel);
+                }
+                throw e;
+            }
+        }, RemitaSchoolFeeReceipt::getId);
         return PdfResponse.builder()
                 .id(savedReceipt.getId())
                 .amount(savedReceipt.getAmount())
@@ -121,188 +120,146 @@ public class RemitaSchoolFeeReceiptService {
                 .build();
     }
 
-    private String extractSmart(String[] lines, String label) {
-        for (int i = 0; i < lines.length; i++) {
-            String line = lines[i].trim();
-
-            if (line.toUpperCase().contains(label.toUpperCase())) {
-                // Case 1: label and value on same line
-                String cleaned = line.replaceAll("(?i)" + label, "").trim();
-                if (!cleaned.isEmpty()) {
-                    return cleaned;
-                }
-                if (i + 1 < lines.length) {
-                    String next = lines[i + 1].trim();
-                    if (!next.toUpperCase().contains(label.toUpperCase()) && !next.isEmpty()) {
-                        return next;
-                    }
-                }
-                if (i + 2 < lines.length) {
-                    String next2 = lines[i + 2].trim();
-                    if (!next2.toUpperCase().contains(label.toUpperCase()) && !next2.isEmpty()) {
-                        return next2;
-                    }
-                }
+    public PdfResponse uploadReceipt(MultipartFile file, String email, Level studentLevel) throws IOException {
+        try (ParseScheduler.Admission admission = parseScheduler.admit()) {
+            ensureCanUpload(email, studentLevel);
+            try (IngestedFile ingested = ingestService.ingest(file)) {
+                return processReceipt(ingested, email, studentLevel);
             }
         }
-        return null;
     }
 
-    public PdfResponse uploadReceipt(MultipartFile file, String email, Level studentLevel) throws IOException {
+    public PdfResponse uploadReceipt(IngestedFile file, String email, Level studentLevel) throws IOException {
+        ensureCanUpload(email, studentLevel);
+        return processReceipt(file, email, studentLevel);
+    }
+
+    public void ensureCanUpload(String email, Level studentLevel) {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
 
-        List<RemitaSchoolFeeReceipt> receipts = remitaSchoolFeeReceiptRepository.findByUploadedBy(user.getId());
-
-        boolean alreadyUploadedForLevel = receipts.stream()
-                .anyMatch(receipt ->
-                        receipt.getStudentLevel() == studentLevel && receipt.getState() != Status.REJECTED
-                );
-
-        if (alreadyUploadedForLevel) {
-            throw new IllegalStateException(
-                    "You have already uploaded a receipt for " + studentLevel + ". " +
-                            "You can only re-upload if your receipt was rejected."
-            );
+        if (remitaSchoolFeeReceiptRepository.existsByUploadedByAndStudentLevelAndStateNot(user.getId(), studentLevel, Status.REJECTED)) {
+            throw alreadyUploaded(studentLevel);
         }
-        return processReceipt(file, email, studentLevel);
     }
 
+    private IllegalStateException alreadyUploaded(Level studentLevel) {
+        return new IllegalStateException(
+                "You have already uploaded a receipt for " + studentLevel + ". " +
+                        "You can only re-upload if your receipt was rejected."
+        );
+    }
 
-    public List<PdfResponse> getAllReceipts() {
-        List<RemitaSchoolFeeReceipt> receipts = remitaSchoolFeeReceiptRepository.findAll();
-        return receipts.stream()
-                .map(receipt -> PdfResponse.builder()
-                        .id(receipt.getId())
-                        .name(receipt.getName())
-                        .RRR(receipt.getRRR())
-                        .authorizationRef(receipt.getAuthorizationRef())
-                        .BalanceDue(receipt.getBalanceDue())
-                        .email(receipt.getEmail())
-                        .phoneNumber(receipt.getPhoneNumber())
-                        .pdfUrl(receipt.getPdfUrl())
-                        .uploadedAt(receipt.getUploadedAt())
-                        .uploadedBy(receipt.getUploadedBy())
-                        .amount(receipt.getAmount())
-                        .build())
-
-                .toList();    }
-
-    public List<PdfResponse> getAllReceiptsByLevel(Level studentLevel) {
-        List<RemitaSchoolFeeReceipt> receipts = remitaSchoolFeeReceiptRepository.findByStudentLevel(studentLevel);
-        return receipts.stream()
-                .map(receipt -> PdfResponse.builder()
-                        .id(receipt.getId())
-                        .name(receipt.getName())
-                        .RRR(receipt.getRRR())
-                        .authorizationRef(receipt.getAuthorizationRef())
-                        .BalanceDue(receipt.getBalanceDue())
-                        .email(receipt.getEmail())
-                        .phoneNumber(receipt.getPhoneNumber())
-                        .pdfUrl(receipt.getPdfUrl())
-                        .uploadedAt(receipt.getUploadedAt())
-                        .uploadedBy(receipt.getUploadedBy())
-                        .amount(receipt.getAmount())
-                        .build())
-                .toList();    }
+    @Transactional(readOnly = true)
+    public CursorPage<PdfResponse> getReceiptsPage(Level studentLevel, ReceiptCursor after, int size) {
+        Limit limit = Limit.of(size + 1);
+        List<RemitaSchoolFeeReceiptView> receipts;
+        if (studentLevel == null) {
+            receipts = after == null
+                    ? remitaSchoolFeeReceiptRepository.findPage(limit)
+                    : remitaSchoolFeeReceiptRepository.findPageAfter(after.uploadedAt(), after.id(), limit);
+        } else {
+            receipts = after == null
+                    ? remitaSchoolFeeReceiptRepository.findPageByStudentLevel(studentLevel, limit)
+                    : remitaSchoolFeeReceiptRepository.findPageByStudentLevelAfter(studentLevel, after.uploadedAt(), after.id(), limit);
+        }
+        return ReceiptCursor.page(receipts.stream().map(this::toResponse).toList(), size,
+                receipt -> new ReceiptCursor(receipt.getUploadedAt(), receipt.getId()));
+    }
 
+    @Transactional(readOnly = true)
     public List<PdfResponse> getAllReceiptsByLevelByUser(Level studentLevel, String email) {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
-        List<RemitaSchoolFeeReceipt> receipts = remitaSchoolFeeReceiptRepository.findByStudentLevelAndUploadedBy(studentLevel, user.getId());
-        return receipts.stream()
-                .map(receipt -> PdfResponse.builder()
-                        .id(receipt.getId())
-                        .name(receipt.getName())
-                        .RRR(receipt.getRRR())
-                        .authorizationRef(receipt.getAuthorizationRef())
-                        .BalanceDue(receipt.getBalanceDue())
-                        .email(receipt.getEmail())
-                        .phoneNumber(receipt.getPhoneNumber())
-                        .pdfUrl(receipt.getPdfUrl())
-                        .uploadedAt(receipt.getUploadedAt())
-                        .uploadedBy(receipt.getUploadedBy())
-                        .amount(receipt.getAmount())
-                        .build())
-                .toList();    }
+        return remitaSchoolFeeReceiptRepository.findViewsByStudentLevelAndUploadedBy(studentLevel, user.getId()).stream()
+                .map(this::toResponse)
+                .toList();
+    }
 
+    @Transactional(readOnly = true)
     public List<PdfResponse> getAllReceiptsByUser(String email) {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
-        List<RemitaSchoolFeeReceipt> receipts = remitaSchoolFeeReceiptRepository.findByUploadedBy(user.getId());
-        return receipts.stream()
-                .map(receipt -> PdfResponse.builder()
-                        .id(receipt.getId())
-                        .name(receipt.getName())
-                        .RRR(receipt.getRRR())
-                        .authorizationRef(receipt.getAuthorizationRef())
-                        .BalanceDue(receipt.getBalanceDue())
-                        .email(receipt.getEmail())
-                        .phoneNumber(receipt.getPhoneNumber())
-                        .pdfUrl(receipt.getPdfUrl())
-                        .uploadedAt(receipt.getUploadedAt())
-                        .uploadedBy(receipt.getUploadedBy())
-                        .amount(receipt.getAmount())
-                        .build())
-
+        return remitaSchoolFeeReceiptRepository.findViewsByUploadedBy(user.getId()).stream()
+                .map(this::toResponse)
                 .toList();
     }
 
+    private PdfResponse toResponse(RemitaSchoolFeeReceiptView view) {
+        return PdfResponse.builder()
+                .id(view.getId())
+                .RRR(view.getRRR())
+                .name(view.getName())
+                .email(view.getEmail())
+                .phoneNumber(view.getPhoneNumber())
+                .amount(view.getAmount())
+                .BalanceDue(view.getBalanceDue())
+                .authorizationRef(view.getAuthorizationRef())
+                .pdfUrl(view.getPdfUrl())
+                .uploadedBy(view.getUploadedBy())
+                .uploadedAt(view.getUploadedAt())
+                .build();
+    }
+
     public UUID getUploadedBy(UUID receiptId) {
         return remitaSchoolFeeReceiptRepository.findUploadedByById(receiptId);
     }
 
-    public byte[] downloadApprovedReceiptsAsZip() throws IOException {
-        List<RemitaSchoolFeeReceipt> receipts = remitaSchoolFeeReceiptRepository.findByState(Status.APPROVED);
+    @Transactional(readOnly = true)
+    public StreamingResponseBody downloadApprovedReceiptsAsZip() {
+        List<ZipItem> items;
+        try (Stream<ReceiptFileView> receipts = remitaSchoolFeeReceiptRepository.streamByStateAndPdfUrlIsNotNull(Status.APPROVED)) {
+            items = receipts.map(this::toZipItem).toList();
+        }
+        return out -> receiptZipExporter.write(items, out);
+    }
 
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             ZipOutputStream zos = new ZipOutputStream(baos)) {
+    @Transactional(readOnly = true)
+    public List<ZipItem> approvedZipItems(Level studentLevel) {
+        try (Stream<ReceiptFileView> receipts = remitaSchoolFeeReceiptRepository.streamByStateAndStudentLevelAndPdfUrlIsNotNull(Status.APPROVED, studentLevel)) {
+            return receipts.map(this::toZipItem).toList();
+        }
+    }
 
-            for (RemitaSchoolFeeReceipt receipt : receipts) {
-                if (receipt.getPdfUrl() == null) continue;
+    @Transactional(readOnly = true)
+    public ApprovalWatermark approvedWatermark(Level studentLevel) {
+        return remitaSchoolFeeReceiptRepository.findWatermarkByStateAndStudentLevel(Status.APPROVED, studentLevel);
+    }
 
-                String safeName = receipt.getName() != null ? receipt.getName().replaceAll("\\s+", "_") : "receipt";
-                String fileName = safeName + ".pdf";
+    public ZipItem toZipItem(RemitaSchoolFeeReceipt receipt) {
+        return zipItem(receipt.getName(), receipt.getPdfUrl());
+    }
 
-                try (InputStream in = new URL(receipt.getPdfUrl()).openStream()) {
-                    zos.putNextEntry(new ZipEntry(fileName));
-                    in.transferTo(zos);
-                    zos.closeEntry();
-                } catch (Exception e) {
-                    System.err.println("Could not download PDF: " + receipt.getPdfUrl() + " -> " + e.getMessage());
-                }
-            }
+    private ZipItem toZipItem(ReceiptFileView receipt) {
+        return zipItem(receipt.getName(), receipt.getPdfUrl());
+    }
 
-            zos.finish();
-            return baos.toByteArray();
-        }
+    private ZipItem zipItem(String name, String pdfUrl) {
+        String safeName = name != null ? name.replaceAll("\\s+", "_") : "receipt";
+        String fileName = safeName + ".pdf";
+        return new ZipItem(fileName, pdfUrl);
     }
 
-    public FileDownloadResponse downloadReceiptByUser(String email) throws IOException {
+    /**
+     * Finds the user's newest receipt, or their newest for {@code studentLevel} when one is given.
+     */
+    public FileDownloadResponse downloadReceiptByUser(String email, Level studentLevel) throws IOException {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
 
-        RemitaSchoolFeeReceipt receipt = remitaSchoolFeeReceiptRepository.findByUploadedBy(user.getId())
-                .stream()
-                .max(Comparator.comparing(RemitaSchoolFeeReceipt::getUploadedAt))
+        Optional<RemitaSchoolFeeReceipt> latest = studentLevel == null
+                ? remitaSchoolFeeReceiptRepository.findFirstByUploadedByOrderByUploadedAtDesc(user.getId())
+                : remitaSchoolFeeReceiptRepository.findFirstByUploadedByAndStudentLevelOrderByUploadedAtDesc(user.getId(), studentLevel);
+        RemitaSchoolFeeReceipt receipt = latest
                 .orElseThrow(() -> new EntityNotFoundException("No receipt found for this user."));
 
         if (receipt.getPdfUrl() == null || receipt.getPdfUrl().isBlank()) {
             throw new FileNotFoundException("No PDF found for this receipt.");
         }
 
-        String fileUrl = receipt.getPdfUrl();
-
-        byte[] pdfBytes;
-        try (InputStream in = new URL(fileUrl).openStream()) {
-            pdfBytes = in.readAllBytes();
-        } catch (Exception e) {
-            throw new IOException("Could not download PDF from Cloudinary: " + e.getMessage(), e);
-        }
-
         String fileName = (receipt.getName() != null ? receipt.getName().replaceAll("\\s+", "_") : "receipt")
                + ".pdf";
 
-        return new FileDownloadResponse(fileName, pdfBytes);
+        return new FileDownloadResponse(fileName, receipt.getPdfUrl());
     }
 }
@@ -1,23 +1,30 @@
 package com.eduvault.services;
 
 
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
+import com.eduvault.http.OutboundHttpClient;
+import com.eduvault.ingest.IngestService;
+import com.eduvault.ingest.IngestedFile;
+import com.eduvault.ingest.ParseScheduler;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 @Service
+@RequiredArgsConstructor
 public class RemitaService {
+    private final IngestService ingestService;
+    private final ParseScheduler parseScheduler;
+    private final OutboundHttpClient outboundHttpClient;
 
     @Value("${remita.merchantId}")
     private String merchantId;
@@ -54,8 +61,9 @@ public class RemitaService {
     }
 
     private String extractTextFromPdf(MultipartFile file) throws IOException {
-        try (PDDocument document = PDDocument.load(file.getInputStream())) {
-            return new PDFTextStripper().getText(document);
+        try (ParseScheduler.Admission admission = parseScheduler.admit();
+             IngestedFile ingested = ingestService.ingest(file)) {
+            return parseScheduler.readPdf(ingested, null);
         }
     }
 
@@ -70,19 +78,14 @@ public class RemitaService {
             String dataToHash = merchantId + apiKey + rrr + apiSecret;
             String hash = sha512(dataToHash);
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("Authorization", "remitaConsumerKey=" + apiKey + ",remitaConsumerToken=" + hash);
-            headers.set("MerchantId", merchantId);
-            headers.setContentType(MediaType.APPLICATION_JSON);
+            Map<String, String> headers = Map.of(
+                    HttpHeaders.AUTHORIZATION, "remitaConsumerKey=" + apiKey + ",remitaConsumerToken=" + hash,
+                    "MerchantId", merchantId,
+                    HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
 
             // Call API
-            RestTemplate restTemplate = new RestTemplate();
-            HttpEntity<String> entity = new HttpEntity<>(headers);
-
             String url = baseUrl + "/rrr/" + rrr;
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
-
-            return response.getBody();
+            return outboundHttpClient.getString(url, headers);
 
         } catch (Exception e) {
             return "Error calling Remita API: " + e.getMessage();
@@ -2,13 +2,11 @@ package com.eduvault.services;
 
 import com.eduvault.dto.*;
 import com.eduvault.user.enums.Level;
-import lombok.RequiredArgsConstructor;
+import com.eduvault.paging.ReceiptCursor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
-
 @Service
-@RequiredArgsConstructor
 public class RetrieveReceiptsService {
     private final CollegeDueService collegeDueService;
     private final CourseFormService courseFormService;
@@ -16,52 +14,82 @@ public class RetrieveReceiptsService {
     private final RemitaSchoolFeeReceiptService remitaSchoolFeeReceiptService;
     private final SchoolFeeReceiptService schoolFeeReceiptService;
     private final SchoolFeeInvoiceService schoolFeeInvoiceService;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    public RetrieveReceiptsService(CollegeDueService collegeDueService,
+                                   CourseFormService courseFormService,
+                                   DeptDueService deptDueService,
+                                   RemitaSchoolFeeReceiptService remitaSchoolFeeReceiptService,
+                                   SchoolFeeReceiptService schoolFeeReceiptService,
+                                   SchoolFeeInvoiceService schoolFeeInvoiceService,
+                                   @Value("${app.retrieve.page-size.default:50}") int defaultPageSize,
+                                   @Value("${app.retrieve.page-size.max:200}") int maxPageSize) {
+        this.collegeDueService = collegeDueService;
+        this.courseFormService = courseFormService;
+        this.deptDueService = deptDueService;
+        this.remitaSchoolFeeReceiptService = remitaSchoolFeeReceiptService;
+        this.schoolFeeReceiptService = schoolFeeReceiptService;
+        this.schoolFeeInvoiceService = schoolFeeInvoiceService;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    public CursorPage<CollegeDueResponse> getAllCollegeDueReceipts(String cursor, Integer size) {
+        return collegeDueService.getReceiptsPage(null, ReceiptCursor.decode(cursor), pageSize(size));
+    }
 
-    public List<CollegeDueResponse> getAllCollegeDueReceipts() {
-        return collegeDueService.getAllReceipts();
+    public CursorPage<CollegeDueResponse> getAllCollegeDueReceiptsByLevel(Level studentLevel, String cursor, Integer size) {
+        return collegeDueService.getReceiptsPage(studentLevel, ReceiptCursor.decode(cursor), pageSize(size));
     }
 
-    public List<CollegeDueResponse> getAllCollegeDueReceiptsByLevel(Level studentLevel) {
-        return collegeDueService.getAllReceiptsByLevel(studentLevel);
+    public CursorPage<CourseFormResponse> getAllCourseFormReceipts(String cursor, Integer size) {
+        return courseFormService.getReceiptsPage(null, ReceiptCursor.decode(cursor), pageSize(size));
     }
 
-    public List<CourseFormResponse> getAllCourseFormReceipts() {
-        return courseFormService.getAllReceipts();
+    public CursorPage<CourseFormResponse> getAllCourseFormsByLevel(Level studentLevel, String cursor, Integer size) {
+        return courseFormService.getReceiptsPage(studentLevel, ReceiptCursor.decode(cursor), pageSize(size));
     }
 
-    public List<CourseFormResponse> getAllCourseFormsByLevel(Level studentLevel) {
-        return courseFormService.getAllReceiptsByLevel(studentLevel);
+    public CursorPage<DeptDueResponse> getAllDeptDueReceipts(String cursor, Integer size) {
+        return deptDueService.getReceiptsPage(null, ReceiptCursor.decode(cursor), pageSize(size));
     }
 
-    public List<DeptDueResponse> getAllDeptDueReceipts() {
-        return deptDueService.getAllReceipts();
+    public CursorPage<DeptDueResponse> getAllDeptDueReceiptsByLevel(Level studentLevel, String cursor, Integer size) {
+        return deptDueService.getReceiptsPage(studentLevel, ReceiptCursor.decode(cursor), pageSize(size));
     }
 
-    public List<DeptDueResponse> getAllDeptDueReceiptsByLevel(Level studentLevel) {
-        return deptDueService.getAllReceiptsByLevel(studentLevel);
+    public CursorPage<PdfResponse> getAllRemitaSchoolFeeReceipts(String cursor, Integer size) {
+        return remitaSchoolFeeReceiptService.getReceiptsPage(null, ReceiptCursor.decode(cursor), pageSize(size));
     }
 
-    public List<PdfResponse> getAllRemitaSchoolFeeReceipts() {
-        return remitaSchoolFeeReceiptService.getAllReceipts();
+    public CursorPage<PdfResponse> getAllRemitaSchoolFeeReceiptsByLevel(Level studentLevel, String cursor, Integer size) {
+        return remitaSchoolFeeReceiptService.getReceiptsPage(studentLevel, ReceiptCursor.decode(cursor), pageSize(size));
     }
 
-    public List<PdfResponse> getAllRemitaSchoolFeeReceiptsByLevel(Level studentLevel) {
-        return remitaSchoolFeeReceiptService.getAllReceiptsByLevel(studentLevel);
+    public CursorPage<SchoolFeeInvoiceResponse> getAllSchoolFeeInvoiceReceipts(String cursor, Integer size) {
+        return schoolFeeInvoiceService.getReceiptsPage(null, ReceiptCursor.decode(cursor), pageSize(size));
     }
 
-    public List<SchoolFeeInvoiceResponse> getAllSchoolFeeInvoiceReceipts() {
-        return schoolFeeInvoiceService.getAllReceipts();
+    public CursorPage<SchoolFeeInvoiceResponse> getAllSchoolFeeInvoiceReceiptsByLevel(Level studentLevel, String cursor, Integer size) {
+        return schoolFeeInvoiceService.getReceiptsPage(studentLevel, ReceiptCursor.decode(cursor), pageSize(size));
     }
 
-    public List<SchoolFeeInvoiceResponse> getAllSchoolFeeInvoiceReceiptsByLevel(Level studentLevel) {
-        return schoolFeeInvoiceService.getAllReceiptsByLevel(studentLevel);
+    public CursorPage<SchoolFeeResponse> getAllSchoolFeeReceipts(String cursor, Integer size) {
+        return schoolFeeReceiptService.getReceiptsPage(null, ReceiptCursor.decode(cursor), pageSize(size));
     }
 
-    public List<SchoolFeeResponse> getAllSchoolFeeReceipts() {
-        return schoolFeeReceiptService.getAllReceipts();
+    public CursorPage<SchoolFeeResponse> getAllSchoolFeeReceiptsByLevel(Level studentLevel, String cursor, Integer size) {
+        return schoolFeeReceiptService.getReceiptsPage(studentLevel, ReceiptCursor.decode(cursor), pageSize(size));
     }
 
-    public List<SchoolFeeResponse> getAllSchoolFeeReceiptsByLevel(Level studentLevel) {
-        return schoolFeeReceiptService.getAllReceiptsByLevel(studentLevel);
+    private int pageSize(Integer size) {
+        if (size == null) {
+            return defaultPageSize;
+        }
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+        return Math.min(size, maxPageSize);
     }
 }
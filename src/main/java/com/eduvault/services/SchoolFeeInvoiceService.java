@@ -1,61 +1,76 @@
 package com.eduvault.services;
 
-import com.cloudinary.Cloudinary;
+import com.eduvault.bootstrap.ReceiptIndexInitializer;
+import com.eduvault.dto.CursorPage;
 import com.eduvault.dto.FileDownloadResponse;
 import com.eduvault.dto.SchoolFeeInvoiceResponse;
 import com.eduvault.entities.RemitaSchoolFeeReceipt;
 import com.eduvault.entities.SchoolFeeInvoice;
+import com.eduvault.export.ReceiptZipExporter;
+import com.eduvault.export.ZipItem;
+import com.eduvault.ingest.IngestMetrics;
+import com.eduvault.ingest.IngestService;
+import com.eduvault.ingest.IngestedFile;
+import com.eduvault.ingest.ParseScheduler;
+import com.eduvault.ingest.StoredDocument;
+import com.eduvault.pdf.ExtractedFields;
+import com.eduvault.paging.ReceiptCursor;
+import com.eduvault.pdf.ReceiptExtractor;
 import com.eduvault.repositories.SchoolFeeInvoiceRepository;
+import com.eduvault.repositories.projections.ApprovalWatermark;
+import com.eduvault.repositories.projections.ReceiptFileView;
+import com.eduvault.repositories.projections.SchoolFeeInvoiceView;
 import com.eduvault.user.User;
+import com.eduvault.user.enums.DocumentType;
 import com.eduvault.user.enums.Level;
 import com.eduvault.user.enums.Status;
 import com.eduvault.user.repo.UserRepository;
-import com.eduvault.user.service.CloudinaryService;
-import com.eduvault.user.utils.UploadResponse;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URL;
 import java.time.LocalDateTime;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class SchoolFeeInvoiceService {
-    private final PdfReaderService pdfReaderService;
+    private final IngestService ingestService;
+    private final ParseScheduler parseScheduler;
+    private final ReceiptExtractor receiptExtractor;
+    private final IngestMetrics ingestMetrics;
+    private final PaymentReferenceService paymentReferenceService;
     private final SchoolFeeInvoiceRepository schoolFeeInvoiceRepository;
     private final UserRepository userRepository;
-    private final CloudinaryService cloudinaryService;
-    private final Cloudinary cloudinary;
+    private final ReceiptZipExporter receiptZipExporter;
 
-    public SchoolFeeInvoiceResponse processReceipt (MultipartFile file, String e_mail, Level studentLevel) throws IOException {
-        User user = userRepository.findByEmail(e_mail)
+    public SchoolFeeInvoiceResponse processReceipt(IngestedFile file, String e_mail, Level studentLevel) throws IOException {
+        User user = ingestMetrics.time(IngestMetrics.USER_LOOKUP, DocumentType.SCHOOL_FEE_INVOICE, () -> userRepository.findByEmail(e_mail))
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
-        UploadResponse uploadResponse = cloudinaryService.upload(file);
-        String pdfUrl = uploadResponse.getSecureUrl();
-        String content = pdfReaderService.readDocument(file);
+        StoredDocument document = ingestService.uploadAndExtract(file, DocumentType.SCHOOL_FEE_INVOICE);
+        String pdfUrl = document.pdfUrl();
+        String content = document.content();
         System.out.println("---- PDF CONTENT ----");
         System.out.println(content);
         System.out.println("---------------------");
-        String name = extractField(content, "(?i)([A-Z][A-Za-z ]+)\\s+\\d{11},", null); // before phone
-        String phone = extractField(content, "(\\d{11}),", null);
-        String email = extractField(content, "([\\w.%-]+@[\\w.-]+\\.[A-Za-z]{2,6})", null);
-        String amount = extractField(content, "Total:\\s*N([\\d,]+\\.\\d{2})", null);
-        String rrr = extractField(content, "REMITA RRR:\\s*(\\d+)", null);
-        String invoiceNo = extractField(content, "REFERENCE/INVOICE NO.\\s*([A-Z0-9/]+)", null);
-        String date = extractField(content, "(\\d{1,2}\\s+\\w+\\s+\\d{4}\\s+\\d{2}:\\d{2}:\\d{2})", null);
+        ExtractedFields fields = receiptExtractor.extract(DocumentType.SCHOOL_FEE_INVOICE, content);
+        String name = fields.get("name");
+        String phone = fields.get("phone");
+        String email = fields.get("email");
+        String amount = fields.get("amount");
+        String rrr = fields.get("rrr");
+        String invoiceNo = fields.get("invoiceNumber");
+        String date = fields.get("date");
 
         SchoolFeeInvoice invoice = SchoolFeeInvoice.builder()
                 .name(name != null ? name.trim() : null)
@@ -71,7 +86,16 @@ public class SchoolFeeInvoiceService {
                 .studentLevel(studentLevel)
                 .build();
 
-        SchoolFeeInvoice savedInvoice = schoolFeeInvoiceRepository.save(invoice);
+        SchoolFeeInvoice savedInvoice = paymentReferenceService.claimAndSave(DocumentType.SCHOOL_FEE_INVOICE, rrr, user.getId(), () -> {
+            try {
+                return ingestMetrics.time(IngestMetrics.SAVE, DocumentType.SCHOOL_FEE_INVOICE, () -> schoolFeeInvoiceRepository.saveAndFlush(invoice));
+            } catch (DataIntegrityViolationException e) {
+                if (ReceiptIndexInitializer.isOnePerLevelViolation(e, "sch_fee_invoice")) {
+                    throw alreadyUploaded(studentLevel);
+                }
+                throw e;
+            }
+        }, SchoolFeeInvoice::getId);
 
         return SchoolFeeInvoiceResponse.builder()
                 .id(savedInvoice.getId())
@@ -87,167 +111,144 @@ public class SchoolFeeInvoiceService {
                 .build();
     }
 
-    private String extractField(String content, String label, String regex) {
-        Pattern pattern;
-        if (regex == null) {
-            pattern = Pattern.compile(label, Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-        } else {
-            pattern = Pattern.compile(label + "\\s*" + regex, Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-        }
-        Matcher matcher = pattern.matcher(content);
-        if (matcher.find()) {
-            return matcher.group(1).trim();
+    public SchoolFeeInvoiceResponse uploadReceipt(MultipartFile file, String email, Level studentLevel) throws IOException {
+        try (ParseScheduler.Admission admission = parseScheduler.admit()) {
+            ensureCanUpload(email, studentLevel);
+            try (IngestedFile ingested = ingestService.ingest(file)) {
+                return processReceipt(ingested, email, studentLevel);
+            }
         }
-        return null;
     }
 
-    public SchoolFeeInvoiceResponse uploadReceipt(MultipartFile file, String email, Level studentLevel) throws IOException {
+    public SchoolFeeInvoiceResponse uploadReceipt(IngestedFile file, String email, Level studentLevel) throws IOException {
+        ensureCanUpload(email, studentLevel);
+        return processReceipt(file, email, studentLevel);
+    }
+
+    public void ensureCanUpload(String email, Level studentLevel) {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
 
-        List<SchoolFeeInvoice> receipts = schoolFeeInvoiceRepository.findByUploadedBy(user.getId());
-
-        boolean alreadyUploadedForLevel = receipts.stream()
-                .anyMatch(receipt ->
-                        receipt.getStudentLevel() == studentLevel && receipt.getState() != Status.REJECTED
-                );
-
-        if (alreadyUploadedForLevel) {
-            throw new IllegalStateException(
-                    "You have already uploaded a receipt for " + studentLevel + ". " +
-                            "You can only re-upload if your receipt was rejected."
-            );
+        if (schoolFeeInvoiceRepository.existsByUploadedByAndStudentLevelAndStateNot(user.getId(), studentLevel, Status.REJECTED)) {
+            throw alreadyUploaded(studentLevel);
         }
-        return processReceipt(file, email, studentLevel);
     }
 
+    private IllegalStateException alreadyUploaded(Level studentLevel) {
+        return new IllegalStateException(
+                "You have already uploaded a receipt for " + studentLevel + ". " +
+                        "You can only re-upload if your receipt was rejected."
+        );
+    }
 
-    public List<SchoolFeeInvoiceResponse> getAllReceipts() {
-        List<SchoolFeeInvoice> receipts = schoolFeeInvoiceRepository.findAll();
-        return receipts.stream()
-                .map(receipt -> SchoolFeeInvoiceResponse.builder()
-                        .id(receipt.getId())
-                        .email(receipt.getEmail())
-                        .invoiceNumber(receipt.getInvoiceNumber())
-                        .RRR(receipt.getRRR())
-                        .amount(receipt.getAmount())
-                        .phone(receipt.getPhone())
-                        .pdfUrl(receipt.getPdfUrl())
-                        .uploadedAt(receipt.getUploadedAt())
-                        .uploadedBy(receipt.getUploadedBy())
-                        .build())
-
-                .toList();    }
-
-    public List<SchoolFeeInvoiceResponse> getAllReceiptsByLevel(Level studentLevel) {
-        List<SchoolFeeInvoice> receipts = schoolFeeInvoiceRepository.findByStudentLevel(studentLevel);
-        return receipts.stream()
-                .map(receipt -> SchoolFeeInvoiceResponse.builder()
-                        .id(receipt.getId())
-                        .email(receipt.getEmail())
-                        .invoiceNumber(receipt.getInvoiceNumber())
-                        .RRR(receipt.getRRR())
-                        .amount(receipt.getAmount())
-                        .phone(receipt.getPhone())
-                        .pdfUrl(receipt.getPdfUrl())
-                        .uploadedAt(receipt.getUploadedAt())
-                        .uploadedBy(receipt.getUploadedBy())
-                        .build())
-                .toList();    }
-
+    @Transactional(readOnly = true)
+    public CursorPage<SchoolFeeInvoiceResponse> getReceiptsPage(Level studentLevel, ReceiptCursor after, int size) {
+        Limit limit = Limit.of(size + 1);
+        List<SchoolFeeInvoiceView> receipts;
+        if (studentLevel == null) {
+            receipts = after == null
+                    ? schoolFeeInvoiceRepository.findPage(limit)
+                    : schoolFeeInvoiceRepository.findPageAfter(after.uploadedAt(), after.id(), limit);
+        } else {
+            receipts = after == null
+                    ? schoolFeeInvoiceRepository.findPageByStudentLevel(studentLevel, limit)
+                    : schoolFeeInvoiceRepository.findPageByStudentLevelAfter(studentLevel, after.uploadedAt(), after.id(), limit);
+        }
+        return ReceiptCursor.page(receipts.stream().map(this::toResponse).toList(), size,
+                receipt -> new ReceiptCursor(receipt.getUploadedAt(), receipt.getId()));
+    }
 
+    @Transactional(readOnly = true)
     public List<SchoolFeeInvoiceResponse> getAllReceiptsByLevelByUser(Level studentLevel, String email) {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
-        List<SchoolFeeInvoice> receipts = schoolFeeInvoiceRepository.findByStudentLevelAndUploadedBy(studentLevel, user.getId());
-        return receipts.stream()
-                .map(receipt -> SchoolFeeInvoiceResponse.builder()
-                        .id(receipt.getId())
-                        .email(receipt.getEmail())
-                        .invoiceNumber(receipt.getInvoiceNumber())
-                        .RRR(receipt.getRRR())
-                        .amount(receipt.getAmount())
-                        .phone(receipt.getPhone())
-                        .pdfUrl(receipt.getPdfUrl())
-                        .uploadedAt(receipt.getUploadedAt())
-                        .uploadedBy(receipt.getUploadedBy())
-                        .build())
-                .toList();    }
+        return schoolFeeInvoiceRepository.findViewsByStudentLevelAndUploadedBy(studentLevel, user.getId()).stream()
+                .map(this::toResponse)
+                .toList();
+    }
 
+    @Transactional(readOnly = true)
     public List<SchoolFeeInvoiceResponse> getAllReceiptsByUser(String email) {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
-        List<SchoolFeeInvoice> receipts = schoolFeeInvoiceRepository.findByUploadedBy(user.getId());
-        return receipts.stream()
-                .map(receipt -> SchoolFeeInvoiceResponse.builder()
-                        .id(receipt.getId())
-                        .email(receipt.getEmail())
-                        .invoiceNumber(receipt.getInvoiceNumber())
-                        .RRR(receipt.getRRR())
-                        .amount(receipt.getAmount())
-                        .phone(receipt.getPhone())
-                        .pdfUrl(receipt.getPdfUrl())
-                        .uploadedAt(receipt.getUploadedAt())
-                        .uploadedBy(receipt.getUploadedBy())
-                        .build())
-
+        return schoolFeeInvoiceRepository.findViewsByUploadedBy(user.getId()).stream()
+                .map(this::toResponse)
                 .toList();
     }
+
+    private SchoolFeeInvoiceResponse toResponse(SchoolFeeInvoiceView view) {
+        return SchoolFeeInvoiceResponse.builder()
+                .id(view.getId())
+                .name(view.getName())
+                .email(view.getEmail())
+                .invoiceNumber(view.getInvoiceNumber())
+                .phone(view.getPhone())
+                .amount(view.getAmount())
+                .RRR(view.getRRR())
+                .uploadedBy(view.getUploadedBy())
+                .uploadedAt(view.getUploadedAt())
+                .pdfUrl(view.getPdfUrl())
+                .build();
+    }
     public UUID getUploadedBy(UUID receiptId) {
         return schoolFeeInvoiceRepository.findUploadedByById(receiptId);
     }
 
-    public byte[] downloadApprovedReceiptsAsZip() throws IOException {
-        List<SchoolFeeInvoice> receipts = schoolFeeInvoiceRepository.findByState(Status.APPROVED);
+    @Transactional(readOnly = true)
+    public StreamingResponseBody downloadApprovedReceiptsAsZip() {
+        List<ZipItem> items;
+        try (Stream<ReceiptFileView> receipts = schoolFeeInvoiceRepository.streamByStateAndPdfUrlIsNotNull(Status.APPROVED)) {
+            items = receipts.map(this::toZipItem).toList();
+        }
+        return out -> receiptZipExporter.write(items, out);
+    }
 
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             ZipOutputStream zos = new ZipOutputStream(baos)) {
+    @Transactional(readOnly = true)
+    public List<ZipItem> approvedZipItems(Level studentLevel) {
+        try (Stream<ReceiptFileView> receipts = schoolFeeInvoiceRepository.streamByStateAndStudentLevelAndPdfUrlIsNotNull(Status.APPROVED, studentLevel)) {
+            return receipts.map(this::toZipItem).toList();
+        }
+    }
 
-            for (SchoolFeeInvoice receipt : receipts) {
-                if (receipt.getPdfUrl() == null) continue;
+    @Transactional(readOnly = true)
+    public ApprovalWatermark approvedWatermark(Level studentLevel) {
+        return schoolFeeInvoiceRepository.findWatermarkByStateAndStudentLevel(Status.APPROVED, studentLevel);
+    }
 
-                String safeName = receipt.getName() != null ? receipt.getName().replaceAll("\\s+", "_") : "receipt";
-                String fileName = safeName + ".pdf";
+    public ZipItem toZipItem(SchoolFeeInvoice receipt) {
+        return zipItem(receipt.getName(), receipt.getPdfUrl());
+    }
 
-                try (InputStream in = new URL(receipt.getPdfUrl()).openStream()) {
-                    zos.putNextEntry(new ZipEntry(fileName));
-                    in.transferTo(zos);
-                    zos.closeEntry();
-                } catch (Exception e) {
-                    System.err.println("Could not download PDF: " + receipt.getPdfUrl() + " -> " + e.getMessage());
-                }
-            }
+    private ZipItem toZipItem(ReceiptFileView receipt) {
+        return zipItem(receipt.getName(), receipt.getPdfUrl());
+    }
 
-            zos.finish();
-            return baos.toByteArray();
-        }
+    private ZipItem zipItem(String name, String pdfUrl) {
+        String safeName = name != null ? name.replaceAll("\\s+", "_") : "receipt";
+        String fileName = safeName + ".pdf";
+        return new ZipItem(fileName, pdfUrl);
     }
 
-    public FileDownloadResponse downloadReceiptByUser(String email) throws IOException {
+    /**
+     * Finds the user's newest receipt, or their newest for {@code studentLevel} when one is given.
+     */
+    public FileDownloadResponse downloadReceiptByUser(String email, Level studentLevel) throws IOException {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
 
-        SchoolFeeInvoice receipt = schoolFeeInvoiceRepository.findByUploadedBy(user.getId())
-                .stream()
-                .max(Comparator.comparing(SchoolFeeInvoice::getUploadedAt))
+        Optional<SchoolFeeInvoice> latest = studentLevel == null
+                ? schoolFeeInvoiceRepository.findFirstByUploadedByOrderByUploadedAtDesc(user.getId())
+                : schoolFeeInvoiceRepository.findFirstByUploadedByAndStudentLevelOrderByUploadedAtDesc(user.getId(), studentLevel);
+        SchoolFeeInvoice receipt = latest
                 .orElseThrow(() -> new EntityNotFoundException("No receipt found for this user."));
 
         if (receipt.getPdfUrl() == null || receipt.getPdfUrl().isBlank()) {
             throw new FileNotFoundException("No PDF found for this receipt.");
         }
 
-        String fileUrl = receipt.getPdfUrl();
-
-        byte[] pdfBytes;
-        try (InputStream in = new URL(fileUrl).openStream()) {
-            pdfBytes = in.readAllBytes();
-        } catch (Exception e) {
-            throw new IOException("Could not download PDF from Cloudinary: " + e.getMessage(), e);
-        }
-
         String fileName = (receipt.getName() != null ? receipt.getName().replaceAll("\\s+", "_") : "receipt")
                 + ".pdf";
 
-        return new FileDownloadResponse(fileName, pdfBytes);
+        return new FileDownloadResponse(fileName, receipt.getPdfUrl());
     }
 }
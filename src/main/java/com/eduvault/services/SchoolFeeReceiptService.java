@@ -1,76 +1,81 @@
 package com.eduvault.services;
 
-import com.cloudinary.Cloudinary;
+import com.eduvault.bootstrap.ReceiptIndexInitializer;
+import com.eduvault.dto.CursorPage;
 import com.eduvault.dto.FileDownloadResponse;
 import com.eduvault.dto.SchoolFeeResponse;
 import com.eduvault.entities.SchoolFeeInvoice;
 import com.eduvault.entities.SchoolFeeReceipt;
+import com.eduvault.export.ReceiptZipExporter;
+import com.eduvault.export.ZipItem;
+import com.eduvault.ingest.IngestMetrics;
+import com.eduvault.ingest.IngestService;
+import com.eduvault.ingest.IngestedFile;
+import com.eduvault.ingest.ParseScheduler;
+import com.eduvault.ingest.StoredDocument;
+import com.eduvault.pdf.ExtractedFields;
+import com.eduvault.paging.ReceiptCursor;
+import com.eduvault.pdf.ReceiptExtractor;
 import com.eduvault.repositories.SchoolFeeReceiptRepository;
+import com.eduvault.repositories.projections.ApprovalWatermark;
+import com.eduvault.repositories.projections.SchoolFeeReceiptView;
+import com.eduvault.repositories.projections.StudentReceiptFileView;
 import com.eduvault.user.User;
+import com.eduvault.user.enums.DocumentType;
 import com.eduvault.user.enums.Level;
 import com.eduvault.user.enums.Status;
 import com.eduvault.user.repo.UserRepository;
-import com.eduvault.user.service.CloudinaryService;
-import com.eduvault.user.utils.UploadResponse;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URL;
 import java.time.LocalDateTime;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class SchoolFeeReceiptService {
-    private final PdfReaderService pdfReaderService;
+    private final IngestService ingestService;
+    private final ParseScheduler parseScheduler;
+    private final ReceiptExtractor receiptExtractor;
+    private final IngestMetrics ingestMetrics;
     private final SchoolFeeReceiptRepository schoolFeeReceiptRepository;
     private final UserRepository userRepository;
-    private final CloudinaryService cloudinaryService;
-    private final Cloudinary cloudinary;
+    private final ReceiptZipExporter receiptZipExporter;
 
 
-    public SchoolFeeResponse processReceipt (MultipartFile file, String e_mail, Level studentLevel) throws IOException {
-        User user = userRepository.findByEmail(e_mail)
+    public SchoolFeeResponse processReceipt(IngestedFile file, String e_mail, Level studentLevel) throws IOException {
+        User user = ingestMetrics.time(IngestMetrics.USER_LOOKUP, DocumentType.SCHOOL_FEE_RECEIPT, () -> userRepository.findByEmail(e_mail))
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
-        UploadResponse uploadResponse = cloudinaryService.upload(file);
-        String pdfUrl = uploadResponse.getSecureUrl();
-        String content = pdfReaderService.readDocument(file);
+        StoredDocument document = ingestService.uploadAndExtract(file, DocumentType.SCHOOL_FEE_RECEIPT);
+        String pdfUrl = document.pdfUrl();
+        String content = document.content();
         System.out.println("---- PDF CONTENT ----");
         System.out.println(content);
         System.out.println("---------------------");
 
-        String name = extractField(content, "([A-Z][A-Za-z ]+)\\s+Received from", null);
-        if (name == null) {
-            name = extractField(content, "Received from\\s+([A-Za-z ]+)", null);
-        }
-
-        String college = extractField(content, "(College[^\\r\\n]+?)(?=Date:)", null);
-        String department = extractField(content, "Department:", "([^\\r\\n]+)");
-        String date = extractField(content, "Date:", "(\\d{2}/\\d{2}/\\d{4})");
-
-        String receiptNo = extractField(content, "Receipt No:", "(\\d+)");
-        if (receiptNo == null) {
-            receiptNo = extractField(content, "(\\d+)Receipt No:", null);
-        }
-
-        String matric = extractField(content, "Matric. No.:", "([^\\r\\n]+)");
-        String level = extractField(content, "Level:", "([^\\r\\n]+)");
-        String invoiceNo = extractField(content, "Invoice No.:", "([^\\r\\n]+)");
-        String bank = extractField(content, "Bank:", "([^\\r\\n]+)");
-        String amount = extractField(content, "TOTAL", "([\\d,]+\\.\\d{2})");
-        String description = extractField(content, "(Returning.*School Fees)", null);
+        ExtractedFields fields = receiptExtractor.extract(DocumentType.SCHOOL_FEE_RECEIPT, content);
+        String name = fields.get("name");
+        String college = fields.get("college");
+        String department = fields.get("department");
+        String date = fields.get("date");
+        String receiptNo = fields.get("receiptNumber");
+        String matric = fields.get("matricNumber");
+        String level = fields.get("level");
+        String invoiceNo = fields.get("invoiceNumber");
+        String bank = fields.get("bank");
+        String amount = fields.get("amount");
+        String description = fields.get("description");
 
         SchoolFeeReceipt receipt = SchoolFeeReceipt.builder()
                 .name(name != null ? name.trim() : null)
@@ -91,7 +96,15 @@ public class SchoolFeeReceiptService {
                 .studentLevel(studentLevel)
                 .build();
 
-        SchoolFeeReceipt savedReceipt = schoolFeeReceiptRepository.save(receipt);
+        SchoolFeeReceipt savedReceipt;
+        try {
+            savedReceipt = ingestMetrics.time(IngestMetrics.SAVE, DocumentType.SCHOOL_FEE_RECEIPT, () -> schoolFeeReceiptRepository.save(receipt));
+        } catch (DataIntegrityViolationException e) {
+            if (ReceiptIndexInitializer.isOnePerLevelViolation(e, "sch_fee_receipt")) {
+                throw alreadyUploaded(studentLevel);
+            }
+            throw e;
+        }
 
         return SchoolFeeResponse.builder()
                 .id(savedReceipt.getId())
@@ -112,190 +125,148 @@ public class SchoolFeeReceiptService {
                 .build();
     }
 
-    private String extractField(String content, String label, String regex) {
-        Pattern pattern;
-        if (regex == null) {
-            pattern = Pattern.compile(label, Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-        } else {
-            pattern = Pattern.compile(label + "\\s*" + regex, Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-        }
-        Matcher matcher = pattern.matcher(content);
-        if (matcher.find()) {
-            return matcher.group(1).trim();
+    public SchoolFeeResponse uploadReceipt(MultipartFile file, String email, Level studentLevel) throws IOException {
+        try (ParseScheduler.Admission admission = parseScheduler.admit()) {
+            ensureCanUpload(email, studentLevel);
+            try (IngestedFile ingested = ingestService.ingest(file)) {
+                return processReceipt(ingested, email, studentLevel);
+            }
         }
-        return null;
     }
 
-    public SchoolFeeResponse uploadReceipt(MultipartFile file, String email, Level studentLevel) throws IOException {
+    public SchoolFeeResponse uploadReceipt(IngestedFile file, String email, Level studentLevel) throws IOException {
+        ensureCanUpload(email, studentLevel);
+        return processReceipt(file, email, studentLevel);
+    }
+
+    public void ensureCanUpload(String email, Level studentLevel) {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
 
-        List<SchoolFeeReceipt> receipts = schoolFeeReceiptRepository.findByUploadedBy(user.getId());
-
-        boolean alreadyUploadedForLevel = receipts.stream()
-                .anyMatch(receipt ->
-                        receipt.getStudentLevel() == studentLevel && receipt.getState() != Status.REJECTED
-                );
-
-        if (alreadyUploadedForLevel) {
-            throw new IllegalStateException(
-                    "You have already uploaded a receipt for " + studentLevel + ". " +
-                            "You can only re-upload if your receipt was rejected."
-            );
+        if (schoolFeeReceiptRepository.existsByUploadedByAndStudentLevelAndStateNot(user.getId(), studentLevel, Status.REJECTED)) {
+            throw alreadyUploaded(studentLevel);
         }
-        return processReceipt(file, email, studentLevel);
     }
 
-    public List<SchoolFeeResponse> getAllReceipts() {
-        List<SchoolFeeReceipt> receipts = schoolFeeReceiptRepository.findAll();
-        return receipts.stream()
-                .map(receipt -> SchoolFeeResponse.builder()
-                        .id(receipt.getId())
-                        .name(receipt.getName())
-                        .college(receipt.getCollege())
-                        .department(receipt.getDepartment())
-                        .date(receipt.getDate())
-                        .receiptNumber(receipt.getReceiptNumber())
-                        .matricNumber(receipt.getMatricNumber())
-                        .level(receipt.getLevel())
-                        .invoiceNumber(receipt.getInvoiceNumber())
-                        .Bank(receipt.getBank())
-                        .amount(receipt.getAmount())
-                        .description(receipt.getDescription())
-                        .pdfUrl(receipt.getPdfUrl())
-                        .uploadedAt(receipt.getUploadedAt())
-                        .uploadedBy(receipt.getUploadedBy())
-                        .build())
-
-                .toList();    }
-
-    public List<SchoolFeeResponse> getAllReceiptsByLevel(Level studentLevel) {
-        List<SchoolFeeReceipt> receipts = schoolFeeReceiptRepository.findByStudentLevel(studentLevel);
-        return receipts.stream()
-                .map(receipt -> SchoolFeeResponse.builder()
-                        .id(receipt.getId())
-                        .name(receipt.getName())
-                        .college(receipt.getCollege())
-                        .department(receipt.getDepartment())
-                        .date(receipt.getDate())
-                        .receiptNumber(receipt.getReceiptNumber())
-                        .matricNumber(receipt.getMatricNumber())
-                        .level(receipt.getLevel())
-                        .invoiceNumber(receipt.getInvoiceNumber())
-                        .Bank(receipt.getBank())
-                        .amount(receipt.getAmount())
-                        .description(receipt.getDescription())
-                        .pdfUrl(receipt.getPdfUrl())
-                        .uploadedAt(receipt.getUploadedAt())
-                        .uploadedBy(receipt.getUploadedBy())
-                        .build())
-                .toList();    }
+    private IllegalStateException alreadyUploaded(Level studentLevel) {
+        return new IllegalStateException(
+                "You have already uploaded a receipt for " + studentLevel + ". " +
+                        "You can only re-upload if your receipt was rejected."
+        );
+    }
 
+    @Transactional(readOnly = true)
+    public CursorPage<SchoolFeeResponse> getReceiptsPage(Level studentLevel, ReceiptCursor after, int size) {
+        Limit limit = Limit.of(size + 1);
+        List<SchoolFeeReceiptView> receipts;
+        if (studentLevel == null) {
+            receipts = after == null
+                    ? schoolFeeReceiptRepository.findPage(limit)
+                    : schoolFeeReceiptRepository.findPageAfter(after.uploadedAt(), after.id(), limit);
+        } else {
+            receipts = after == null
+                    ? schoolFeeReceiptRepository.findPageByStudentLevel(studentLevel, limit)
+                    : schoolFeeReceiptRepository.findPageByStudentLevelAfter(studentLevel, after.uploadedAt(), after.id(), limit);
+        }
+        return ReceiptCursor.page(receipts.stream().map(this::toResponse).toList(), size,
+                receipt -> new ReceiptCursor(receipt.getUploadedAt(), receipt.getId()));
+    }
 
+    @Transactional(readOnly = true)
     public List<SchoolFeeResponse> getAllReceiptsByLevelByUser(Level studentLevel, String email) {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
-        List<SchoolFeeReceipt> receipts = schoolFeeReceiptRepository.findByStudentLevelAndUploadedBy(studentLevel, user.getId());
-        return receipts.stream()
-                .map(receipt -> SchoolFeeResponse.builder()
-                        .id(receipt.getId())
-                        .name(receipt.getName())
-                        .college(receipt.getCollege())
-                        .department(receipt.getDepartment())
-                        .date(receipt.getDate())
-                        .receiptNumber(receipt.getReceiptNumber())
-                        .matricNumber(receipt.getMatricNumber())
-                        .level(receipt.getLevel())
-                        .invoiceNumber(receipt.getInvoiceNumber())
-                        .Bank(receipt.getBank())
-                        .amount(receipt.getAmount())
-                        .description(receipt.getDescription())
-                        .pdfUrl(receipt.getPdfUrl())
-                        .uploadedAt(receipt.getUploadedAt())
-                        .uploadedBy(receipt.getUploadedBy())
-                        .build())
+        return schoolFeeReceiptRepository.findViewsByStudentLevelAndUploadedBy(studentLevel, user.getId()).stream()
+                .map(this::toResponse)
                 .toList();
     }
 
+    @Transactional(readOnly = true)
     public List<SchoolFeeResponse> getAllReceiptsByUser(String email) {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
-        List<SchoolFeeReceipt> receipts = schoolFeeReceiptRepository.findByUploadedBy(user.getId());
-        return receipts.stream()
-                .map(receipt -> SchoolFeeResponse.builder()
-                        .id(receipt.getId())
-                        .name(receipt.getName())
-                        .college(receipt.getCollege())
-                        .department(receipt.getDepartment())
-                        .date(receipt.getDate())
-                        .receiptNumber(receipt.getReceiptNumber())
-                        .matricNumber(receipt.getMatricNumber())
-                        .level(receipt.getLevel())
-                        .invoiceNumber(receipt.getInvoiceNumber())
-                        .Bank(receipt.getBank())
-                        .amount(receipt.getAmount())
-                        .description(receipt.getDescription())
-                        .pdfUrl(receipt.getPdfUrl())
-                        .uploadedAt(receipt.getUploadedAt())
-                        .uploadedBy(receipt.getUploadedBy())
-                        .build())
-
+        return schoolFeeReceiptRepository.findViewsByUploadedBy(user.getId()).stream()
+                .map(this::toResponse)
                 .toList();
     }
 
+    private SchoolFeeResponse toResponse(SchoolFeeReceiptView view) {
+        return SchoolFeeResponse.builder()
+                .id(view.getId())
+                .name(view.getName())
+                .college(view.getCollege())
+                .department(view.getDepartment())
+                .date(view.getDate())
+                .receiptNumber(view.getReceiptNumber())
+                .matricNumber(view.getMatricNumber())
+                .level(view.getLevel())
+                .invoiceNumber(view.getInvoiceNumber())
+                .Bank(view.getBank())
+                .amount(view.getAmount())
+                .description(view.getDescription())
+                .pdfUrl(view.getPdfUrl())
+                .uploadedBy(view.getUploadedBy())
+                .uploadedAt(view.getUploadedAt())
+                .build();
+    }
+
     public UUID getUploadedBy(UUID receiptId) {
         return schoolFeeReceiptRepository.findUploadedByById(receiptId);
     }
 
-    public byte[] downloadApprovedReceiptsAsZip() throws IOException {
-        List<SchoolFeeReceipt> receipts = schoolFeeReceiptRepository.findByState(Status.APPROVED);
+    @Transactional(readOnly = true)
+    public StreamingResponseBody downloadApprovedReceiptsAsZip() {
+        List<ZipItem> items;
+        try (Stream<StudentReceiptFileView> receipts = schoolFeeReceiptRepository.streamByStateAndPdfUrlIsNotNull(Status.APPROVED)) {
+            items = receipts.map(this::toZipItem).toList();
+        }
+        return out -> receiptZipExporter.write(items, out);
+    }
 
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             ZipOutputStream zos = new ZipOutputStream(baos)) {
+    @Transactional(readOnly = true)
+    public List<ZipItem> approvedZipItems(Level studentLevel) {
+        try (Stream<StudentReceiptFileView> receipts = schoolFeeReceiptRepository.streamByStateAndStudentLevelAndPdfUrlIsNotNull(Status.APPROVED, studentLevel)) {
+            return receipts.map(this::toZipItem).toList();
+        }
+    }
 
-            for (SchoolFeeReceipt receipt : receipts) {
-                if (receipt.getPdfUrl() == null) continue;
+    @Transactional(readOnly = true)
+    public ApprovalWatermark approvedWatermark(Level studentLevel) {
+        return schoolFeeReceiptRepository.findWatermarkByStateAndStudentLevel(Status.APPROVED, studentLevel);
+    }
 
-                String safeName = receipt.getName() != null ? receipt.getName().replaceAll("\\s+", "_") : "receipt";
-                String fileName = safeName + "-" + receipt.getMatricNumber() + ".pdf";
+    public ZipItem toZipItem(SchoolFeeReceipt receipt) {
+        return zipItem(receipt.getName(), receipt.getMatricNumber(), receipt.getPdfUrl());
+    }
 
-                try (InputStream in = new URL(receipt.getPdfUrl()).openStream()) {
-                    zos.putNextEntry(new ZipEntry(fileName));
-                    in.transferTo(zos);
-                    zos.closeEntry();
-                } catch (Exception e) {
-                    System.err.println("Could not download PDF: " + receipt.getPdfUrl() + " -> " + e.getMessage());
-                }
-            }
+    private ZipItem toZipItem(StudentReceiptFileView receipt) {
+        return zipItem(receipt.getName(), receipt.getMatricNumber(), receipt.getPdfUrl());
+    }
 
-            zos.finish();
-            return baos.toByteArray();
-        }
+    private ZipItem zipItem(String name, String matricNumber, String pdfUrl) {
+        String safeName = name != null ? name.replaceAll("\\s+", "_") : "receipt";
+        String fileName = safeName + "-" + matricNumber + ".pdf";
+        return new ZipItem(fileName, pdfUrl);
     }
-    public FileDownloadResponse downloadReceiptByUser(String email) throws IOException {
+    /**
+     * Finds the user's newest receipt, or their newest for {@code studentLevel} when one is given.
+     */
+    public FileDownloadResponse downloadReceiptByUser(String email, Level studentLevel) throws IOException {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
 
-        SchoolFeeReceipt receipt = schoolFeeReceiptRepository.findByUploadedBy(user.getId())
-                .stream()
-                .max(Comparator.comparing(SchoolFeeReceipt::getUploadedAt))
+        Optional<SchoolFeeReceipt> latest = studentLevel == null
+                ? schoolFeeReceiptRepository.findFirstByUploadedByOrderByUploadedAtDesc(user.getId())
+                : schoolFeeReceiptRepository.findFirstByUploadedByAndStudentLevelOrderByUploadedAtDesc(user.getId(), studentLevel);
+        SchoolFeeReceipt receipt = latest
                 .orElseThrow(() -> new EntityNotFoundException("No receipt found for this user."));
 
         if (receipt.getPdfUrl() == null || receipt.getPdfUrl().isBlank()) {
             throw new FileNotFoundException("No PDF found for this receipt.");
         }
 
-        String fileUrl = receipt.getPdfUrl();
-
-        byte[] pdfBytes;
-        try (InputStream in = new URL(fileUrl).openStream()) {
-            pdfBytes = in.readAllBytes();
-        } catch (Exception e) {
-            throw new IOException("Could not download PDF from Cloudinary: " + e.getMessage(), e);
-        }
-
         String fileName = (receipt.getName() != null ? receipt.getName().replaceAll("\\s+", "_") : "receipt")
                 + "-" + receipt.getMatricNumber() + ".pdf";
-        return new FileDownloadResponse(fileName, pdfBytes);
+        return new FileDownloadResponse(fileName, receipt.getPdfUrl());
     }
     }
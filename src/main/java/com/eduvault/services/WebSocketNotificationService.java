@@ -1,6 +1,7 @@
 package com.eduvault.services;
 
 
+import com.eduvault.dto.IngestJobResponse;
 import com.eduvault.dto.NotificationDto;
 import lombok.RequiredArgsConstructor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
@@ -19,4 +20,12 @@ public class WebSocketNotificationService {
                 notification
         );
     }
+
+    public void sendIngestJobUpdate(String email, IngestJobResponse job) {
+        messagingTemplate.convertAndSendToUser(
+                email,
+                "/queue/notifications",
+                job
+        );
+    }
 }
\ No newline at end of file
@@ -0,0 +1,401 @@
+package com.eduvault.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+
+/**
+ * Bounded on-disk cache in front of {@link BlobStore#openStream(String)}. Stored URLs are
+ * immutable, so a cached copy never goes stale; the cache is only trimmed, least recently used
+ * first, once it holds more than {@code app.storage.cache.max-size}. Concurrent misses for the
+ * same URL share one download, and hits are read through a memory-mapped view of the file.
+ * Entries are pinned while they are being opened or served, and pinned entries are never evicted.
+ * Blobs that are already on local disk bypass the cache.
+ */
+@Slf4j
+@Component
+public class BlobCache {
+    private final BlobStore blobStore;
+    private final Path dir;
+    private final long maxBytes;
+    private final boolean enabled;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+    private long totalBytes;
+
+    public BlobCache(BlobStore blobStore,
+                     MeterRegistry meterRegistry,
+                     @Value("${app.storage.cache.dir:${java.io.tmpdir}/eduvault-blob-cache}") String dir,
+                     @Value("${app.storage.cache.max-size:2GB}") DataSize maxSize,
+                     @Value("${app.storage.cache.enabled:true}") boolean enabled) throws IOException {
+        this.blobStore = blobStore;
+        this.dir = Path.of(dir).toAbsolutePath().normalize();
+        this.maxBytes = maxSize.toBytes();
+        this.enabled = enabled && !blobStore.isLocal();
+        this.hits = meterRegistry.counter("eduvault.storage.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("eduvault.storage.cache.requests", "result", "miss");
+        if (this.enabled) {
+            Files.createDirectories(this.dir);
+            load();
+        }
+    }
+
+    public InputStream openStream(String url) throws IOException {
+        if (!enabled) {
+            return blobStore.openStream(url);
+        }
+        try (Pinned cached = acquire(url)) {
+            return map(cached.path());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The cached copy of {@code url} if there is one, pinned until the handle is closed;
+     * {@code null} on a miss, without fetching anything.
+     */
+    public Pinned peek(String url) {
+        Pinned cached = pin(keyFor(url));
+        (cached != null ? hits : misses).increment();
+        return cached;
+    }
+
+    /**
+     * Starts filling the cache for {@code url} from a body that is being read anyway, such as a
+     * download streamed to a client. Nothing is cached unless the fill is committed.
+     */
+    public Fill fill(String url) throws IOException {
+        return new Fill(keyFor(url), Files.createTempFile(dir, "fetch-", ".tmp"));
+    }
+
+    /**
+     * The cached copy of {@code url}, fetching it first on a miss. The entry cannot be evicted
+     * until the returned handle is closed.
+     */
+    public Pinned acquire(String url) throws IOException {
+        String key = keyFor(url);
+        while (true) {
+            Pinned cached = pin(key);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+
+            misses.increment();
+            CompletableFuture<Path> download = new CompletableFuture<>();
+            CompletableFuture<Path> existing = inFlight.putIfAbsent(key, download);
+            if (existing != null) {
+                await(existing);
+            } else {
+                // a download that finished between the first look and putIfAbsent is already
+                // in the cache and no longer in flight
+                cached = pin(key);
+                if (cached != null) {
+                    inFlight.remove(key, download);
+                    download.complete(cached.path());
+                    return cached;
+                }
+                try {
+                    cached = fetch(url, key);
+                    download.complete(cached.path());
+                    return cached;
+                } catch (IOException | RuntimeException e) {
+                    download.completeExceptionally(e);
+                    throw e;
+                } finally {
+                    inFlight.remove(key, download);
+                }
+            }
+            // the shared download finished; pin it, or start over if it was evicted already
+        }
+    }
+
+    private Pinned fetch(String url, String key) throws IOException {
+        Path target = dir.resolve(key);
+        Path staged = Files.createTempFile(dir, "fetch-", ".tmp");
+        try {
+            try (InputStream in = blobStore.openStream(url)) {
+                Files.copy(in, staged, StandardCopyOption.REPLACE_EXISTING);
+            }
+            long size = Files.size(staged);
+            Files.move(staged, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            admit(key, size, true);
+            return new Pinned(key, target);
+        } finally {
+            Files.deleteIfExists(staged);
+        }
+    }
+
+    private synchronized Pinned pin(String key) {
+        Entry entry = entries.get(key);
+        Path cached = dir.resolve(key);
+        if (entry == null || !Files.exists(cached)) {
+            return null;
+        }
+        entry.pins++;
+        return new Pinned(key, cached);
+    }
+
+    private synchronized void unpin(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.pins > 0) {
+            entry.pins--;
+        }
+    }
+
+    /**
+     * Records a cached file and evicts least recently used entries until the cache fits again.
+     * Pinned entries are skipped, so the cache can run over its limit while they are in use.
+     */
+    private synchronized void admit(String key, long size, boolean pinned) {
+        Entry entry = entries.computeIfAbsent(key, k -> new Entry());
+        totalBytes += size - entry.size;
+        entry.size = size;
+        if (pinned) {
+            entry.pins++;
+        }
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Entry> candidate = eldest.next();
+            if (candidate.getKey().equals(key) || candidate.getValue().pins > 0) {
+                continue;
+            }
+            eldest.remove();
+            totalBytes -= candidate.getValue().size;
+            try {
+                Files.deleteIfExists(dir.resolve(candidate.getKey()));
+            } catch (IOException e) {
+                log.warn("Could not evict cached blob {}: {}", candidate.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Picks up blobs cached by an earlier run, oldest first so the LRU order roughly survives a
+     * restart, and drops any half-written downloads.
+     */
+    private void load() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            files.sorted(Comparator.comparing(this::lastModified)).forEach(file -> {
+                String name = file.getFileName().toString();
+                try {
+                    if (name.startsWith("fetch-")) {
+                        Files.deleteIfExists(file);
+                    } else if (Files.isRegularFile(file)) {
+                        admit(name, Files.size(file), false);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private void await(CompletableFuture<Path> download) throws IOException {
+        try {
+            download.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a cached download", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IOException("Download failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Maps the cached file read-only. The mapping stays valid if the file is evicted while it is
+     * still being read.
+     */
+    private InputStream map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                return Files.newInputStream(file);
+            }
+            return new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    private String keyFor(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(url.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * A cached file that is safe to read until it is closed.
+     */
+    public final class Pinned implements Closeable {
+        private final String key;
+        private final Path path;
+        private boolean closed;
+
+        private Pinned(String key, Path path) {
+            this.key = key;
+            this.path = path;
+        }
+
+        public Path path() {
+            return path;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                unpin(key);
+            }
+        }
+    }
+
+    private static class Entry {
+        private long size;
+        private int pins;
+    }
+
+    /**
+     * A copy of a body being written into the cache alongside some other reader. A failed write
+     * only abandons the copy; closing without {@link #commit()} discards it.
+     */
+    public final class Fill implements Closeable {
+        private final String key;
+        private final Path staged;
+        private OutputStream out;
+
+        private Fill(String key, Path staged) throws IOException {
+            this.key = key;
+            this.staged = staged;
+            this.out = Files.newOutputStream(staged);
+        }
+
+        public void write(byte[] buffer, int offset, int length) {
+            if (out == null) {
+                return;
+            }
+            try {
+                out.write(buffer, offset, length);
+            } catch (IOException e) {
+                log.warn("Could not cache blob {}: {}", key, e.getMessage());
+                abandon();
+            }
+        }
+
+        public void commit() throws IOException {
+            if (out == null) {
+                return;
+            }
+            out.close();
+            out = null;
+            long size = Files.size(staged);
+            Files.move(staged, dir.resolve(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            admit(key, size, false);
+        }
+
+        @Override
+        public void close() throws IOException {
+            abandon();
+            Files.deleteIfExists(staged);
+        }
+
+        private void abandon() {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                    // the staged copy is deleted anyway
+                }
+                out = null;
+            }
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.eduvault.storage;
+
+import com.eduvault.dto.FileDownloadResponse;
+import com.eduvault.http.HttpStatusException;
+import com.eduvault.http.OutboundResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the HTTP response for a single stored document. In {@code proxy} mode the bytes are
+ * streamed to the client as they arrive: from local disk or a cached copy when there is one,
+ * otherwise straight from the backend with the client's {@code Range} passed along, so nothing
+ * is downloaded in full before the response starts. A full download that misses the cache can
+ * fill it on the way through ({@code app.storage.download.cache-fill}). In {@code redirect} mode
+ * the client is sent to a short-lived download URL and the bytes never pass through this node.
+ */
+@Component
+public class BlobDownloadResponder {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final BlobStore blobStore;
+    private final BlobCache blobCache;
+    private final boolean redirect;
+    private final Duration redirectTtl;
+    private final boolean cacheFill;
+
+    public BlobDownloadResponder(BlobStore blobStore,
+                                 BlobCache blobCache,
+                                 @Value("${app.storage.download.mode:proxy}") String mode,
+                                 @Value("${app.storage.download.redirect-ttl:5m}") Duration redirectTtl,
+                                 @Value("${app.storage.download.cache-fill:true}") boolean cacheFill) {
+        this.blobStore = blobStore;
+        this.blobCache = blobCache;
+        this.redirect = "redirect".equalsIgnoreCase(mode);
+        this.redirectTtl = redirectTtl;
+        this.cacheFill = cacheFill;
+    }
+
+    public ResponseEntity<StreamingResponseBody> respond(FileDownloadResponse file, HttpHeaders request)
+            throws IOException {
+        String url = file.getPdfUrl();
+        Path local = blobStore.localPath(url);
+        // a file on this node's disk is served directly rather than by a second authenticated request
+        if (redirect && local == null) {
+            return ResponseEntity.status(HttpStatus.FOUND)
+                    .location(URI.create(blobStore.downloadUrl(url, redirectTtl)))
+                    .cacheControl(CacheControl.noStore())
+                    .build();
+        }
+
+        String etag = etagFor(url);
+        List<String> ifNoneMatch = request.getIfNoneMatch();
+        if (ifNoneMatch.contains(etag) || ifNoneMatch.contains("*")) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .build();
+        }
+
+        // a Range made against another representation falls back to the whole document
+        String ifRange = request.getFirst(HttpHeaders.IF_RANGE);
+        String range = ifRange == null || ifRange.equals(etag) ? request.getFirst(HttpHeaders.RANGE) : null;
+
+        if (local != null) {
+            return fromFile(file, etag, local, range, null);
+        }
+        if (blobCache.isEnabled()) {
+            BlobCache.Pinned cached = blobCache.peek(url);
+            if (cached != null) {
+                return fromFile(file, etag, cached.path(), range, cached);
+            }
+        }
+        return fromBackend(file, etag, range);
+    }
+
+    /**
+     * Serves a file on local disk by seeking. The file is opened before the response is built, so
+     * it stays readable even if the cache evicts it mid-transfer; {@code pin} is held until the
+     * body has been written.
+     */
+    private ResponseEntity<StreamingResponseBody> fromFile(FileDownloadResponse file, String etag, Path path,
+                                                           String range, Closeable pin) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (IOException e) {
+            closeQuietly(pin);
+            throw e;
+        }
+        long length = channel.size();
+        long start = 0;
+        long end = length - 1;
+        HttpStatus status = HttpStatus.OK;
+        HttpRange requested = singleRange(range);
+        if (requested != null) {
+            start = requested.getRangeStart(length);
+            end = Math.min(requested.getRangeEnd(length), length - 1);
+            if (start >= length || start > end) {
+                closeQuietly(channel);
+                closeQuietly(pin);
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                        .build();
+            }
+            status = HttpStatus.PARTIAL_CONTENT;
+        }
+
+        long offset = start;
+        long count = end - start + 1;
+        ResponseEntity.BodyBuilder builder = headers(ResponseEntity.status(status), file, etag)
+                .contentLength(count);
+        if (status == HttpStatus.PARTIAL_CONTENT) {
+            builder.header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+        return builder.body(out -> {
+            try (channel; pin) {
+                WritableByteChannel target = Channels.newChannel(out);
+                long position = offset;
+                long remaining = count;
+                while (remaining > 0) {
+                    long sent = channel.transferTo(position, remaining, target);
+                    if (sent <= 0) {
+                        break;
+                    }
+                    position += sent;
+                    remaining -= sent;
+                }
+            }
+        });
+    }
+
+    /**
+     * Streams the backend response through as it is read, keeping its status and range headers.
+     * A full body is copied into the cache on the way when filling is enabled.
+     */
+    private ResponseEntity<StreamingResponseBody> fromBackend(FileDownloadResponse file, String etag, String range)
+            throws IOException {
+        String url = file.getPdfUrl();
+        OutboundResponse origin;
+        try {
+            origin = blobStore.open(url, range != null ? Map.of(HttpHeaders.RANGE, range) : Map.of());
+        } catch (HttpStatusException e) {
+            if (e.getStatus() == HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value()) {
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE).build();
+            }
+            throw e;
+        }
+
+        ResponseEntity.BodyBuilder builder = headers(ResponseEntity.status(origin.status()), file, etag);
+        origin.headers().firstValue(HttpHeaders.CONTENT_LENGTH)
+                .ifPresent(length -> builder.header(HttpHeaders.CONTENT_LENGTH, length));
+        origin.headers().firstValue(HttpHeaders.CONTENT_RANGE)
+                .ifPresent(contentRange -> builder.header(HttpHeaders.CONTENT_RANGE, contentRange));
+
+        BlobCache.Fill fill;
+        try {
+            fill = cacheFill && blobCache.isEnabled() && origin.status() == HttpStatus.OK.value()
+                    ? blobCache.fill(url)
+                    : null;
+        } catch (IOException e) {
+            closeQuietly(origin);
+            throw e;
+        }
+        return builder.body(out -> {
+            try (origin; fill) {
+                InputStream in = origin.body();
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                    if (fill != null) {
+                        fill.write(buffer, 0, n);
+                    }
+                }
+                if (fill != null) {
+                    fill.commit();
+                }
+            }
+        });
+    }
+
+    private ResponseEntity.BodyBuilder headers(ResponseEntity.BodyBuilder builder, FileDownloadResponse file,
+                                               String etag) {
+        return builder
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(file.getFileName(), StandardCharsets.UTF_8).build().toString())
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .contentType(MediaType.APPLICATION_PDF);
+    }
+
+    /**
+     * The requested byte range, or {@code null} to send the whole document. Multi-range and
+     * malformed headers are answered with the whole document, which the spec allows.
+     */
+    private HttpRange singleRange(String range) {
+        if (range == null) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(range);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            // nothing was sent yet
+        }
+    }
+
+    /**
+     * Stored URLs never change content, so the URL itself identifies the representation.
+     */
+    private String etagFor(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
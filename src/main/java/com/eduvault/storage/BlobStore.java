@@ -0,0 +1,60 @@
+package com.eduvault.storage;
+
+import com.eduvault.http.OutboundResponse;
+import com.eduvault.ingest.IngestedFile;
+import com.eduvault.user.utils.UploadResponse;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Where uploaded documents and images are kept. The backend is chosen with
+ * {@code app.storage.type}: {@code cloudinary} (the default) or {@code local}.
+ */
+public interface BlobStore {
+
+    UploadResponse upload(MultipartFile file) throws IOException;
+
+    UploadResponse upload(IngestedFile file) throws IOException;
+
+    void delete(String publicId) throws IOException;
+
+    /**
+     * Opens a stored document by the URL returned from an upload.
+     */
+    InputStream openStream(String url) throws IOException;
+
+    /**
+     * Whether stored documents are already on local disk, in which case there is nothing to gain
+     * from caching them.
+     */
+    default boolean isLocal() {
+        return false;
+    }
+
+    /**
+     * A URL a client can be redirected to for downloading a stored document directly from the
+     * backend, valid for at least {@code ttl}. Stores without signed URLs return the stored URL.
+     */
+    default String downloadUrl(String url, Duration ttl) throws IOException {
+        return url;
+    }
+
+    /**
+     * Fetches a stored document for serving it over HTTP, passing request headers such as
+     * {@code Range} through to the backend so only the requested bytes are transferred.
+     */
+    OutboundResponse open(String url, Map<String, String> headers) throws IOException;
+
+    /**
+     * The file behind a stored document when it is on local disk, so it can be served by
+     * seeking; {@code null} when it has to be fetched.
+     */
+    default Path localPath(String url) {
+        return null;
+    }
+}
@@ -0,0 +1,217 @@
+package com.eduvault.storage;
+
+import com.eduvault.http.OutboundHttpClient;
+import com.eduvault.http.OutboundResponse;
+import com.eduvault.ingest.IngestedFile;
+import com.eduvault.user.utils.UploadResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed store on the local filesystem. A blob lives at
+ * {@code <root>/<aa>/<bb>/<sha256><ext>}, so identical uploads share one file and no directory
+ * grows past a few hundred entries. Writes land in a staging directory on the same filesystem
+ * and are hard-linked into place atomically, so readers never see a partial file.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "local")
+public class LocalBlobStore implements BlobStore {
+    private static final Pattern KEY = Pattern.compile("[0-9a-f]{2}/[0-9a-f]{2}/[0-9a-f]{64}(\\.[a-z0-9]{1,8})?");
+    private static final Pattern EXTENSION = Pattern.compile("[a-z0-9]{1,8}");
+
+    private final Path root;
+    private final Path staging;
+    private final String baseUrl;
+    private final OutboundHttpClient outboundHttpClient;
+
+    public LocalBlobStore(@Value("${app.storage.local.root:${java.io.tmpdir}/eduvault-blobs}") String root,
+                          @Value("${app.storage.local.base-url:/files}") String baseUrl,
+                          OutboundHttpClient outboundHttpClient) throws IOException {
+        this.root = Path.of(root).toAbsolutePath().normalize();
+        this.staging = this.root.resolve(".staging");
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.outboundHttpClient = outboundHttpClient;
+        Files.createDirectories(staging);
+    }
+
+    @Override
+    public UploadResponse upload(MultipartFile file) throws IOException {
+        Path staged = Files.createTempFile(staging, "blob-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+                Files.copy(in, staged, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String sha256 = HexFormat.of().formatHex(digest.digest());
+            return publish(staged, sha256, file.getOriginalFilename(), Files.size(staged));
+        } finally {
+            Files.deleteIfExists(staged);
+        }
+    }
+
+    @Override
+    public UploadResponse upload(IngestedFile file) throws IOException {
+        Path target = root.resolve(keyFor(file.getSha256(), file.getOriginalFilename()));
+        if (Files.exists(target)) {
+            return response(file.getSha256(), file.getOriginalFilename(), file.getSize(), false);
+        }
+        Path staged = Files.createTempFile(staging, "blob-", ".tmp");
+        try {
+            Files.copy(file.getPath(), staged, StandardCopyOption.REPLACE_EXISTING);
+            return publish(staged, file.getSha256(), file.getOriginalFilename(), file.getSize());
+        } finally {
+            Files.deleteIfExists(staged);
+        }
+    }
+
+    @Override
+    public void delete(String publicId) throws IOException {
+        Path path = resolve(publicId);
+        if (path != null) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Override
+    public boolean isLocal() {
+        return true;
+    }
+
+    @Override
+    public InputStream openStream(String url) throws IOException {
+        if (url.startsWith(baseUrl + "/")) {
+            Path path = resolve(url.substring(baseUrl.length() + 1));
+            if (path == null) {
+                throw new IOException("Not a local blob: " + url);
+            }
+            return Files.newInputStream(path);
+        }
+        return outboundHttpClient.openStream(url);
+    }
+
+    @Override
+    public OutboundResponse open(String url, Map<String, String> headers) throws IOException {
+        if (localPath(url) != null) {
+            throw new IOException("Local blobs are served from disk: " + url);
+        }
+        return outboundHttpClient.open(url, headers);
+    }
+
+    @Override
+    public Path localPath(String url) {
+        if (!url.startsWith(baseUrl + "/")) {
+            return null;
+        }
+        return resolve(url.substring(baseUrl.length() + 1));
+    }
+
+    /**
+     * Returns the file behind a blob key, or {@code null} if the key is not a well-formed blob key.
+     */
+    public Path resolve(String key) {
+        if (key == null || !KEY.matcher(key).matches()) {
+            return null;
+        }
+        return root.resolve(key);
+    }
+
+    /**
+     * Copies a blob to the given channel with {@link FileChannel#transferTo} and returns the number
+     * of bytes sent. The copy only avoids the heap when {@code target} is a file or socket channel;
+     * for a channel wrapped around an output stream it is an ordinary buffered copy. Stops early if
+     * the target accepts nothing, e.g. because the client went away.
+     */
+    public long transferTo(Path path, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                long sent = channel.transferTo(position, size - position, target);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+            }
+            return position;
+        }
+    }
+
+    private UploadResponse publish(Path staged, String sha256, String originalFilename, long size) throws IOException {
+        Path target = root.resolve(keyFor(sha256, originalFilename));
+        Files.createDirectories(target.getParent());
+        boolean created = true;
+        try {
+            // a link, unlike a rename, fails instead of replacing a blob that is already there
+            Files.createLink(target, staged);
+        } catch (FileAlreadyExistsException e) {
+            log.debug("Blob {} already stored", target);
+            created = false;
+        }
+        return response(sha256, originalFilename, size, created);
+    }
+
+    private UploadResponse response(String sha256, String originalFilename, long size, boolean created) {
+        String key = keyFor(sha256, originalFilename);
+        String url = baseUrl + "/" + key;
+        String extension = extension(originalFilename);
+        UploadResponse response = new UploadResponse(
+                url,
+                url,
+                extension.isEmpty() ? "raw" : extension.substring(1),
+                0,
+                0,
+                (int) Math.min(size, Integer.MAX_VALUE),
+                originalFilename,
+                Instant.now().toString(),
+                key
+        );
+        response.setCreated(created);
+        return response;
+    }
+
+    private String keyFor(String sha256, String originalFilename) {
+        return sha256.substring(0, 2) + "/" + sha256.substring(2, 4) + "/" + sha256 + extension(originalFilename);
+    }
+
+    private String extension(String originalFilename) {
+        if (originalFilename == null) {
+            return "";
+        }
+        int dot = originalFilename.lastIndexOf('.');
+        if (dot < 0) {
+            return "";
+        }
+        String extension = originalFilename.substring(dot + 1).toLowerCase(Locale.ROOT);
+        return EXTENSION.matcher(extension).matches() ? "." + extension : "";
+    }
+
+    private MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.eduvault.user.enums;
+
+public enum BulkImportEntryStatus {
+    IMPORTED,
+    FAILED,
+    SKIPPED
+}
@@ -0,0 +1,10 @@
+package com.eduvault.user.enums;
+
+public enum DocumentType {
+    COLLEGE_DUE,
+    DEPT_DUE,
+    COURSE_FORM,
+    SCHOOL_FEE_RECEIPT,
+    SCHOOL_FEE_INVOICE,
+    REMITA_SCHOOL_FEE_RECEIPT
+}
@@ -0,0 +1,8 @@
+package com.eduvault.user.enums;
+
+public enum IngestJobStatus {
+    QUEUED,
+    PROCESSING,
+    COMPLETED,
+    FAILED
+}
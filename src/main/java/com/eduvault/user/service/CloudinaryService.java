@@ -3,27 +3,62 @@ package com.eduvault.user.service;
 import com.cloudinary.Cloudinary;
 import com.cloudinary.utils.ObjectUtils;
 import com.eduvault.config.CloudinaryConfiguration;
+import com.eduvault.http.OutboundHttpClient;
+import com.eduvault.http.OutboundResponse;
+import com.eduvault.ingest.IngestedFile;
+import com.eduvault.storage.BlobStore;
 import com.eduvault.user.utils.UploadResponse;
 import org.cloudinary.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Service
-public class CloudinaryService {
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "cloudinary", matchIfMissing = true)
+public class CloudinaryService implements BlobStore {
     private static final Logger log = LoggerFactory.getLogger(CloudinaryService.class);
+    private static final Pattern RAW_UPLOAD_URL = Pattern.compile("https?://res\\.cloudinary\\.com/[^/]+/raw/upload/(?:v\\d+/)?(.+)");
 
     private final Cloudinary cloudinaryClient;
+    private final OutboundHttpClient outboundHttpClient;
+
+    @Value("${app.storage.chunked.threshold:10MB}")
+    private DataSize chunkedThreshold;
+
+    @Value("${app.storage.chunked.chunk-size:6MB}")
+    private DataSize chunkSize;
+
+    @Value("${app.storage.chunked.max-attempts:3}")
+    private int chunkMaxAttempts;
+
+    @Value("${app.storage.chunked.retry-backoff:500ms}")
+    private Duration chunkRetryBackoff;
 
     @Autowired
-    public CloudinaryService(final CloudinaryConfiguration configuration) {
+    public CloudinaryService(final CloudinaryConfiguration configuration, final OutboundHttpClient outboundHttpClient) {
         this.cloudinaryClient =
                 new Cloudinary(
                         String.format(
@@ -31,20 +66,37 @@ public class CloudinaryService {
                                 configuration.getApiKey(),
                                 configuration.getApiSecret(),
                                 configuration.getCloudName()));
+        this.outboundHttpClient = outboundHttpClient;
     }
 
+    @Override
     public UploadResponse upload(final MultipartFile file) throws IOException {
-        Map uploadResult = this.cloudinaryClient.uploader().upload(
-                file.getBytes(),
-                ObjectUtils.asMap(
-                        "resource_type", "raw",
-                        "folder", "receipts",
-                        "use_filename", true,
-                        "unique_filename", true,
-                        "type", "upload",
-                        "access_mode", "public"
-                )
-        );
+        File spilled = convertMultiPartToFile(file);
+        try {
+            return upload(spilled, file.getOriginalFilename());
+        } finally {
+            Files.deleteIfExists(spilled.toPath());
+        }
+    }
+
+    @Override
+    public UploadResponse upload(final IngestedFile file) throws IOException {
+        return upload(file.getPath().toFile(), file.getOriginalFilename());
+    }
+
+    /**
+     * Streams the file from disk. Files above the chunked threshold are sent as a Cloudinary
+     * chunked upload, one fixed-size buffer at a time, so memory per upload does not grow with
+     * the file and a failed chunk is retried on its own.
+     */
+    private UploadResponse upload(final File file, final String filename) throws IOException {
+        Map<String, Object> options = uploadOptions();
+        if (filename != null) {
+            options.put("filename", filename);
+        }
+        Map uploadResult = file.length() > chunkedThreshold.toBytes()
+                ? uploadChunked(file, options)
+                : this.cloudinaryClient.uploader().upload(file, options);
 
         log.debug("cloudinary pdf upload response: [{}]", uploadResult);
         JSONObject json = new JSONObject(uploadResult);
@@ -61,12 +113,121 @@ public class CloudinaryService {
                 json.optInt("height", 0),
                 json.getInt("bytes"),
                 json.getString("original_filename"),
-                json.getString("created_at")
+                json.getString("created_at"),
+                publicId
+        );
+    }
+
+    private Map uploadChunked(final File file, final Map<String, Object> options) throws IOException {
+        Map<String, Object> params = this.cloudinaryClient.uploader().buildUploadParams(options);
+        String uploadId = this.cloudinaryClient.randomPublicId();
+        long total = file.length();
+        byte[] buffer = new byte[(int) chunkSize.toBytes()];
+
+        Map result = null;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long offset = 0;
+            while (offset < total) {
+                int length = (int) Math.min(buffer.length, total - offset);
+                ByteBuffer target = ByteBuffer.wrap(buffer, 0, length);
+                while (target.hasRemaining()) {
+                    if (channel.read(target, offset + target.position()) < 0) {
+                        throw new EOFException("Upload source ended at " + (offset + target.position()) + " of " + total + " bytes");
+                    }
+                }
+                byte[] chunk = length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+                result = uploadChunk(params, options, uploadId, chunk, offset, total);
+                offset += length;
+            }
+        }
+        return result;
+    }
+
+    private Map uploadChunk(final Map<String, Object> params, final Map<String, Object> options, final String uploadId,
+                            final byte[] chunk, final long offset, final long total) throws IOException {
+        Map<String, Object> headers = new HashMap<>();
+        headers.put("X-Unique-Upload-Id", uploadId);
+        headers.put("Content-Range", String.format(Locale.US, "bytes %d-%d/%d", offset, offset + chunk.length - 1, total));
+        Map<String, Object> chunkOptions = new HashMap<>(options);
+        chunkOptions.put("extra_headers", headers);
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return this.cloudinaryClient.uploader().callApi("upload", new HashMap<>(params), chunkOptions, chunk);
+            } catch (IOException | RuntimeException e) {
+                if (attempt >= chunkMaxAttempts) {
+                    throw e;
+                }
+                log.warn("cloudinary chunk {} of upload {} failed (attempt {}/{}): {}",
+                        headers.get("Content-Range"), uploadId, attempt, chunkMaxAttempts, e.getMessage());
+                backOff(attempt);
+            }
+        }
+    }
+
+    private void backOff(final int attempt) throws InterruptedIOException {
+        try {
+            Thread.sleep(chunkRetryBackoff.toMillis() * attempt);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while retrying a chunked upload");
+        }
+    }
+
+    private Map<String, Object> uploadOptions() {
+        return ObjectUtils.asMap(
+                "resource_type", "raw",
+                "folder", "receipts",
+                "use_filename", true,
+                "unique_filename", true,
+                "type", "upload",
+                "access_mode", "public"
+        );
+    }
+
+    @Override
+    public InputStream openStream(final String url) throws IOException {
+        return outboundHttpClient.openStream(url);
+    }
+
+    @Override
+    public OutboundResponse open(final String url, final Map<String, String> headers) throws IOException {
+        return outboundHttpClient.open(url, headers);
+    }
+
+    /**
+     * Signs a time-limited download URL for a raw upload, so clients fetch the file from
+     * Cloudinary instead of through this node. URLs that are not raw uploads are returned as is.
+     */
+    @Override
+    public String downloadUrl(final String url, final Duration ttl) throws IOException {
+        Matcher matcher = RAW_UPLOAD_URL.matcher(url);
+        if (!matcher.matches()) {
+            return url;
+        }
+        try {
+            return this.cloudinaryClient.privateDownload(matcher.group(1), "", ObjectUtils.asMap(
+                    "resource_type", "raw",
+                    "type", "upload",
+                    "attachment", true,
+                    "expires_at", Instant.now().plus(ttl).getEpochSecond()
+            ));
+        } catch (Exception e) {
+            throw new IOException("Could not sign download URL: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void delete(final String publicId) throws IOException {
+        Map result = this.cloudinaryClient.uploader().destroy(
+                publicId,
+                ObjectUtils.asMap("resource_type", "raw")
         );
+        log.debug("cloudinary delete response for [{}]: [{}]", publicId, result);
     }
 
     private File convertMultiPartToFile(final MultipartFile file) throws IOException {
-        final File newFile = Files.createTempFile("temp", file.getOriginalFilename()).toFile();
+        final File newFile = Files.createTempFile("upload-", ".tmp").toFile();
         file.transferTo(newFile);
         return newFile;
     }
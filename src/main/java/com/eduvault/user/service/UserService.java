@@ -12,6 +12,7 @@ import com.eduvault.user.enums.AccountStatus;
 import com.eduvault.user.enums.UserRole;
 import com.eduvault.user.repo.UserRepository;
 import com.eduvault.user.utils.UploadResponse;
+import com.eduvault.storage.BlobStore;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -27,7 +28,7 @@ import java.util.List;
 @RequiredArgsConstructor
 public class UserService {
     private final UserRepository userRepository;
-    private final CloudinaryService cloudinaryService;
+    private final BlobStore blobStore;
     private final EmailService emailService;
 
 
@@ -56,7 +57,7 @@ public class UserService {
         user.setFirstName(req.firstName());
 
         if (file != null && !file.isEmpty()) {
-            UploadResponse uploadResponse = cloudinaryService.upload(file);
+            UploadResponse uploadResponse = blobStore.upload(file);
             user.setImageUrl(uploadResponse.getSecureUrl());
         }
 
@@ -18,10 +18,13 @@ public class UploadResponse {
     private int bytes;
     private String originalFileName;
     private String createdAt;
+    private String publicId;
+    // false when the store already held this content and returned the existing blob
+    private boolean created = true;
 
     public UploadResponse() {}
 
-    public UploadResponse(String url, String secureUrl, String format, int width, int height, int bytes, String originalFileName, String createdAt) {
+    public UploadResponse(String url, String secureUrl, String format, int width, int height, int bytes, String originalFileName, String createdAt, String publicId) {
         this.url = url;
         this.secureUrl = secureUrl;
         this.format = format;
@@ -30,6 +33,7 @@ public class UploadResponse {
         this.bytes = bytes;
         this.originalFileName = originalFileName;
         this.createdAt = createdAt;
+        this.publicId = publicId;
     }
 
     @Override
@@ -43,6 +47,8 @@ public class UploadResponse {
                 ", bytes=" + bytes +
                 ", originalFileName='" + originalFileName + '\'' +
                 ", createdAt='" + createdAt + '\'' +
+                ", publicId='" + publicId + '\'' +
+                ", created=" + created +
                 '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,96 @@
+package com.eduvault.export;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EntryCompressorTest {
+
+	private final EntryCompressor compressor = new EntryCompressor(64 * 1024, 0.1);
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void incompressibleFileIsStoredAsIs() throws IOException {
+		byte[] content = new byte[200_000];
+		new Random(42).nextBytes(content);
+		Path file = write("random.pdf", content);
+
+		PreparedEntry prepared = compressor.prepare(file);
+
+		assertThat(prepared.method()).isEqualTo(ZipEntry.STORED);
+		assertThat(prepared.data()).isEqualTo(file);
+		assertThat(prepared.size()).isEqualTo(content.length);
+		assertThat(prepared.compressedSize()).isEqualTo(content.length);
+		assertThat(roundTrip(prepared)).isEqualTo(content);
+	}
+
+	@Test
+	void compressibleFileIsDeflatedIntoASideFile() throws IOException {
+		byte[] content = "Receipt line with the same words over and over\n".repeat(5_000)
+				.getBytes(StandardCharsets.UTF_8);
+		Path file = write("text.pdf", content);
+
+		PreparedEntry prepared = compressor.prepare(file);
+
+		assertThat(prepared.method()).isEqualTo(ZipEntry.DEFLATED);
+		assertThat(prepared.data()).isNotEqualTo(file);
+		assertThat(file).doesNotExist();
+		assertThat(prepared.size()).isEqualTo(content.length);
+		assertThat(prepared.compressedSize()).isLessThan(content.length).isEqualTo(Files.size(prepared.data()));
+		assertThat(roundTrip(prepared)).isEqualTo(content);
+	}
+
+	@Test
+	void emptyFileIsStored() throws IOException {
+		Path file = write("empty.pdf", new byte[0]);
+
+		PreparedEntry prepared = compressor.prepare(file);
+
+		assertThat(prepared.method()).isEqualTo(ZipEntry.STORED);
+		assertThat(roundTrip(prepared)).isEmpty();
+	}
+
+	private Path write(String name, byte[] content) throws IOException {
+		return Files.write(dir.resolve(name), content);
+	}
+
+	/**
+	 * Copies the entry into a ZIP the way the exporter does and reads it back, checking the CRC
+	 * recorded for it against the bytes that come out.
+	 */
+	private byte[] roundTrip(PreparedEntry prepared) throws IOException {
+		Path zip = dir.resolve("roundtrip.zip");
+		try (ZipArchiveOutputStream out = new ZipArchiveOutputStream(zip);
+			 InputStream data = Files.newInputStream(prepared.data())) {
+			ZipArchiveEntry entry = new ZipArchiveEntry("entry.pdf");
+			entry.setMethod(prepared.method());
+			entry.setCrc(prepared.crc());
+			entry.setSize(prepared.size());
+			entry.setCompressedSize(prepared.compressedSize());
+			out.addRawArchiveEntry(entry, data);
+		}
+		try (ZipFile zipFile = ZipFile.builder().setPath(zip).get();
+			 InputStream in = zipFile.getInputStream(zipFile.getEntry("entry.pdf"))) {
+			byte[] content = in.readAllBytes();
+			CRC32 crc = new CRC32();
+			crc.update(content);
+			assertThat(prepared.crc()).isEqualTo(crc.getValue());
+			return content;
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package com.eduvault.paging;
+
+import com.eduvault.dto.CursorPage;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReceiptCursorTest {
+
+	private static final LocalDateTime UPLOADED_AT = LocalDateTime.of(2024, 3, 1, 9, 30, 15, 123_456_789);
+
+	private record Row(LocalDateTime uploadedAt, UUID id) {
+		ReceiptCursor cursor() {
+			return new ReceiptCursor(uploadedAt, id);
+		}
+	}
+
+	@Test
+	void encodedCursorDecodesToTheSamePosition() {
+		ReceiptCursor cursor = new ReceiptCursor(UPLOADED_AT, UUID.randomUUID());
+
+		String token = cursor.encode();
+
+		assertThat(token).doesNotContain("=", "+", "/");
+		assertThat(ReceiptCursor.decode(token)).isEqualTo(cursor);
+	}
+
+	@Test
+	void blankTokenMeansFirstPage() {
+		assertThat(ReceiptCursor.decode(null)).isNull();
+		assertThat(ReceiptCursor.decode("")).isNull();
+		assertThat(ReceiptCursor.decode("  ")).isNull();
+	}
+
+	@Test
+	void malformedTokensAreRejected() {
+		List<String> tokens = List.of(
+				"not base64!",
+				encode("no separator"),
+				encode("yesterday|" + UUID.randomUUID()),
+				encode(UPLOADED_AT + "|not-a-uuid"));
+
+		for (String token : tokens) {
+			assertThatThrownBy(() -> ReceiptCursor.decode(token))
+					.isInstanceOf(IllegalArgumentException.class)
+					.hasMessage("Invalid cursor");
+		}
+	}
+
+	@Test
+	void extraRowMeansAnotherPageFollows() {
+		List<Row> rows = List.of(row(3), row(2), row(1));
+
+		CursorPage<Row> page = ReceiptCursor.page(rows, 2, Row::cursor);
+
+		assertThat(page.getItems()).containsExactly(rows.get(0), rows.get(1));
+		assertThat(page.getSize()).isEqualTo(2);
+		assertThat(ReceiptCursor.decode(page.getNextCursor())).isEqualTo(rows.get(1).cursor());
+	}
+
+	@Test
+	void lastPageHasNoCursor() {
+		List<Row> full = List.of(row(2), row(1));
+		List<Row> partial = List.of(row(1));
+
+		assertThat(ReceiptCursor.page(full, 2, Row::cursor).getNextCursor()).isNull();
+		assertThat(ReceiptCursor.page(partial, 2, Row::cursor).getNextCursor()).isNull();
+		assertThat(ReceiptCursor.page(List.<Row>of(), 2, Row::cursor).getItems()).isEmpty();
+	}
+
+	@Test
+	void cursorOnEqualUploadTimesKeepsTheIdAsTieBreak() {
+		Row first = new Row(UPLOADED_AT, UUID.fromString("00000000-0000-0000-0000-000000000002"));
+		Row second = new Row(UPLOADED_AT, UUID.fromString("00000000-0000-0000-0000-000000000001"));
+
+		CursorPage<Row> page = ReceiptCursor.page(List.of(first, second), 1, Row::cursor);
+
+		ReceiptCursor next = ReceiptCursor.decode(page.getNextCursor());
+		assertThat(page.getItems()).containsExactly(first);
+		assertThat(next.uploadedAt()).isEqualTo(second.uploadedAt());
+		assertThat(next.id()).isEqualTo(first.id());
+		assertThat(next).isNotEqualTo(second.cursor());
+	}
+
+	private static Row row(int minutes) {
+		return new Row(UPLOADED_AT.plusMinutes(minutes), UUID.randomUUID());
+	}
+
+	private static String encode(String raw) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,302 @@
+package com.eduvault.pdf;
+
+import com.eduvault.user.enums.DocumentType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the precompiled templates against the per-field extraction they replaced, which is
+ * kept here as the reference: one regex compiled and searched from the start of the text per
+ * field. The course form session uses the corrected pattern, since the old one could not match.
+ */
+class ReceiptTemplatesTest {
+
+	private static final Map<DocumentType, String> SAMPLES = new EnumMap<>(Map.of(
+			DocumentType.COLLEGE_DUE, """
+					College Dues Payment Receipt
+					Payer's Name
+					 John Doe
+					Payer's Email john.doe@example.com
+					Matric No 190404001
+					Department Computer Science
+					Academic Session 2023/2024
+					Level 300
+					Transaction Reference TRX-0012345
+					Status Successful
+					Total Amount NGN5,000
+					Date Paid 2024-03-01 10:00
+					""",
+			DocumentType.DEPT_DUE, """
+					Departmental Dues Receipt
+					Payer's Name Jane Roe
+					Payer's Email jane.roe@example.com
+					Matric No 190404002
+					Academic Session 2023/2024
+					Level 200
+					Transaction Reference TRX-0054321
+					Status Successful
+					Total Amount NGN2,500
+					Date Paid 2024-02-11 09:15
+					""",
+			DocumentType.COURSE_FORM, """
+					2023/2024 SESSION COURSE REGISTRATION
+					Name: Jane Smith
+					Programme: Computer Science
+					Level: 200L
+					ID: 190404003
+					CSC201 Computer Programming 3
+					""",
+			DocumentType.SCHOOL_FEE_RECEIPT, """
+					John Doe Received from
+					College of Physical Sciences Date: 12/09/2023
+					Department: Physics
+					Receipt No: 123456
+					Matric. No.: 190404004
+					Level: 300
+					Invoice No.: INV/2023/1
+					Bank: First Bank
+					Returning Students School Fees
+					TOTAL 150,000.00
+					""",
+			DocumentType.SCHOOL_FEE_INVOICE, """
+					REFERENCE/INVOICE NO. INV2023/77
+					12 March 2024 10:15:00
+					John Doe 08012345678, john.doe@example.com
+					REMITA RRR: 123456789012
+					Total: N150,000.00
+					""",
+			DocumentType.REMITA_SCHOOL_FEE_RECEIPT, """
+					Remita Payment Receipt
+					1234-5678-9012
+					NAME
+					John Doe
+					EMAIL john.doe@example.com
+					PHONE NUMBER
+
+					08012345678
+					BALANCE DUE
+					TOTAL AMOUNT
+					NGN 0.00
+					Card Payment 55512345678
+					Authorization Ref 12345678
+					"""
+	));
+
+	private final Map<DocumentType, ReceiptTemplate> templates = new EnumMap<>(DocumentType.class);
+
+	ReceiptTemplatesTest() {
+		for (ReceiptTemplate template : ReceiptTemplates.all()) {
+			templates.put(template.documentType(), template);
+		}
+	}
+
+	@Test
+	void everyReceiptTypeHasATemplate() {
+		assertThat(templates.keySet()).containsExactlyInAnyOrderElementsOf(SAMPLES.keySet());
+	}
+
+	@Test
+	void samplesExtractTheSameFieldsAsBefore() {
+		SAMPLES.forEach((type, content) -> {
+			Map<String, String> expected = legacy(type, content);
+
+			assertThat(extract(type, content)).as("%s", type).isEqualTo(expected);
+			assertThat(expected.values()).as("%s sample finds every field", type).doesNotContainNull();
+		});
+	}
+
+	@Test
+	void fallbackPatternsAreUsedOnlyWhenThePreferredOneMisses() {
+		String content = """
+				received from Ada Lovelace
+				College of Engineering Date: 01/02/2024
+				654321Receipt No:
+				""";
+
+		Map<String, String> fields = extract(DocumentType.SCHOOL_FEE_RECEIPT, content);
+
+		assertThat(fields).isEqualTo(legacy(DocumentType.SCHOOL_FEE_RECEIPT, content));
+		assertThat(fields.get("receiptNumber")).isEqualTo("654321");
+	}
+
+	@Test
+	void emptyTextFindsNothing() {
+		SAMPLES.keySet().forEach(type -> {
+			assertThat(extract(type, "")).as("%s", type).isEqualTo(legacy(type, ""));
+			assertThat(extract(type, "").values()).as("%s", type).containsOnlyNulls();
+		});
+	}
+
+	/**
+	 * Reordered, repeated, dropped and re-cased lines move labels around each other, which is
+	 * where a single scan could disagree with searching for each field separately.
+	 */
+	@Test
+	void shuffledDocumentsExtractTheSameFieldsAsBefore() {
+		Random random = new Random(7);
+		SAMPLES.forEach((type, sample) -> {
+			for (int i = 0; i < 300; i++) {
+				String content = mutate(sample, random);
+
+				assertThat(extract(type, content)).as("%s:%n%s", type, content).isEqualTo(legacy(type, content));
+			}
+		});
+	}
+
+	private Map<String, String> extract(DocumentType type, String content) {
+		return templates.get(type).extract(content).asMap();
+	}
+
+	private static String mutate(String sample, Random random) {
+		List<String> lines = new ArrayList<>(Arrays.asList(sample.split("\n")));
+		Collections.shuffle(lines, random);
+		int edits = random.nextInt(4);
+		for (int e = 0; e < edits && !lines.isEmpty(); e++) {
+			int at = random.nextInt(lines.size());
+			switch (random.nextInt(3)) {
+				case 0 -> lines.add(random.nextInt(lines.size() + 1), lines.get(at));
+				case 1 -> lines.remove(at);
+				default -> lines.set(at, lines.get(at).toLowerCase(Locale.ROOT));
+			}
+		}
+		return String.join(random.nextBoolean() ? "\n" : "\r\n", lines);
+	}
+
+	private static Map<String, String> legacy(DocumentType type, String content) {
+		Map<String, String> fields = new LinkedHashMap<>();
+		switch (type) {
+			case COLLEGE_DUE, DEPT_DUE -> {
+				fields.put("name", labelled(content, "Payer's Name", "[^\\r\\n]+"));
+				fields.put("email", labelled(content, "Payer's Email", "[^\\r\\n]+"));
+				fields.put("matricNumber", labelled(content, "Matric No", "[^\\r\\n]+"));
+				if (type == DocumentType.COLLEGE_DUE) {
+					fields.put("department", labelled(content, "Department", "[^\\r\\n]+"));
+				}
+				fields.put("academicSession", labelled(content, "Academic Session", "[^\\r\\n]+"));
+				fields.put("level", labelled(content, "Level", "[^\\r\\n]+"));
+				fields.put("transactionReference", labelled(content, "Transaction Reference", "[^\\r\\n]+"));
+				fields.put("status", labelled(content, "Status", "[^\\r\\n]+"));
+				fields.put("amount", labelled(content, "Total Amount", "NGN[\\d,]+"));
+				fields.put("date", labelled(content, "Date Paid", "[^\\r\\n]+"));
+			}
+			case COURSE_FORM -> {
+				int flags = Pattern.CASE_INSENSITIVE;
+				fields.put("session", find(content, "(\\d{4}/\\d{4}\\s+SESSION)", flags));
+				fields.put("name", find(content, "Name:\\s*(([A-Za-z ]+))", flags));
+				fields.put("programme", find(content, "Programme:\\s*(([A-Za-z ]+))", flags));
+				fields.put("level", find(content, "Level:\\s*(([0-9]+L))", flags));
+				fields.put("matricNumber", find(content, "ID:\\s*((\\d+))", flags));
+			}
+			case SCHOOL_FEE_RECEIPT -> {
+				int flags = Pattern.CASE_INSENSITIVE | Pattern.DOTALL;
+				String name = find(content, "([A-Z][A-Za-z ]+)\\s+Received from", flags);
+				fields.put("name", name != null ? name : find(content, "Received from\\s+([A-Za-z ]+)", flags));
+				fields.put("college", find(content, "(College[^\\r\\n]+?)(?=Date:)", flags));
+				fields.put("department", find(content, "Department:\\s*([^\\r\\n]+)", flags));
+				fields.put("date", find(content, "Date:\\s*(\\d{2}/\\d{2}/\\d{4})", flags));
+				String receiptNumber = find(content, "Receipt No:\\s*(\\d+)", flags);
+				fields.put("receiptNumber", receiptNumber != null ? receiptNumber : find(content, "(\\d+)Receipt No:", flags));
+				fields.put("matricNumber", find(content, "Matric. No.:\\s*([^\\r\\n]+)", flags));
+				fields.put("level", find(content, "Level:\\s*([^\\r\\n]+)", flags));
+				fields.put("invoiceNumber", find(content, "Invoice No.:\\s*([^\\r\\n]+)", flags));
+				fields.put("bank", find(content, "Bank:\\s*([^\\r\\n]+)", flags));
+				fields.put("amount", find(content, "TOTAL\\s*([\\d,]+\\.\\d{2})", flags));
+				fields.put("description", find(content, "(Returning.*School Fees)", flags));
+			}
+			case SCHOOL_FEE_INVOICE -> {
+				int flags = Pattern.CASE_INSENSITIVE | Pattern.DOTALL;
+				fields.put("name", find(content, "(?i)([A-Z][A-Za-z ]+)\\s+\\d{11},", flags));
+				fields.put("phone", find(content, "(\\d{11}),", flags));
+				fields.put("email", find(content, "([\\w.%-]+@[\\w.-]+\\.[A-Za-z]{2,6})", flags));
+				fields.put("amount", find(content, "Total:\\s*N([\\d,]+\\.\\d{2})", flags));
+				fields.put("rrr", find(content, "REMITA RRR:\\s*(\\d+)", flags));
+				fields.put("invoiceNumber", find(content, "REFERENCE/INVOICE NO.\\s*([A-Z0-9/]+)", flags));
+				fields.put("date", find(content, "(\\d{1,2}\\s+\\w+\\s+\\d{4}\\s+\\d{2}:\\d{2}:\\d{2})", flags));
+			}
+			case REMITA_SCHOOL_FEE_RECEIPT -> legacyRemita(content, fields);
+			default -> throw new IllegalArgumentException("No reference extraction for " + type);
+		}
+		return fields;
+	}
+
+	private static void legacyRemita(String content, Map<String, String> fields) {
+		String[] lines = content.split("\\r?\\n");
+		fields.put("rrr", Arrays.stream(lines)
+				.filter(l -> l.matches("\\d{4}-\\d{4}-\\d{4,}"))
+				.findFirst()
+				.orElse(null));
+		fields.put("name", smart(lines, "NAME"));
+		fields.put("email", smart(lines, "EMAIL"));
+		fields.put("phoneNumber", smart(lines, "PHONE NUMBER"));
+		fields.put("amount", smart(lines, "TOTAL AMOUNT"));
+		String balanceDue = null;
+		for (int i = 0; i < lines.length; i++) {
+			if (lines[i].toUpperCase().contains("BALANCE DUE")) {
+				if (i + 1 < lines.length && lines[i + 1].toUpperCase().contains("TOTAL AMOUNT")) {
+					balanceDue = (i + 2 < lines.length) ? lines[i + 2].trim() : null;
+				} else {
+					balanceDue = (i + 1 < lines.length) ? lines[i + 1].trim() : null;
+				}
+				break;
+			}
+		}
+		fields.put("balanceDue", balanceDue);
+		fields.put("authorizationRef", Arrays.stream(lines)
+				.filter(l -> l.toUpperCase().contains("AUTHORIZATION REF") || l.toUpperCase().contains("CARD PAYMENT"))
+				.map(l -> {
+					Matcher m = Pattern.compile("\\d{6,}").matcher(l);
+					return m.find() ? m.group() : null;
+				})
+				.filter(Objects::nonNull)
+				.findFirst()
+				.orElse(null));
+	}
+
+	private static String smart(String[] lines, String label) {
+		for (int i = 0; i < lines.length; i++) {
+			String line = lines[i].trim();
+			if (line.toUpperCase().contains(label.toUpperCase())) {
+				String cleaned = line.replaceAll("(?i)" + label, "").trim();
+				if (!cleaned.isEmpty()) {
+					return cleaned;
+				}
+				if (i + 1 < lines.length) {
+					String next = lines[i + 1].trim();
+					if (!next.toUpperCase().contains(label.toUpperCase()) && !next.isEmpty()) {
+						return next;
+					}
+				}
+				if (i + 2 < lines.length) {
+					String next2 = lines[i + 2].trim();
+					if (!next2.toUpperCase().contains(label.toUpperCase()) && !next2.isEmpty()) {
+						return next2;
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	private static String labelled(String content, String label, String regex) {
+		return find(content, label + "\\s+(" + regex + ")", Pattern.CASE_INSENSITIVE);
+	}
+
+	private static String find(String content, String regex, int flags) {
+		Matcher matcher = Pattern.compile(regex, flags).matcher(content);
+		return matcher.find() ? matcher.group(1).trim() : null;
+	}
+}